@@ -0,0 +1,125 @@
+package com.openclassrooms.projet3.images;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Compare les deux stockages d'images (images.store=filesystem ou pack) sur de petits contenus : lecture complète
+ * d'un contenu pris au hasard parmi ceux déjà enregistrés, et ajout d'un nouveau contenu. <br>
+ * L'ajout dans le stockage pack attend l'écriture sur disque de l'enregistrement (force) ; le stockage filesystem
+ * déplace le fichier reçu sans l'attendre. <br>
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="BlobStoreBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlobStoreBenchmark {
+    // Nombre de contenus enregistrés avant la mesure, parmi lesquels les lectures sont tirées
+    private static final int CONTENUS = 1000;
+
+    @Param({ "filesystem", "pack" })
+    String stockage;
+
+    // Taille d'un contenu, en octets : vignette et image moyenne
+    @Param({ "4096", "65536" })
+    int taille;
+
+    private Path dossier;
+    private BlobStore store;
+    private byte[] octets;
+    private String[] empreintes;
+    private final AtomicLong suivant = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void ouvrir() throws IOException {
+        dossier = Files.createTempDirectory("blobstore-bench-");
+        BlobStore fichiers = new FileSystemBlobStore(dossier.resolve("fichiers"));
+        store = stockage.equals("pack")
+                ? new PackFileBlobStore(dossier.resolve("pack"), 64L * 1024 * 1024, 512 * 1024, fichiers)
+                : fichiers;
+
+        octets = new byte[taille];
+        ThreadLocalRandom.current().nextBytes(octets);
+        empreintes = new String[CONTENUS];
+        for (int i = 0; i < CONTENUS; i++) {
+            empreintes[i] = nouvelleEmpreinte();
+            store.put(empreintes[i], fichierRecu());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() throws IOException {
+        if (store instanceof Closeable fermable) {
+            fermable.close();
+        }
+        try (Stream<Path> chemins = Files.walk(dossier)) {
+            for (Path chemin : chemins.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(chemin);
+            }
+        }
+    }
+
+    // Fichier reçu, préparé hors de la mesure comme le fait ImageService avant d'appeler put
+    @State(Scope.Thread)
+    public static class Envoi {
+        Path fichier;
+
+        @Setup(Level.Invocation)
+        public void preparer(BlobStoreBenchmark banc) throws IOException {
+            fichier = banc.fichierRecu();
+        }
+
+        @TearDown(Level.Invocation)
+        public void nettoyer() throws IOException {
+            // Déplacé par le stockage filesystem, recopié (et laissé) par le stockage pack
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    @Benchmark
+    public byte[] lire() throws IOException {
+        try (InputStream contenu = store.get(empreintes[ThreadLocalRandom.current().nextInt(CONTENUS)])) {
+            return contenu.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public boolean ecrire(Envoi envoi) throws IOException {
+        return store.put(nouvelleEmpreinte(), envoi.fichier);
+    }
+
+    // Empreinte unique : chaque ajout est un nouveau contenu, jamais un doublon
+    private String nouvelleEmpreinte() {
+        return String.format("%064x", suivant.incrementAndGet());
+    }
+
+    private Path fichierRecu() throws IOException {
+        Path fichier = Files.createTempFile(dossier, "upload-", ".tmp");
+        return Files.write(fichier, octets);
+    }
+}
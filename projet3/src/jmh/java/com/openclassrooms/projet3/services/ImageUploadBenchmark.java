@@ -0,0 +1,132 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.images.BlobStore;
+import com.openclassrooms.projet3.images.FileSystemBlobStore;
+import com.openclassrooms.projet3.images.ImageCache;
+import com.openclassrooms.projet3.repositories.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Débit des envois d'images de 10 Mo en parallèle (ImageService.sauvegardeImage) : copie par FileChannel.transferFrom
+ * dans un fichier temporaire avec calcul de l'empreinte, contrôle du format, puis déplacement dans le stockage filesystem. <br>
+ * Sans base de données : les références (table IMAGES) ne sont pas comptées. Chaque envoi est un contenu différent,
+ * supprimé hors de la mesure pour que le disque ne se remplisse pas. <br>
+ * Résultat en envois par seconde, pour tous les threads : multiplier par 10 pour des Mo/s. <br>
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="ImageUploadBenchmark" (-t pour changer le nombre de threads)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ImageUploadBenchmark {
+    private static final int TAILLE = 10 * 1024 * 1024;
+    private static final byte[] SIGNATURE_PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    private Path dossier;
+    private BlobStore store;
+    private ImageService imageService;
+    private final AtomicLong suivant = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void ouvrir() throws IOException {
+        dossier = Files.createTempDirectory("upload-bench-");
+        store = new FileSystemBlobStore(dossier.resolve("blobs"));
+        imageService = new ImageService(dossier, DataSize.ofMegabytes(10), "http://localhost/api/images/", referencesIgnorees(),
+                store, new ImageCache(DataSize.ofMegabytes(64), DataSize.ofMegabytes(1), new SimpleMeterRegistry()),
+                sansTransaction());
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() throws IOException {
+        try (Stream<Path> chemins = Files.walk(dossier)) {
+            for (Path chemin : chemins.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(chemin);
+            }
+        }
+    }
+
+    // Contenu d'un thread : signature PNG, numéro d'envoi unique, puis octets aléatoires
+    @State(Scope.Thread)
+    public static class Envoi {
+        final byte[] octets = new byte[TAILLE];
+        String nom;
+
+        @Setup(Level.Trial)
+        public void remplir() {
+            ThreadLocalRandom.current().nextBytes(octets);
+            System.arraycopy(SIGNATURE_PNG, 0, octets, 0, SIGNATURE_PNG.length);
+        }
+
+        @Setup(Level.Invocation)
+        public void numeroter(ImageUploadBenchmark banc) {
+            ByteBuffer.wrap(octets).putLong(SIGNATURE_PNG.length, banc.suivant.incrementAndGet());
+        }
+
+        @TearDown(Level.Invocation)
+        public void supprimer(ImageUploadBenchmark banc) throws IOException {
+            banc.store.delete(ImageService.empreinte(nom).orElseThrow());
+        }
+    }
+
+    @Benchmark
+    public String envoyer(Envoi envoi) throws Exception {
+        envoi.nom = imageService.sauvegardeImage(new ByteArrayInputStream(envoi.octets));
+        return envoi.nom;
+    }
+
+    // Dépôt des références sans base : chaque ajout réussit
+    private static ImageRepository referencesIgnorees() {
+        return (ImageRepository) Proxy.newProxyInstance(ImageRepository.class.getClassLoader(), new Class<?>[] { ImageRepository.class },
+                (proxy, methode, arguments) -> methode.getReturnType() == int.class ? 1 : null);
+    }
+
+    private static PlatformTransactionManager sansTransaction() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+}
@@ -0,0 +1,602 @@
+package com.openclassrooms.projet3.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.projet3.dto.MessageDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Archive des anciens messages : un segment par mois (messages-2024-01.seg), rempli à la suite, et son index creux
+ * (messages-2024-01.idx). <br>
+ * Un segment est une suite de blocs : jusqu'à messages.archive.block-size messages, sérialisés puis compressés ensemble
+ * (Deflate). L'index a une entrée de taille fixe par bloc : position et taille du bloc, CRC, identifiants et dates
+ * extrêmes des messages, et un filtre de Bloom des biens du bloc. Tout l'index est gardé en mémoire (quelques centaines
+ * d'octets par bloc), trié par date : une lecture ne décompresse que les blocs qui peuvent contenir le message ou le bien
+ * cherché, et ne parcourt que les blocs antérieurs à la date demandée ou proches de l'identifiant demandé. <br>
+ * L'entrée d'index est écrite après son bloc, et rend le bloc visible : au démarrage, les blocs sans entrée (arrêt
+ * pendant un archivage) sont retirés du segment. Rien n'est jamais réécrit. <br>
+ * Les blocs décompressés les plus lus sont gardés en mémoire (messages.archive.cache-blocks). <br>
+ * Métriques : messages.archive.bytes, messages.archive.blocks et cache.gets (cache=messages-archive).
+ */
+@Component
+public class MessageArchive {
+    private static final Logger LOGGER = Logger.getLogger(MessageArchive.class);
+
+    // Entrée d'index : position (8), taille (4), nombre de messages (4), CRC du bloc (4), identifiants min et max (4 + 4),
+    // dates min et max en millisecondes (8 + 8), filtre de Bloom des biens (256), puis CRC de l'entrée (4)
+    private static final int BITS_FILTRE = 2048;
+    private static final int HACHAGES_FILTRE = 3;
+    private static final int TAILLE_ENTREE = 44 + BITS_FILTRE / 8 + 4;
+
+    private static final Pattern NOM_INDEX = Pattern.compile("messages-(\\d{4}-\\d{2})\\.idx");
+
+    // Du plus récent au plus ancien, comme les fils de messages
+    private static final Comparator<MessageDto> PLUS_RECENT_D_ABORD = Comparator
+            .comparing(MessageDto::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(MessageDto::getId, Comparator.reverseOrder());
+
+    private final Path dossier;
+    private final int tailleBloc;
+
+    // Segments ouverts par mois ; modifiés sous le verrou de l'objet
+    private final Map<YearMonth, Segment> segments = new TreeMap<>();
+    // Index de tous les blocs, remplacé à chaque ajout : les lectures le parcourent sans verrou
+    private volatile Index index = new Index(List.of());
+
+    private final Cache<Bloc, List<MessageDto>> blocsLus;
+
+    // Dossier, taille des blocs et nombre de blocs décompressés gardés en mémoire lus dans application.properties (messages.archive.*)
+    public MessageArchive(@Value("${messages.archive.root}") String dossier,
+                          @Value("${messages.archive.block-size}") int tailleBloc,
+                          @Value("${messages.archive.cache-blocks}") int blocsEnMemoire,
+                          MeterRegistry meterRegistry) throws IOException {
+        this.dossier = Paths.get(dossier);
+        this.tailleBloc = tailleBloc;
+        this.blocsLus = Caffeine.newBuilder()
+                .maximumSize(blocsEnMemoire)
+                .recordStats()
+                .build();
+
+        Files.createDirectories(this.dossier);
+        List<YearMonth> mois;
+        try (Stream<Path> fichiers = Files.list(this.dossier)) {
+            mois = fichiers
+                    .map(fichier -> NOM_INDEX.matcher(fichier.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(nom -> YearMonth.parse(nom.group(1)))
+                    .sorted()
+                    .toList();
+        }
+        List<Bloc> relus = new ArrayList<>();
+        for (YearMonth unMois : mois) {
+            Segment segment = ouvrirSegment(unMois);
+            relus.addAll(relire(segment));
+            segments.put(unMois, segment);
+        }
+        this.index = new Index(relus);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, blocsLus, "messages-archive");
+        Gauge.builder("messages.archive.bytes", this, MessageArchive::taille)
+                .description("Taille des segments de l'archive des messages")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("messages.archive.blocks", this, archive -> archive.index.blocs.size())
+                .description("Blocs compressés de l'archive des messages")
+                .register(meterRegistry);
+        LOGGER.info("Archive des messages : " + relus.stream().mapToLong(bloc -> bloc.nombre).sum() + " messages dans "
+                + relus.size() + " blocs, " + segments.size() + " segments");
+    }
+
+    // --------------------------------------
+    // Lectures
+    // --------------------------------------
+
+    /**
+     * Cherche un message archivé.
+     *
+     * @param id L'identifiant du message.
+     * @return Optional<MessageDto> - Le message, vide s'il n'est pas archivé.
+     * @throws UncheckedIOException Si un bloc ne peut pas être lu.
+     */
+    public Optional<MessageDto> getMessage(Integer id) {
+        Index index = this.index;
+        // Derniers blocs commençant avant l'identifiant, tant que l'un d'eux (ou un bloc antérieur) peut aller jusqu'à lui
+        for (int i = index.commencesAvant(id) - 1; i >= 0 && index.idMaxJusque[i] >= id; i--) {
+            Bloc bloc = index.parId[i];
+            if (id <= bloc.idMax) {
+                for (MessageDto message : lire(bloc)) {
+                    if (message.getId().equals(id)) {
+                        return Optional.of(message);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Lit les messages archivés d'un bien, les plus récents en premier, plus anciens que (avantDate, avantId). <br>
+     * Les blocs sont lus du plus récent au plus ancien, à partir du premier qui peut contenir un message antérieur à la
+     * borne, et la lecture s'arrête dès que les blocs restants ne peuvent plus contenir de message plus récent que ceux
+     * déjà trouvés.
+     *
+     * @param rentalId     L'identifiant du bien.
+     * @param userId       L'auteur des messages à lire, null pour les messages de tous les utilisateurs.
+     * @param plusRecent   La date du message archivé le plus récent du bien : les blocs postérieurs ne sont pas lus.
+     * @param avantDate    La date du dernier message déjà lu (null pour commencer par le plus récent).
+     * @param avantId      L'identifiant du dernier message déjà lu.
+     * @param limite       Le nombre maximum de messages à renvoyer.
+     * @return List<MessageDto> - Les messages trouvés.
+     * @throws UncheckedIOException Si un bloc ne peut pas être lu.
+     */
+    public List<MessageDto> getRentalMessages(Integer rentalId, Integer userId, Timestamp plusRecent, Timestamp avantDate,
+                                              Integer avantId, int limite) {
+        long borne = avantDate == null ? plusRecent.getTime() : Math.min(plusRecent.getTime(), avantDate.getTime());
+        Index index = this.index;
+
+        // Blocs terminés avant la borne, puis, au-dessus, ceux qui commencent avant la borne et finissent après
+        int termines = index.termines(borne);
+        List<Bloc> aCheval = new ArrayList<>();
+        for (int i = termines; i < index.parDate.length && index.dateMinDepuis[i] <= borne; i++) {
+            if (index.parDate[i].dateMin <= borne) {
+                aCheval.add(index.parDate[i]);
+            }
+        }
+
+        List<MessageDto> trouves = new ArrayList<>();
+        // Du bloc le plus récent au plus ancien : les blocs à cheval (triés par date comme parDate), puis les blocs terminés
+        for (int k = termines + aCheval.size() - 1; k >= 0; k--) {
+            Bloc bloc = k >= termines ? aCheval.get(k - termines) : index.parDate[k];
+            if (trouves.size() >= limite && bloc.dateMax < trouves.get(limite - 1).getCreatedAt().getTime()) {
+                break;
+            }
+            if (!bloc.peutContenirBien(rentalId)) {
+                continue;
+            }
+            for (MessageDto message : lire(bloc)) {
+                if (message.getRentalId().equals(rentalId) && (userId == null || userId.equals(message.getUserId()))
+                        && (avantDate == null || estAvant(message, avantDate, avantId))) {
+                    trouves.add(message);
+                }
+            }
+            trouves.sort(PLUS_RECENT_D_ABORD);
+        }
+        return trouves.size() > limite ? new ArrayList<>(trouves.subList(0, limite)) : trouves;
+    }
+
+    public boolean contient(Integer id) {
+        return getMessage(id).isPresent();
+    }
+
+    // Taille totale des segments, en octets
+    public long taille() {
+        return index.blocs.stream().mapToLong(bloc -> bloc.taille).sum();
+    }
+
+    // --------------------------------------
+    // Ajout
+    // --------------------------------------
+
+    /**
+     * Ajoute des messages à l'archive, dans le segment du mois de leur date de création. <br>
+     * Les blocs sont écrits sur le disque avant leurs entrées d'index : au retour, les messages sont archivés
+     * durablement et peuvent être supprimés de la table. <br>
+     * Les blocs de chaque mois sont rendus visibles dès que leurs entrées d'index sont écrites : si un mois suivant
+     * échoue, les mois déjà écrits sont reconnus comme archivés au passage suivant, et ne sont pas écrits deux fois.
+     *
+     * @param messages Les messages à archiver.
+     * @throws IOException En cas d'erreur d'écriture ; les blocs du mois en cours sans entrée d'index sont ignorés.
+     */
+    public synchronized void ajouter(List<MessageDto> messages) throws IOException {
+        Map<YearMonth, List<MessageDto>> parMois = new TreeMap<>();
+        for (MessageDto message : messages) {
+            parMois.computeIfAbsent(YearMonth.from(message.getCreatedAt().toLocalDateTime()), mois -> new ArrayList<>()).add(message);
+        }
+
+        for (Map.Entry<YearMonth, List<MessageDto>> mois : parMois.entrySet()) {
+            Segment segment = segments.get(mois.getKey());
+            if (segment == null) {
+                segment = ouvrirSegment(mois.getKey());
+                segments.put(mois.getKey(), segment);
+            }
+            List<MessageDto> aEcrire = mois.getValue();
+            List<Bloc> nouveaux = new ArrayList<>();
+            long position = segment.fin;
+            for (int debut = 0; debut < aEcrire.size(); debut += tailleBloc) {
+                Bloc bloc = ecrireBloc(segment, position, aEcrire.subList(debut, Math.min(debut + tailleBloc, aEcrire.size())));
+                position += bloc.taille;
+                nouveaux.add(bloc);
+            }
+            // Les blocs d'abord, puis leurs entrées d'index : une entrée ne désigne jamais un bloc absent du disque
+            segment.canal.force(false);
+            ByteBuffer entrees = ByteBuffer.allocate(nouveaux.size() * TAILLE_ENTREE);
+            nouveaux.forEach(bloc -> bloc.ecrireEntree(entrees));
+            // Reste d'une écriture d'index échouée : recouvert, pour que les entrées suivent toujours la dernière valide
+            segment.index.truncate(segment.finIndex);
+            ecrireTout(segment.index, entrees.flip(), segment.finIndex);
+            segment.index.force(false);
+
+            segment.fin = position;
+            segment.finIndex += entrees.limit();
+            index = index.avec(nouveaux);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void fermer() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.canal.close();
+            segment.index.close();
+        }
+    }
+
+    // --------------------------------------
+    // Blocs
+    // --------------------------------------
+
+    private Bloc ecrireBloc(Segment segment, long position, List<MessageDto> messages) throws IOException {
+        ByteArrayOutputStream compresse = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream sortie = new DataOutputStream(new DeflaterOutputStream(compresse, deflater))) {
+            for (MessageDto message : messages) {
+                ecrireMessage(sortie, message);
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] octets = compresse.toByteArray();
+        ecrireTout(segment.canal, ByteBuffer.wrap(octets), position);
+
+        CRC32 crc = new CRC32();
+        crc.update(octets);
+        long[] filtre = new long[BITS_FILTRE / 64];
+        messages.forEach(message -> Bloc.ajouterAuFiltre(filtre, message.getRentalId()));
+        return new Bloc(segment, position, octets.length, messages.size(), (int) crc.getValue(),
+                messages.stream().mapToInt(MessageDto::getId).min().orElseThrow(),
+                messages.stream().mapToInt(MessageDto::getId).max().orElseThrow(),
+                messages.stream().mapToLong(message -> message.getCreatedAt().getTime()).min().orElseThrow(),
+                messages.stream().mapToLong(message -> message.getCreatedAt().getTime()).max().orElseThrow(),
+                filtre);
+    }
+
+    private List<MessageDto> lire(Bloc bloc) {
+        return blocsLus.get(bloc, MessageArchive::decompresser);
+    }
+
+    // Chargement d'un bloc dans le cache ; une erreur de lecture est relancée telle quelle par Caffeine
+    private static List<MessageDto> decompresser(Bloc bloc) {
+        try {
+            ByteBuffer octets = ByteBuffer.allocate(bloc.taille);
+            while (octets.hasRemaining()) {
+                if (bloc.segment.canal.read(octets, bloc.position + octets.position()) < 0) {
+                    throw new EOFException("Segment tronqué : " + bloc.segment.chemin);
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(octets.array());
+            if ((int) crc.getValue() != bloc.crc) {
+                throw new IOException("Bloc corrompu dans " + bloc.segment.chemin + " à la position " + bloc.position);
+            }
+
+            List<MessageDto> messages = new ArrayList<>(bloc.nombre);
+            Inflater inflater = new Inflater();
+            try (DataInputStream entree = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(octets.array()), inflater))) {
+                for (int i = 0; i < bloc.nombre; i++) {
+                    messages.add(lireMessage(entree));
+                }
+            } finally {
+                inflater.end();
+            }
+            return List.copyOf(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Un message : id, bien, auteur, dates (millisecondes et nanosecondes, pour relire exactement la valeur de la table), texte
+    private static void ecrireMessage(DataOutputStream sortie, MessageDto message) throws IOException {
+        sortie.writeInt(message.getId());
+        sortie.writeInt(message.getRentalId());
+        sortie.writeInt(message.getUserId());
+        ecrireDate(sortie, message.getCreatedAt());
+        ecrireDate(sortie, message.getUpdatedAt());
+        sortie.writeBoolean(message.getMessage() != null);
+        if (message.getMessage() != null) {
+            sortie.writeUTF(message.getMessage());
+        }
+    }
+
+    private static MessageDto lireMessage(DataInputStream entree) throws IOException {
+        return MessageDto.builder()
+                .id(entree.readInt())
+                .rentalId(entree.readInt())
+                .userId(entree.readInt())
+                .createdAt(lireDate(entree))
+                .updatedAt(lireDate(entree))
+                .message(entree.readBoolean() ? entree.readUTF() : null)
+                .build();
+    }
+
+    private static void ecrireDate(DataOutputStream sortie, Timestamp date) throws IOException {
+        sortie.writeBoolean(date != null);
+        if (date != null) {
+            sortie.writeLong(date.getTime());
+            sortie.writeInt(date.getNanos());
+        }
+    }
+
+    private static Timestamp lireDate(DataInputStream entree) throws IOException {
+        if (!entree.readBoolean()) {
+            return null;
+        }
+        Timestamp date = new Timestamp(entree.readLong());
+        date.setNanos(entree.readInt());
+        return date;
+    }
+
+    // Ordre des fils de messages : (created_at, id) décroissants
+    private static boolean estAvant(MessageDto message, Timestamp avantDate, Integer avantId) {
+        int comparaison = message.getCreatedAt().compareTo(avantDate);
+        return comparaison < 0 || (comparaison == 0 && message.getId() < avantId);
+    }
+
+    // --------------------------------------
+    // Segments
+    // --------------------------------------
+
+    private Segment ouvrirSegment(YearMonth mois) throws IOException {
+        Path chemin = dossier.resolve("messages-" + mois + ".seg");
+        Path cheminIndex = dossier.resolve("messages-" + mois + ".idx");
+        FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(cheminIndex, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(chemin, canal, index);
+    }
+
+    // Relit les entrées d'index jusqu'à la première invalide, puis retire du segment et de l'index ce qui suit
+    private List<Bloc> relire(Segment segment) throws IOException {
+        List<Bloc> relus = new ArrayList<>();
+        long tailleIndex = segment.index.size();
+        ByteBuffer entree = ByteBuffer.allocate(TAILLE_ENTREE);
+        long fin = 0;
+        long positionEntree = 0;
+        while (positionEntree + TAILLE_ENTREE <= tailleIndex) {
+            entree.clear();
+            while (entree.hasRemaining()) {
+                segment.index.read(entree, positionEntree + entree.position());
+            }
+            Bloc bloc = Bloc.lireEntree(segment, entree.flip());
+            if (bloc == null || bloc.position != fin || bloc.position + bloc.taille > segment.canal.size()) {
+                LOGGER.warn("Entrée d'index invalide dans " + segment.chemin + " à la position " + positionEntree);
+                break;
+            }
+            relus.add(bloc);
+            fin = bloc.position + bloc.taille;
+            positionEntree += TAILLE_ENTREE;
+        }
+        if (segment.canal.size() > fin || tailleIndex > positionEntree) {
+            LOGGER.warn("Archivage interrompu : " + (segment.canal.size() - fin) + " octets sans index retirés de " + segment.chemin);
+            segment.canal.truncate(fin);
+            segment.index.truncate(positionEntree);
+        }
+        segment.fin = fin;
+        segment.finIndex = positionEntree;
+        return relus;
+    }
+
+    private static void ecrireTout(FileChannel canal, ByteBuffer octets, long position) throws IOException {
+        while (octets.hasRemaining()) {
+            position += canal.write(octets, position);
+        }
+    }
+
+    private static final class Segment {
+        private final Path chemin;
+        private final FileChannel canal;
+        private final FileChannel index;
+        // Position du prochain bloc et de sa future entrée d'index
+        private long fin;
+        private long finIndex;
+
+        private Segment(Path chemin, FileChannel canal, FileChannel index) {
+            this.chemin = chemin;
+            this.canal = canal;
+            this.index = index;
+        }
+    }
+
+    // Index des blocs en mémoire, jamais modifié : un ajout en construit un nouveau
+    private static final class Index {
+        private final List<Bloc> blocs;
+        // Blocs par date de leur message le plus récent croissante, et plus petite date de début de parDate[i..]
+        private final Bloc[] parDate;
+        private final long[] dateMinDepuis;
+        // Blocs par plus petit identifiant croissant, et plus grand identifiant de parId[..i]
+        private final Bloc[] parId;
+        private final int[] idMaxJusque;
+
+        private Index(List<Bloc> blocs) {
+            this.blocs = List.copyOf(blocs);
+            // Les blocs sont ajoutés à peu près dans l'ordre des dates : le tri d'un tableau presque trié est linéaire
+            this.parDate = blocs.toArray(Bloc[]::new);
+            Arrays.sort(parDate, Comparator.comparingLong((Bloc bloc) -> bloc.dateMax));
+            this.dateMinDepuis = new long[parDate.length];
+            long minimum = Long.MAX_VALUE;
+            for (int i = parDate.length - 1; i >= 0; i--) {
+                minimum = Math.min(minimum, parDate[i].dateMin);
+                dateMinDepuis[i] = minimum;
+            }
+
+            this.parId = blocs.toArray(Bloc[]::new);
+            Arrays.sort(parId, Comparator.comparingInt((Bloc bloc) -> bloc.idMin));
+            this.idMaxJusque = new int[parId.length];
+            int maximum = Integer.MIN_VALUE;
+            for (int i = 0; i < parId.length; i++) {
+                maximum = Math.max(maximum, parId[i].idMax);
+                idMaxJusque[i] = maximum;
+            }
+        }
+
+        private Index avec(List<Bloc> ajoutes) {
+            List<Bloc> tous = new ArrayList<>(blocs);
+            tous.addAll(ajoutes);
+            return new Index(tous);
+        }
+
+        // Nombre de blocs dont le message le plus récent est antérieur ou égal à la date (recherche dichotomique)
+        private int termines(long date) {
+            int debut = 0;
+            int fin = parDate.length;
+            while (debut < fin) {
+                int milieu = (debut + fin) >>> 1;
+                if (parDate[milieu].dateMax <= date) {
+                    debut = milieu + 1;
+                } else {
+                    fin = milieu;
+                }
+            }
+            return debut;
+        }
+
+        // Nombre de blocs dont le plus petit identifiant est inférieur ou égal à l'identifiant (recherche dichotomique)
+        private int commencesAvant(int id) {
+            int debut = 0;
+            int fin = parId.length;
+            while (debut < fin) {
+                int milieu = (debut + fin) >>> 1;
+                if (parId[milieu].idMin <= id) {
+                    debut = milieu + 1;
+                } else {
+                    fin = milieu;
+                }
+            }
+            return debut;
+        }
+    }
+
+    private static final class Bloc {
+        private final Segment segment;
+        private final long position;
+        private final int taille;
+        private final int nombre;
+        private final int crc;
+        private final int idMin;
+        private final int idMax;
+        private final long dateMin;
+        private final long dateMax;
+        private final long[] filtre;
+
+        private Bloc(Segment segment, long position, int taille, int nombre, int crc, int idMin, int idMax,
+                     long dateMin, long dateMax, long[] filtre) {
+            this.segment = segment;
+            this.position = position;
+            this.taille = taille;
+            this.nombre = nombre;
+            this.crc = crc;
+            this.idMin = idMin;
+            this.idMax = idMax;
+            this.dateMin = dateMin;
+            this.dateMax = dateMax;
+            this.filtre = filtre;
+        }
+
+        // Faux positifs possibles (le bloc est alors lu pour rien), jamais de faux négatif
+        private boolean peutContenirBien(int rentalId) {
+            for (int bit : bits(rentalId)) {
+                if ((filtre[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void ajouterAuFiltre(long[] filtre, int rentalId) {
+            for (int bit : bits(rentalId)) {
+                filtre[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        // Double hachage : bits h1 + i * h2, tirés d'un mélange de l'identifiant du bien
+        private static int[] bits(int rentalId) {
+            long melange = rentalId * 0x9E3779B97F4A7C15L;
+            melange ^= melange >>> 29;
+            int h1 = (int) melange;
+            int h2 = (int) (melange >>> 32) | 1;
+            int[] bits = new int[HACHAGES_FILTRE];
+            for (int i = 0; i < HACHAGES_FILTRE; i++) {
+                bits[i] = Math.floorMod(h1 + i * h2, BITS_FILTRE);
+            }
+            return bits;
+        }
+
+        private void ecrireEntree(ByteBuffer entrees) {
+            int debut = entrees.position();
+            entrees.putLong(position).putInt(taille).putInt(nombre).putInt(crc)
+                    .putInt(idMin).putInt(idMax).putLong(dateMin).putLong(dateMax);
+            for (long mot : filtre) {
+                entrees.putLong(mot);
+            }
+            CRC32 crcEntree = new CRC32();
+            crcEntree.update(entrees.array(), debut, TAILLE_ENTREE - 4);
+            entrees.putInt((int) crcEntree.getValue());
+        }
+
+        // Renvoie null si l'entrée est incomplète ou abîmée (arrêt pendant son écriture)
+        private static Bloc lireEntree(Segment segment, ByteBuffer entree) {
+            CRC32 crcEntree = new CRC32();
+            crcEntree.update(entree.array(), 0, TAILLE_ENTREE - 4);
+            if ((int) crcEntree.getValue() != entree.getInt(TAILLE_ENTREE - 4)) {
+                return null;
+            }
+            long position = entree.getLong();
+            int taille = entree.getInt();
+            int nombre = entree.getInt();
+            int crc = entree.getInt();
+            int idMin = entree.getInt();
+            int idMax = entree.getInt();
+            long dateMin = entree.getLong();
+            long dateMax = entree.getLong();
+            long[] filtre = new long[BITS_FILTRE / 64];
+            for (int i = 0; i < filtre.length; i++) {
+                filtre[i] = entree.getLong();
+            }
+            return new Bloc(segment, position, taille, nombre, crc, idMin, idMax, dateMin, dateMax, filtre);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.config;
+
+import com.openclassrooms.projet3.images.BlobStore;
+import com.openclassrooms.projet3.images.FileSystemBlobStore;
+import com.openclassrooms.projet3.images.PackFileBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Choix du stockage des images (propriété images.store) : <br>
+ * - filesystem : un fichier par image, dans images.root/ab/cd/&lt;empreinte&gt;. <br>
+ * - pack : les images jusqu'à images.pack.max-blob-size sont regroupées dans des segments de images.pack.segment-size,
+ * dans images.root/packs ; les plus grandes restent un fichier chacune.
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    @Bean
+    public BlobStore blobStore(@Value("${images.store}") String type, @Value("${images.root}") Path dossierImage,
+                               @Value("${images.pack.segment-size}") DataSize tailleSegment,
+                               @Value("${images.pack.max-blob-size}") DataSize tailleMaxContenu) throws IOException {
+        Path racine = dossierImage.toAbsolutePath().normalize();
+        FileSystemBlobStore fichiers = new FileSystemBlobStore(racine);
+
+        return switch (type) {
+            case "filesystem" -> fichiers;
+            case "pack" -> new PackFileBlobStore(racine.resolve("packs"), tailleSegment.toBytes(), tailleMaxContenu.toBytes(), fichiers);
+            default -> throw new IllegalStateException("Stockage d'images inconnu (images.store) : " + type);
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.projet3.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Active le cache applicatif (Caffeine, configuré dans application.properties). <br>
+ * Le cache peut être désactivé sans modifier le code avec spring.cache.type=none.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    // Cache des RentalDto par identifiant
+    public static final String RENTALS_CACHE = "rentals";
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.projet3.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Négociation du format des réponses (JSON, CBOR, Smile) selon l'en-tête Accept. <br>
+ * Les convertisseurs CBOR et Smile utilisent les mappers de {@link ResponseFormats}, dérivés de l'ObjectMapper de Spring Boot.
+ */
+@Configuration
+public class ContentNegotiationConfig implements WebMvcConfigurer {
+
+    private final ResponseFormats responseFormats;
+
+    public ContentNegotiationConfig(ResponseFormats responseFormats) {
+        this.responseFormats = responseFormats;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Les convertisseurs CBOR / Smile par défaut (ObjectMapper non configuré) sont remplacés par les nôtres
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(responseFormats.getCborMapper()));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(responseFormats.getSmileMapper()));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // La représentation dépend de l'en-tête Accept : les caches intermédiaires doivent en tenir compte.
+        // Appliqué à toute méthode qui peut produire plusieurs formats, quel que soit son chemin
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (handler instanceof HandlerMethod methode && plusieursFormats(methode)) {
+                    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                }
+                return true;
+            }
+        });
+    }
+
+    // true si le "produces" de la méthode (@GetMapping, @PostMapping...) annonce plus d'un format
+    private static boolean plusieursFormats(HandlerMethod methode) {
+        RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(methode.getMethod(), RequestMapping.class);
+        return mapping != null && mapping.produces().length > 1;
+    }
+}
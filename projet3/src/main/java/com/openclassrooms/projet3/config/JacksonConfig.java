@@ -0,0 +1,23 @@
+package com.openclassrooms.projet3.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.openclassrooms.projet3.projection.FieldSet;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Personnalisation de l'ObjectMapper de Spring Boot (repris par les mappers CBOR et Smile de {@link ResponseFormats}). <br>
+ * Les DTO portent le filtre {@link FieldSet#FILTRE} : sans sélection de champs dans la requête, ce filtre laisse tout passer.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer filtreDesChamps() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                .setFailOnUnknownId(false));
+    }
+}
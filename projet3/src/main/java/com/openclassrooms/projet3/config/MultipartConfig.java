@@ -0,0 +1,27 @@
+package com.openclassrooms.projet3.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Limites des requêtes multipart (création et modification d'un bien, avec son image). <br>
+ * Elles sont dérivées de images.max-size : un fichier ne dépasse pas la taille d'une image, une requête la taille d'une
+ * image plus images.multipart-overhead pour les autres champs du formulaire. Modifier images.max-size suffit donc. <br>
+ * Les autres propriétés spring.servlet.multipart.* (location, file-size-threshold) restent prises en compte.
+ */
+@Configuration
+public class MultipartConfig {
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties proprietes,
+                                                         @Value("${images.max-size}") DataSize tailleImage,
+                                                         @Value("${images.multipart-overhead}") DataSize marge) {
+        MultipartConfigElement base = proprietes.createMultipartConfig();
+        return new MultipartConfigElement(base.getLocation(), tailleImage.toBytes(), tailleImage.toBytes() + marge.toBytes(),
+                base.getFileSizeThreshold());
+    }
+}
@@ -0,0 +1,83 @@
+package com.openclassrooms.projet3.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+
+/**
+ * Formats de réponse proposés par les API des locations et des messages : JSON, CBOR et Smile. <br>
+ * Les mappers CBOR et Smile sont des copies de l'ObjectMapper configuré par Spring Boot (mêmes modules et options),
+ * seul le format d'écriture change : les mêmes DTO sont sérialisés dans les trois formats. <br>
+ * Ils ne sont volontairement pas déclarés comme beans ObjectMapper, pour ne pas remplacer celui de Spring Boot.
+ */
+@Component
+public class ResponseFormats {
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    // Par ordre de préférence en cas d'égalité dans l'en-tête Accept
+    private static final List<MediaType> FORMATS = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper smileMapper;
+
+    public ResponseFormats(ObjectMapper objectMapper) {
+        this.jsonMapper = objectMapper;
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+    }
+
+    /**
+     * Choisit le format de réponse à partir de l'en-tête Accept (qualités "q" prises en compte).
+     *
+     * @param accept La valeur de l'en-tête Accept, peut être null.
+     * @return MediaType - Le format retenu, JSON si le client n'exprime pas de préférence reconnue.
+     */
+    public MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptes;
+        try {
+            acceptes = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptes);
+        for (MediaType accepte : acceptes) {
+            if (accepte.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType format : FORMATS) {
+                if (accepte.includes(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    // Mapper correspondant au format retenu par negotiate
+    public ObjectMapper mapperFor(MediaType format) {
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(format)) {
+            return cborMapper;
+        } else if (SMILE.equalsTypeAndSubtype(format)) {
+            return smileMapper;
+        }
+        return jsonMapper;
+    }
+
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    public ObjectMapper getSmileMapper() {
+        return smileMapper;
+    }
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.projet3.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Active les tâches planifiées (@Scheduled), comme le nettoyage des images orphelines. <br>
+ * Une tâche est désactivée sans modifier le code avec une expression cron "-".
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
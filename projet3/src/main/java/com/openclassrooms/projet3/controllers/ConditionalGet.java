@@ -0,0 +1,76 @@
+package com.openclassrooms.projet3.controllers;
+
+import com.openclassrooms.projet3.dto.VersionDto;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Gestion des requêtes GET conditionnelles (If-None-Match / If-Modified-Since). <br>
+ * L'ETag et le Last-Modified sont calculés à partir de la version de la ressource, sans la charger :
+ * si le client possède déjà la bonne version, une réponse 304 sans corps est renvoyée.
+ */
+final class ConditionalGet {
+
+    // Le client garde la réponse mais doit la revalider avant de la réutiliser
+    static final CacheControl REVALIDATION = CacheControl.noCache().cachePrivate();
+
+    private ConditionalGet() {}
+
+    /**
+     * Vérifie si le client possède déjà la version courante de la ressource. <br>
+     * Ajoute les en-têtes ETag et Last-Modified à la réponse dans tous les cas.
+     *
+     * @param webRequest La requête en cours.
+     * @param ressource  Le nom de la ressource (ex : "rental", "rentals").
+     * @param version    La version courante de la ressource.
+     * @return true si une réponse 304 a été préparée et que le contrôleur doit renvoyer null.
+     */
+    static boolean isNotModified(WebRequest webRequest, String ressource, VersionDto version) {
+        return webRequest.checkNotModified(etag(ressource, version), lastModified(version));
+    }
+
+    /**
+     * Remplace les en-têtes ETag et Last-Modified par ceux de la version réellement renvoyée, quand elle diffère de celle
+     * lue pour la requête conditionnelle (ressource modifiée entre les deux lectures).
+     *
+     * @param webRequest La requête en cours.
+     * @param ressource  Le nom de la ressource.
+     * @param version    La version de la ressource renvoyée dans le corps.
+     */
+    static void setVersion(WebRequest webRequest, String ressource, VersionDto version) {
+        HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+        if (response == null) {
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, etag(ressource, version));
+        if (version.getUpdatedAt() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified(version));
+        }
+    }
+
+    // ETag faible : W/"ressource-id-date de mise à jour en microsecondes", suivi de la révision pour une collection.
+    // La date est lue à la microseconde (colonnes updated_at timestamp(6)) : deux mises à jour dans la même seconde
+    // donnent deux ETag différents, alors que Last-Modified, à la seconde près en HTTP, ne les distingue pas.
+    // Une même version existe en plusieurs représentations (JSON, CBOR, Smile, compressée ou non),
+    // équivalentes mais pas identiques octet pour octet : un ETag fort serait incorrect.
+    static String etag(String ressource, VersionDto version) {
+        String revision = version.getRevision() == null ? "" : "-" + version.getRevision();
+        return "W/\"" + ressource + "-" + version.getId() + "-" + microsecondes(version) + revision + "\"";
+    }
+
+    // Date de dernière modification en microsecondes, -1 si elle est inconnue
+    private static long microsecondes(VersionDto version) {
+        if (version.getUpdatedAt() == null) {
+            return -1;
+        }
+        return Math.floorDiv(version.getUpdatedAt().getTime(), 1000) * 1_000_000 + version.getUpdatedAt().getNanos() / 1000;
+    }
+
+    // Date de dernière modification, -1 si elle est inconnue (l'en-tête n'est alors pas envoyé)
+    static long lastModified(VersionDto version) {
+        return version.getUpdatedAt() == null ? -1 : version.getUpdatedAt().getTime();
+    }
+}
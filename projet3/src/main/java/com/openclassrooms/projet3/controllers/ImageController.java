@@ -0,0 +1,184 @@
+package com.openclassrooms.projet3.controllers;
+
+import com.openclassrooms.projet3.exception.ImageNotFoundException;
+import com.openclassrooms.projet3.images.Blob;
+import com.openclassrooms.projet3.images.ImageType;
+import com.openclassrooms.projet3.services.ImageService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.log4j.Logger;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/images")
+@Tag(name = "Images Controller", description = "Endpoints related to Images")
+public class ImageController {
+    private static final Logger LOGGER = Logger.getLogger(ImageController.class);
+
+    // Attributs de requête de Tomcat pour envoyer un fichier par sendfile, sans le recopier en mémoire (comme sa DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // En dessous de cette taille, une copie classique coûte moins cher qu'un appel sendfile (même seuil que Tomcat)
+    private static final long SEUIL_SENDFILE = 48 * 1024;
+
+    // Les noms d'image sont uniques et une image n'est jamais réécrite : la réponse peut être réutilisée un an sans revalidation
+    private static final CacheControl IMMUABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    // Une image est servie sur le domaine de l'API : le navigateur ne doit ni deviner un autre type que celui annoncé,
+    // ni exécuter de script si elle est ouverte directement
+    private static final String X_CONTENT_TYPE_OPTIONS = "X-Content-Type-Options";
+    private static final String CONTENT_SECURITY_POLICY = "Content-Security-Policy";
+    private static final String BAC_A_SABLE = "sandbox";
+
+    // --------------------------------------
+    // Injection de dépendance du service ImageService
+    // --------------------------------------
+    private final ImageService imageService;
+
+    public ImageController(ImageService imageService) {
+        this.imageService = imageService;
+    }
+
+    /**
+     * Endpoint pour obtenir une image enregistrée. <br>
+     * L'image est envoyée depuis le disque sans être chargée en mémoire : par sendfile lorsque Tomcat le permet
+     * (y compris pour une image rangée dans un segment, à sa position), sinon par blocs. Les images les plus demandées
+     * sont lues depuis le cache en mémoire (ImageCache). Les requêtes partielles (en-tête Range) sont prises en charge. <br>
+     * Une image ne changeant jamais, If-Range n'est pas comparé : une plage demandée correspond toujours au même contenu. <br>
+     * Le Content-Type est le format enregistré à l'envoi, jamais déduit du nom demandé ; un contenu ancien qui n'est pas
+     * une image acceptée est servi en téléchargement (application/octet-stream, Content-Disposition: attachment). <br>
+     * Correspond à : /images/:name
+     *
+     * @param name       Le nom de l'image, tel que renvoyé lors de son envoi.
+     * @param request    La requête HTTP, utilisée pour l'en-tête Range et les attributs sendfile de Tomcat.
+     * @param response   La réponse HTTP, qui reçoit les en-têtes de sécurité.
+     * @param webRequest La requête en cours, utilisée pour les en-têtes conditionnels.
+     * @return ResponseEntity<?> - Le contenu de l'image (200), ou la plage demandée (206). <br>
+     * Si le client possède déjà l'image (If-None-Match / If-Modified-Since), une réponse 304 est renvoyée. <br>
+     * Si la plage demandée est invalide, une réponse 416 est renvoyée. <br>
+     * Si l'image n'existe pas, ou si l'extension demandée ne correspond pas à son format, une réponse 404 est renvoyée.
+     */
+    @Operation(
+            summary = "Get Image",
+            description = "Streams a stored image. Supports Range requests and conditional GET; responses are cacheable for a year.",
+            tags = { "Image" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the image.", content = { @Content(mediaType = "image/*") }),
+            @ApiResponse(responseCode = "206", description = "Successfully retrieved the requested range of the image.", content = { @Content(mediaType = "image/*") }),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag / date sent by the client.", content = { @Content }),
+            @ApiResponse(responseCode = "404", description = "Image not found, or the extension does not match its format.", content = { @Content }),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable.", content = { @Content })
+    })
+    @GetMapping("/{name}")
+    public ResponseEntity<?> getImage(@PathVariable String name, HttpServletRequest request, HttpServletResponse response,
+                                      WebRequest webRequest) {
+        Blob image;
+        try {
+            image = imageService.getImage(name);
+        }
+        catch (ImageNotFoundException | IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Le nom est l'empreinte du contenu : il suffit comme ETag fort
+        if (webRequest.checkNotModified("\"" + name + "\"", image.lastModified())) {
+            return null;
+        }
+
+        MediaType type = image.getType().map(ImageType::getMediaType).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        proteger(response);
+
+        long taille = image.contentLength();
+        if (!image.isEnMemoire() && HttpMethod.GET.matches(request.getMethod()) && taille >= SEUIL_SENDFILE
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            List<HttpRange> plages;
+            try {
+                plages = HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE));
+                if (plages.size() <= 1) {
+                    return sendfile(request, image, plages, type);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + taille)
+                        .build();
+            }
+        }
+
+        // Sans sendfile (image en cache, HTTPS, petit fichier, plusieurs plages), Spring lit l'image par blocs et découpe lui-même les plages
+        return protections(ResponseEntity.ok(), image)
+                .cacheControl(IMMUABLE)
+                .contentType(type)
+                .body(image);
+    }
+
+    // En-têtes de sécurité de toute réponse d'image ; remplacent ceux déjà posés par Spring Security, sans les doubler
+    private static void proteger(HttpServletResponse response) {
+        response.setHeader(X_CONTENT_TYPE_OPTIONS, "nosniff");
+        response.setHeader(CONTENT_SECURITY_POLICY, BAC_A_SABLE);
+    }
+
+    // Un contenu qui n'est pas une image acceptée n'est jamais affiché par le navigateur : il est téléchargé
+    private static ResponseEntity.BodyBuilder protections(ResponseEntity.BodyBuilder reponse, Blob image) {
+        if (image.getType().isEmpty()) {
+            reponse.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().build().toString());
+        }
+        return reponse;
+    }
+
+    // Confie l'envoi du fichier (ou de la plage demandée) à Tomcat : la réponse est renvoyée sans corps
+    // IllegalArgumentException si la plage demandée est en dehors du fichier
+    private ResponseEntity<?> sendfile(HttpServletRequest request, Blob image, List<HttpRange> plages, MediaType type) {
+        long taille = image.contentLength();
+        long debut = 0;
+        long fin = taille - 1;
+        ResponseEntity.BodyBuilder reponse = ResponseEntity.ok();
+        if (plages.size() == 1) {
+            debut = plages.get(0).getRangeStart(taille);
+            fin = plages.get(0).getRangeEnd(taille);
+            if (debut > fin) {
+                // Plage commençant après la fin du fichier
+                throw new IllegalArgumentException("Plage non satisfaisable.");
+            }
+            reponse = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + debut + "-" + fin + "/" + taille);
+        }
+
+        // Les bornes sont relatives au fichier qui contient l'image
+        request.setAttribute(SENDFILE_FILENAME, image.getFichier().toString());
+        request.setAttribute(SENDFILE_START, image.getPosition() + debut);
+        request.setAttribute(SENDFILE_END, image.getPosition() + fin + 1);
+        LOGGER.debug("Sendfile " + image.getDescription() + " [" + debut + ", " + fin + "]");
+
+        return protections(reponse, image)
+                .cacheControl(IMMUABLE)
+                .contentType(type)
+                .contentLength(fin - debut + 1)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .build();
+    }
+}
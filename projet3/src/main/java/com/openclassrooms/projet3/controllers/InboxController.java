@@ -0,0 +1,111 @@
+package com.openclassrooms.projet3.controllers;
+
+import com.openclassrooms.projet3.config.ResponseFormats;
+import com.openclassrooms.projet3.exception.ConversationDoesNotExistException;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.response.InboxResponse;
+import com.openclassrooms.projet3.response.MessageResponse;
+import com.openclassrooms.projet3.services.ConversationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.apache.log4j.Logger;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/inbox")
+@Tag(name = "Inbox Controller", description = "Endpoints related to the owner's Inbox")
+@SecurityRequirement(name = "bearerAuth")
+public class InboxController {
+    private static final Logger LOGGER = Logger.getLogger(InboxController.class);
+
+    // --------------------------------------
+    // Injection de dépendance du service ConversationService dans le contrôleur
+    // --------------------------------------
+    private final ConversationService conversationService;
+
+    public InboxController(ConversationService conversationService) {
+        this.conversationService = conversationService;
+    }
+
+    /**
+     * Endpoint pour obtenir la boîte de réception de l'utilisateur connecté : une conversation par bien et par interlocuteur,
+     * avec le début du dernier message, sa date et le nombre de messages non lus. <br>
+     * Les conversations les plus récentes viennent en premier ; la liste est paginée par clé. <br>
+     * Correspond à : /inbox?size=20&amp;cursor=...
+     *
+     * @param size      Le nombre de conversations par page (20 par défaut, 100 au maximum).
+     * @param cursor    Le curseur "nextCursor" renvoyé par la page précédente, absent pour la première page.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Réponse HTTP contenant la page de conversations et le curseur suivant au format JSON en cas de succès. <br>
+     * En cas de curseur invalide, une réponse 400 est renvoyée avec un message d'erreur.
+     */
+    @Operation(
+            summary = "Get my Inbox",
+            description = "Retrieves the conversations about the current user's rentals (one per rental and sender) with the latest message snippet and the unread count, most recent first.",
+            tags = { "Inbox" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the inbox.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = InboxResponse.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Invalid cursor.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> getInbox(@RequestParam(required = false) Integer size,
+                                      @RequestParam(required = false) String cursor,
+                                      Principal principal) {
+        try {
+            KeysetCursor apres = KeysetCursor.decode(cursor);
+            return ResponseEntity.ok(conversationService.getInbox(principal.getName(), apres, size));
+
+        } catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+
+        } catch (Exception e) {
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la lecture de votre boîte de réception.");
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(errorResponse);
+        }
+    }
+
+    /**
+     * Endpoint pour marquer comme lus les messages d'une conversation de l'utilisateur connecté. <br>
+     * Correspond à : /inbox/:id/read
+     *
+     * @param id        L'identifiant de la conversation.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<MessageResponse> - Réponse HTTP avec un message de succès, ou 404 si la conversation
+     * n'existe pas ou n'appartient pas à l'utilisateur.
+     */
+    @Operation(
+            summary = "Mark a Conversation as read",
+            description = "Resets the unread count of one of the current user's conversations.",
+            tags = { "Inbox" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Conversation marked as read.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "404", description = "Conversation not found.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) })
+    })
+    @PutMapping("/{id}/read")
+    public ResponseEntity<MessageResponse> markAsRead(@PathVariable Integer id, Principal principal) {
+        try {
+            conversationService.marquerLue(id, principal.getName());
+            return ResponseEntity.ok(new MessageResponse("Conversation marked as read"));
+
+        } catch (ConversationDoesNotExistException e) {
+            return ResponseEntity.status(404).body(new MessageResponse(e.getMessage()));
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.openclassrooms.projet3.controllers;
 
+import com.openclassrooms.projet3.config.ResponseFormats;
 import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.dto.VersionDto;
+import com.openclassrooms.projet3.projection.FieldSet;
 import com.openclassrooms.projet3.entites.MessageEntity;
+import com.openclassrooms.projet3.exception.RentalDoesNotExistException;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
 import com.openclassrooms.projet3.request.MessageSendRequest;
+import com.openclassrooms.projet3.response.MessageResponse;
+import com.openclassrooms.projet3.response.MessageThreadResponse;
 import com.openclassrooms.projet3.services.MessageService;
+import com.openclassrooms.projet3.services.MessageStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,16 +20,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.security.Principal;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -30,78 +44,198 @@ import java.util.Optional;
 public class MessageController {
 
     private final MessageService messageService;
+    private final MessageStreamService messageStreamService;
 
-    public MessageController(MessageService messageService) {
+    public MessageController(MessageService messageService, MessageStreamService messageStreamService) {
         this.messageService = messageService;
+        this.messageStreamService = messageStreamService;
     }
 
     /**
      * Opération pour obtenir tous les messages. <br>
-     * Cette méthode GET permet de récupérer une liste de tous les messages.
+     * Cette méthode GET permet de récupérer la liste des messages de l'utilisateur connecté : ceux qu'il a écrits
+     * et ceux reçus sur ses biens. <br>
+     * Si la liste n'a pas changé depuis l'ETag (If-None-Match) ou la date (If-Modified-Since) envoyés,
+     * une réponse 304 est renvoyée sans charger les messages. <br>
+     * Avec le paramètre fields, seules les colonnes demandées sont lues et renvoyées. <br>
+     * Avec le paramètre rentalId, seuls les messages de ce bien sont renvoyés, page par page (voir {@link #getRentalMessages}),
+     * au propriétaire du bien (tout le fil) et aux utilisateurs qui y ont écrit (leurs propres messages). <br>
+     * Correspond à : /messages?fields=id,rentalId,createdAt ou /messages?rentalId=1&amp;size=20&amp;cursor=...
      *
-     * @return ResponseEntity<List<MessageDto>> - Liste des messages récupérés.
+     * @param fields     Les champs à renvoyer pour chaque message, séparés par des virgules (tous par défaut).
+     * @param rentalId   L'identifiant du bien dont lire les messages, absent pour tous les messages.
+     * @param size       Avec rentalId, le nombre de messages par page (20 par défaut, 100 au maximum).
+     * @param cursor     Avec rentalId, le curseur "nextCursor" renvoyé par la page précédente.
+     * @param webRequest La requête en cours, utilisée pour les en-têtes conditionnels.
+     * @param principal  L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Liste des messages récupérés, ou une page de messages avec rentalId. <br>
+     * Une réponse 400 est renvoyée si un champ est inconnu ou si le curseur est invalide, 404 si le bien n'existe pas
+     * ou si l'utilisateur n'a pas accès à ses messages.
      * @throws Exception En cas d'erreur interne du serveur.
      */
     @Operation(
             summary = "Get All Messages",
-            description = "Retrieves a list of all messages.",
+            description = "Retrieves the messages written by the current user or received on their rentals. With rentalId, retrieves a page of that rental's messages, newest first; use the returned nextCursor to read the next page. The rental's owner reads the whole thread, the users who wrote about it only their own messages.",
             tags = { "Message" })
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of messages.", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = MessageEntity.class))) }),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of messages.", content = {
+                    @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = MessageEntity.class))),
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = MessageThreadResponse.class)) }),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag / date sent by the client.", content = { @Content }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Unknown field or invalid cursor.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "404", description = "Rental not found, or its messages are not readable by the current user.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
             @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
     })
-    @GetMapping(produces = "application/json")
-    public ResponseEntity<List<MessageDto>> getAllMessages() {
-        return ResponseEntity.ok(messageService.getAllMessages());
+    @GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> getAllMessages(@RequestParam(required = false) String fields,
+                                            @RequestParam(required = false) Integer rentalId,
+                                            @RequestParam(required = false) Integer size,
+                                            @RequestParam(required = false) String cursor,
+                                            WebRequest webRequest,
+                                            Principal principal) {
+        FieldSet champs;
+        try {
+            champs = FieldSet.parse(fields, MessageDto.CHAMPS);
+        } catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        if (rentalId != null) {
+            return getRentalMessages(rentalId, principal.getName(), size, cursor, champs);
+        }
+
+        // La liste dépend de l'utilisateur : son identifiant fait partie de l'ETag
+        if (ConditionalGet.isNotModified(webRequest, "messages-" + principal.getName(), messageService.getMessagesVersion())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(ConditionalGet.REVALIDATION)
+                .body(champs.appliquer(messageService.getAllMessages(principal.getName(), champs)));
+    }
+
+    /**
+     * Renvoie une page des messages d'un bien, les plus récents en premier. <br>
+     * Utilisée par GET /api/messages?rentalId= et GET /api/rentals/:id/messages.
+     *
+     * @param rentalId      L'identifiant du bien.
+     * @param currentUserId L'identifiant de l'utilisateur actuel.
+     * @param size          Le nombre de messages par page.
+     * @param cursor        Le curseur "nextCursor" renvoyé par la page précédente, absent pour la première page.
+     * @param champs        Les champs à renvoyer pour chaque message.
+     * @return ResponseEntity<?> - La page de messages et le curseur suivant, 400 si le curseur est invalide,
+     * 404 si le bien n'existe pas ou si l'utilisateur n'en est ni le propriétaire ni un interlocuteur.
+     */
+    private ResponseEntity<?> getRentalMessages(Integer rentalId, String currentUserId, Integer size, String cursor, FieldSet champs) {
+        try {
+            KeysetCursor apres = KeysetCursor.decode(cursor);
+            return ResponseEntity.ok(champs.appliquer(messageService.getRentalMessages(rentalId, currentUserId, apres, size)));
+
+        } catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+
+        } catch (RentalDoesNotExistException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.status(404).body(errorResponse);
+        }
     }
 
     /**
      * Opération pour envoyer un nouveau message.  <br>
-     * Cette méthode POST gère les requêtes pour envoyer un message.
+     * Cette méthode POST gère les requêtes pour envoyer un message. L'auteur du message est l'utilisateur connecté.
      *
      * @param messageSendRequest L'objet de requête contenant les informations sur le message à envoyer.
+     * @param principal          L'utilisateur principal effectuant la demande.
      * @return ResponseEntity - Une réponse HTTP indiquant le succès ou l'échec de l'envoi du message.
      * @throws IllegalArgumentException Si les données requises ne sont pas renseignées correctement.
      */
     @Operation(
             summary = "Send a new Message",
-            description = "Handles requests to send a message.",
+            description = "Handles requests to send a message. The message is sent as the current user; user_id in the body is ignored.",
             tags = { "Message" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Message sent successfully.", content = { @Content(mediaType = "application/json") }),
             @ApiResponse(responseCode = "400", description = "Bad request or invalid data.", content = { @Content(mediaType = "application/json") }),
-            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "503", description = "Too many messages waiting to be written, or the write took too long (group commit mode), retry later.", content = { @Content(mediaType = "application/json") })
     })
-    @PostMapping(produces = "application/json")
-    public ResponseEntity<String> envoieMessages(@RequestBody MessageSendRequest messageSendRequest){
+    @PostMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<MessageResponse> envoieMessages(@RequestBody MessageSendRequest messageSendRequest, Principal principal){
         try {
             // Enregistre le nouvel objet dans la base de données en utilisant la méthode du service
-            MessageDto createdMessage = messageService.envoieMessages(messageSendRequest);
+            MessageDto createdMessage = messageService.envoieMessages(messageSendRequest, principal.getName());
 
-            // Crée un message JSON avec le message de succès
-            String jsonResponse = "{\"message\": \"Message sent with success\"}";
+            // Crée la réponse avec le message de succès
+            MessageResponse successResponse = new MessageResponse("Message sent with success");
 
-            // Retourne un ResponseEntity avec le message JSON de succès
-            return ResponseEntity.ok(jsonResponse);
+            // Retourne un ResponseEntity avec le message de succès
+            return ResponseEntity.ok(successResponse);
 
         } catch (IllegalArgumentException e) {
             // En cas d'erreur de données requises non renseignées,
             // retourne une réponse avec le message d'erreur
-            String errorResponse = "{\"message\": \"" + e.getMessage() + "\"}";
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
             return ResponseEntity.badRequest().body(errorResponse);
 
+        } catch (RejectedExecutionException e) {
+            // File d'écriture groupée pleine, ou écriture trop longue : le client peut réessayer
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.status(503).body(errorResponse);
+
         } catch (Exception e) {
             // En cas d'autres erreurs, retourne une réponse avec le message d'erreur
-            String errorResponse = "{\"message\": \"Une erreur s'est produite lors de la création du message.\"}";
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la création du message.");
             return ResponseEntity.status(500).body(errorResponse);
         }
     }
 
+    /**
+     * Opération pour recevoir en direct les nouveaux messages des biens de l'utilisateur connecté. <br>
+     * Cette méthode GET ouvre un flux Server-Sent Events : chaque message envoyé pour un de ses biens arrive
+     * en événement "message" (le message en JSON, son identifiant en id). Un commentaire est envoyé régulièrement
+     * pour garder la connexion ouverte. <br>
+     * Le serveur ferme le flux au bout de messages.stream.timeout, ou plus tôt si le client ne lit pas assez vite :
+     * le client se reconnecte et relit les messages manqués avec GET /api/rentals/:id/messages. <br>
+     * Correspond à : /messages/stream
+     *
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<SseEmitter> - Le flux des messages, ou une réponse 503 sans corps si le nombre maximum de connexions est atteint.
+     */
+    @Operation(
+            summary = "Stream new Messages",
+            description = "Opens a Server-Sent Events stream of the new messages sent for the current user's rentals (event \"message\", JSON data). The server may close the stream; reconnect and read missed messages with GET /api/rentals/{id}/messages.",
+            tags = { "Message" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Stream opened.", content = { @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE) }),
+            @ApiResponse(responseCode = "503", description = "Too many open streams, retry later.", content = { @Content })
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessages(Principal principal) {
+        try {
+            SseEmitter emetteur = messageStreamService.abonner(Integer.valueOf(principal.getName()));
+            return ResponseEntity.ok()
+                    .contentType(MediaType.TEXT_EVENT_STREAM)
+                    // Désactive la mise en tampon des proxys (nginx), qui retarderait les événements
+                    .header("X-Accel-Buffering", "no")
+                    .body(emetteur);
+
+        } catch (IllegalStateException e) {
+            // Sans corps : le type de retour doit rester ResponseEntity<SseEmitter> pour que Spring ouvre le flux
+            return ResponseEntity.status(503).build();
+        }
+    }
+
     /**
      * Opération pour obtenir un message par son identifiant. <br>
-     * Cette méthode GET gère les requêtes pour récupérer un message par son identifiant.
+     * Cette méthode GET gère les requêtes pour récupérer un message par son identifiant. <br>
+     * Si le message n'a pas changé depuis l'ETag (If-None-Match) ou la date (If-Modified-Since) envoyés,
+     * une réponse 304 est renvoyée sans charger le message. <br>
+     * Seuls l'auteur du message et le propriétaire du bien peuvent le lire ; pour les autres, une réponse 404 est renvoyée.
      *
      * @param id L'identifiant du message à récupérer.
+     * @param webRequest La requête en cours, utilisée pour les en-têtes conditionnels.
+     * @param principal  L'utilisateur principal effectuant la demande.
      * @return Optional<MessageEntity> - L'objet représentant le message récupéré, s'il existe.
      */
     @Operation(
@@ -110,12 +244,22 @@ public class MessageController {
             tags = { "Message" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Message retrieved successfully.", content = { @Content(mediaType = "application/json") }),
-            @ApiResponse(responseCode = "404", description = "Message not found.", content = { @Content(mediaType = "application/json") })
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag / date sent by the client.", content = { @Content }),
+            @ApiResponse(responseCode = "404", description = "Message not found, or not readable by the current user.", content = { @Content(mediaType = "application/json") })
     })
-    @GetMapping(value = "/{id}", produces = "application/json")
-    public ResponseEntity<MessageDto> getMessageById(@PathVariable Integer id) {
+    @GetMapping(value = "/{id}", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<MessageDto> getMessageById(@PathVariable Integer id, WebRequest webRequest, Principal principal) {
         try{
-            return ResponseEntity.ok(messageService.getMessageById(id));
+            Optional<VersionDto> version = messageService.getMessageVersion(id, principal.getName());
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (ConditionalGet.isNotModified(webRequest, "message", version.get())) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .cacheControl(ConditionalGet.REVALIDATION)
+                    .body(messageService.getMessageById(id, principal.getName()));
 
         } catch (Exception e){
             return ResponseEntity.status(500).build();
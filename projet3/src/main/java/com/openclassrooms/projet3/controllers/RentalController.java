@@ -1,14 +1,37 @@
 package com.openclassrooms.projet3.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.projet3.config.ResponseFormats;
 import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.dto.RentalStatisticsDto;
+import com.openclassrooms.projet3.dto.VersionDto;
 import com.openclassrooms.projet3.entites.RentalEntity;
 import com.openclassrooms.projet3.exception.ImageNotFoundException;
+import com.openclassrooms.projet3.exception.ImageTooLargeException;
+import com.openclassrooms.projet3.exception.UnsupportedImageTypeException;
 import com.openclassrooms.projet3.exception.RentalDoesNotExistException;
+import com.openclassrooms.projet3.exception.UserDoesNotExistException;
+import com.openclassrooms.projet3.importer.ImportFormat;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.pagination.RentalSort;
+import com.openclassrooms.projet3.projection.FieldSet;
 import com.openclassrooms.projet3.request.RentalCreationRequest;
+import com.openclassrooms.projet3.request.RentalSearchRequest;
 import com.openclassrooms.projet3.request.RentalUpdateRequest;
+import com.openclassrooms.projet3.response.MessageResponse;
+import com.openclassrooms.projet3.response.MessageThreadResponse;
+import com.openclassrooms.projet3.response.OwnerRentalsResponse;
+import com.openclassrooms.projet3.response.RentalImportResponse;
+import com.openclassrooms.projet3.response.RentalPageResponse;
 import com.openclassrooms.projet3.response.RentalResponse;
+import com.openclassrooms.projet3.response.RentalSearchResponse;
+import com.openclassrooms.projet3.services.MessageService;
+import com.openclassrooms.projet3.services.RentalImportService;
 import com.openclassrooms.projet3.services.RentalService;
+import com.openclassrooms.projet3.services.RentalStatisticsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -18,17 +41,28 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.apache.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.security.Principal;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
@@ -42,52 +76,227 @@ public class RentalController {
     // Injection de dépendance du service RentalService
     // --------------------------------------
     private final RentalService rentalService;
+    private final RentalImportService rentalImportService;
+    private final RentalStatisticsService rentalStatisticsService;
+    private final MessageService messageService;
+
+    // Mappers JSON / CBOR / Smile, partagés entre les requêtes
+    private final ResponseFormats responseFormats;
 
     // --------------------------------------
     // Contrôleur
     // --------------------------------------
-    public RentalController(RentalService rentalService) {
+    public RentalController(RentalService rentalService, RentalImportService rentalImportService,
+                            RentalStatisticsService rentalStatisticsService, MessageService messageService,
+                            ResponseFormats responseFormats) {
         this.rentalService = rentalService;
+        this.rentalImportService = rentalImportService;
+        this.rentalStatisticsService = rentalStatisticsService;
+        this.messageService = messageService;
+        this.responseFormats = responseFormats;
     }
 
     /**
-     * Endpoint pour obtenir toutes les locations. <br>
-     * Cette méthode GET permet de récupérer une liste de toutes les entités de location. <br>
-     * Correspond à : /rentals
+     * Endpoint pour obtenir les locations, page par page. <br>
+     * Cette méthode GET permet de récupérer une page d'entités de location, triée et paginée par clé (keyset). <br>
+     * Correspond à : /rentals?sort=createdAt|price|surface&amp;size=20&amp;cursor=...&amp;fields=id,name,price,picture
      *
-     * @return ResponseEntity<String> - Réponse HTTP contenant la liste des locations au format
-     * JSON en cas de succès. <br>
+     * @param sort   L'ordre de tri : createdAt (par défaut, les plus récents en premier), price ou surface (croissants).
+     * @param size   Le nombre de locations par page (20 par défaut, 100 au maximum).
+     * @param cursor Le curseur "nextCursor" renvoyé par la page précédente, absent pour la première page.
+     * @param fields Les champs à renvoyer pour chaque location, séparés par des virgules (tous par défaut).
+     * @param webRequest La requête en cours, utilisée pour les en-têtes conditionnels.
+     * @return ResponseEntity<StreamingResponseBody> - Réponse HTTP contenant la page de locations et le curseur suivant au format
+     * demandé par l'en-tête Accept (JSON par défaut, CBOR ou Smile) en cas de succès, écrite en flux. <br>
+     * Si la liste n'a pas changé depuis l'ETag (If-None-Match) ou la date (If-Modified-Since) envoyés, une réponse 304 est renvoyée. <br>
+     * En cas de paramètre invalide, une réponse 400 est renvoyée. <br>
      * En cas d'erreur interne du serveur, une réponse avec un code d'erreur approprié est renvoyée.
      */
     @Operation(
             summary = "Get All Rentals",
-            description = "Retrieves a list of all rental entities.",
+            description = "Retrieves a page of rental entities, sorted by creation date, price or surface. Use the returned nextCursor to read the next page. Use fields (e.g. id,name,price,picture) to receive only some fields.",
             tags = { "Rental" })
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of rentals.", content = { @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = RentalEntity.class))) }),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of rentals.", content = {
+                    @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = RentalPageResponse.class)),
+                    @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE, schema = @Schema(implementation = RentalPageResponse.class)),
+                    @Content(mediaType = ResponseFormats.SMILE_VALUE, schema = @Schema(implementation = RentalPageResponse.class)) }),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag / date sent by the client.", content = { @Content }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Unknown sort order, invalid cursor or unknown field.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
             @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "text/plain") })
     })
-    @GetMapping(produces = "application/json")
-    public ResponseEntity<String> getAllRentals() {
-        try{
-            List<RentalDto> listGetAll = rentalService.getAllRentals();
+    @GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<StreamingResponseBody> getAllRentals(@RequestParam(required = false) String sort,
+                                                               @RequestParam(required = false) Integer size,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) String fields,
+                                                               WebRequest webRequest) {
+        // Le format est choisi avant d'écrire quoi que ce soit, la réponse étant produite à la main
+        MediaType format = responseFormats.negotiate(webRequest.getHeader(HttpHeaders.ACCEPT));
+        ObjectMapper mapper = responseFormats.mapperFor(format);
+
+        RentalSort rentalSort;
+        KeysetCursor apres;
+        FieldSet champs;
+        try {
+            // Les paramètres sont vérifiés avant d'écrire la réponse, pour pouvoir encore renvoyer une 400
+            rentalSort = RentalSort.fromParametre(sort);
+            apres = KeysetCursor.decode(cursor);
+            rentalSort.verifier(apres);
+            champs = FieldSet.parse(fields, RentalDto.CHAMPS);
+        }
+        catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest()
+                    .contentType(format)
+                    .body(out -> mapper.writeValue(out, errorResponse));
+        }
 
-            String response = new ObjectMapper().writeValueAsString(listGetAll);
+        // Si la liste n'a pas changé depuis la dernière lecture du client, on répond 304 sans lire les biens
+        if (ConditionalGet.isNotModified(webRequest, "rentals", rentalService.getRentalsVersion())) {
+            return null;
+        }
+
+        // Chaque bien est écrit avec le filtre des champs demandés, sans vider le tampon de sortie après chaque bien
+        ObjectWriter writer = mapper.writer(champs.getFilterProvider())
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        // La page est écrite directement dans la réponse, bien par bien, dans le format négocié
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("rentals");
+
+                String nextCursor = rentalService.streamRentals(rentalSort, apres, size, champs, rentalDto -> {
+                    try {
+                        writer.writeValue(generator, rentalDto);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                generator.writeEndArray();
+                generator.writeStringField("nextCursor", nextCursor);
+                generator.writeEndObject();
+            }
+            catch (UncheckedIOException e) {
+                // Le client a probablement fermé la connexion : la réponse est déjà partiellement envoyée
+                LOGGER.error("Exception : " + e);
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .cacheControl(ConditionalGet.REVALIDATION)
+                .contentType(format)
+                .body(body);
+    }
 
-            String jsonResponse = "{\"rentals\": " + response +"}";
+    /**
+     * Endpoint pour obtenir les locations de l'utilisateur connecté, avec le nombre de messages reçus
+     * et la date du dernier message pour chacune. <br>
+     * Les locations les plus récentes viennent en premier ; la liste est paginée par clé. <br>
+     * Correspond à : /rentals/mine?size=20&amp;cursor=...
+     *
+     * @param size      Le nombre de locations par page (20 par défaut, 100 au maximum).
+     * @param cursor    Le curseur "nextCursor" renvoyé par la page précédente, absent pour la première page.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Réponse HTTP contenant la page de locations et le curseur suivant au format JSON en cas de succès. <br>
+     * En cas de curseur invalide, une réponse 400 est renvoyée avec un message d'erreur.
+     */
+    @Operation(
+            summary = "Get my Rentals",
+            description = "Retrieves the current user's rentals with their message count and latest message date, newest rentals first.",
+            tags = { "Rental" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the user's rentals.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = OwnerRentalsResponse.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Invalid cursor.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @GetMapping(value = "/mine", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> getMyRentals(@RequestParam(required = false) Integer size,
+                                          @RequestParam(required = false) String cursor,
+                                          Principal principal) {
+        try {
+            KeysetCursor apres = KeysetCursor.decode(cursor);
+            return ResponseEntity.ok(rentalService.getOwnerRentals(principal.getName(), apres, size));
+
+        } catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
 
-            // Appel à la méthode de RentalService
-            return ResponseEntity.ok().body(jsonResponse);
+        } catch (Exception e) {
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la lecture de vos biens locatifs.");
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(errorResponse);
         }
-        catch (Exception e) {
-            LOGGER.error("Exception : "+ e);
-            return ResponseEntity.status(500).build();
+    }
+
+    /**
+     * Endpoint pour obtenir les statistiques de marché des locations. <br>
+     * Cette méthode GET renvoie le nombre de locations, le prix moyen, les percentiles des prix et des prix au m²
+     * et l'histogramme des surfaces. Les statistiques sont tenues à jour en mémoire : la lecture ne parcourt pas la table. <br>
+     * Correspond à : /rentals/statistics
+     *
+     * @return ResponseEntity<RentalStatisticsDto> - Réponse HTTP contenant les statistiques au format JSON.
+     */
+    @Operation(
+            summary = "Get Rental Statistics",
+            description = "Retrieves market statistics over all rentals: mean price, price and price per square meter percentiles (1% relative accuracy), surface histogram.",
+            tags = { "Rental" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the statistics.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = RentalStatisticsDto.class)) })
+    })
+    @GetMapping(value = "/statistics", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<RentalStatisticsDto> getRentalStatistics() {
+        return ResponseEntity.ok(rentalStatisticsService.getStatistics());
+    }
+
+    /**
+     * Endpoint pour rechercher des locations par mots-clés et par fourchette de prix et de surface. <br>
+     * Cette méthode GET permet de filtrer les locations côté serveur au lieu de télécharger toute la liste. <br>
+     * Tous les critères sont optionnels ; les résultats sont triés par pertinence si q est renseigné,
+     * sinon par prix puis surface croissants, et paginés par clé. <br>
+     * Correspond à : /rentals/search?q=&amp;minPrice=&amp;maxPrice=&amp;minSurface=&amp;maxSurface=&amp;ownerId=&amp;size=20&amp;cursor=...
+     *
+     * @param criteres Les critères de recherche (q, minPrice, maxPrice, minSurface, maxSurface, ownerId).
+     * @param size     Le nombre de résultats par page (20 par défaut, 100 au maximum).
+     * @param cursor   Le curseur "nextCursor" renvoyé par la page précédente, absent pour la première page.
+     * @return ResponseEntity<?> - Réponse HTTP contenant la page de résultats et le curseur suivant au format JSON en cas de succès. <br>
+     * En cas de fourchette inversée ou de curseur invalide, une réponse 400 est renvoyée avec un message d'erreur. <br>
+     * En cas d'erreur interne du serveur, une réponse 500 est renvoyée.
+     */
+    @Operation(
+            summary = "Search Rentals",
+            description = "Searches rentals by keywords (q, in name and description), price range, surface range and owner. Results are ranked by relevance when q is given, otherwise sorted by price then surface, and paginated with nextCursor.",
+            tags = { "Rental" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the matching rentals.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = RentalSearchResponse.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Inverted range or invalid cursor.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @GetMapping(value = "/search", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> searchRentals(@ModelAttribute RentalSearchRequest criteres,
+                                           @RequestParam(required = false) Integer size,
+                                           @RequestParam(required = false) String cursor) {
+        try {
+            KeysetCursor apres = KeysetCursor.decode(cursor);
+            return ResponseEntity.ok(rentalService.searchRentals(criteres, apres, size));
+
+        } catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+
+        } catch (Exception e) {
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la recherche des biens locatifs.");
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(errorResponse);
         }
     }
 
     /**
      * Endpoint pour créer un bien de location. <br>
      * Cette méthode POST permet de créer une nouvelle entité de location. <br>
+     * L'image est envoyée dans le champ picture, ou désignée par pictureName si elle a été envoyée par /api/uploads. <br>
      * Correspond à : /rentals
      * @param rentalRequest     Les détails de la demande de création de location.
      * @param principal         L'utilisateur principal effectuant la demande.
@@ -97,44 +306,154 @@ public class RentalController {
      */
     @Operation(
             summary = "Create a new rental",
-            description = "Creates a new rental entity.",
+            description = "Creates a new rental entity. Send the picture in the picture field, or give the name returned by POST /api/uploads/{id}/commit in pictureName.",
             tags = { "Rental" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successfully created the rental.", content = { @Content(mediaType = "application/json") }),
-            @ApiResponse(responseCode = "400", description = "Bad request. Check if all required fields are provided.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Check if all required fields are provided and if pictureName is a stored image.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "413", description = "The picture exceeds the maximum size.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "415", description = "The picture is not a JPEG, PNG, GIF or WebP image.", content = { @Content(mediaType = "application/json") }),
             @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "text/plain") })
     })
-    @PostMapping(consumes = "multipart/form-data", produces = "application/json")
-    public ResponseEntity<String> createRental(@ModelAttribute RentalCreationRequest rentalRequest, Principal principal) {
+    @PostMapping(consumes = "multipart/form-data", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<MessageResponse> createRental(@ModelAttribute RentalCreationRequest rentalRequest, Principal principal) {
         try {
             // Enregistre le nouvel objet dans la base de données en utilisant la méthode du service
             RentalEntity createdRental = rentalService.createRental(rentalRequest, principal.getName());
 
-            // Crée un message JSON avec le message de succès
-            String jsonResponse = "{\"message\": \"Rental created !\"}";
+            // Crée la réponse avec le message de succès
+            MessageResponse successResponse = new MessageResponse("Rental created !");
+
+            // Retourne un ResponseEntity avec le message de succès
+            return ResponseEntity.ok(successResponse);
+
+        } catch (ImageTooLargeException e) {
+            // L'image envoyée dépasse la taille maximale
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
 
-            // Retourne un ResponseEntity avec le message JSON de succès
-            return ResponseEntity.ok(jsonResponse);
+        } catch (UnsupportedImageTypeException e) {
+            // L'image envoyée n'est pas dans un format accepté
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(errorResponse);
 
         } catch (IllegalArgumentException e) {
             // En cas d'erreur de données requises non renseignées, retourne une réponse avec le message d'erreur
-            String errorResponse = "{\"message\": \"" + e.getMessage() + "\"}";
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
             LOGGER.error("IllegalArgumentException : " + e);
             return ResponseEntity.badRequest().body(errorResponse);
 
         } catch (Exception e) {
             // En cas d'autres erreurs, retourne une réponse avec le message d'erreur
-            String errorResponse = "{\"message\": \"Une erreur s'est produite lors de la création du bien locatif.\"}";
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la création du bien locatif.");
             LOGGER.error("Exception : "+ e);
             return ResponseEntity.status(500).body(errorResponse);
         }
     }
 
+    /**
+     * Endpoint pour importer des biens de location en masse. <br>
+     * Cette méthode POST lit en flux un fichier NDJSON (un objet JSON par ligne) ou CSV (ligne d'en-tête
+     * name,surface,price,description) et crée un bien par ligne valide, au nom de l'utilisateur connecté. <br>
+     * Correspond à : /rentals/import
+     *
+     * @param contentType Le type du contenu envoyé : application/x-ndjson ou text/csv.
+     * @param contenu     Le contenu du fichier (UTF-8).
+     * @param principal   L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Une réponse HTTP contenant le rapport d'import (nombre de biens importés et erreurs ligne par ligne). <br>
+     *                             En cas d'en-tête CSV invalide, une réponse 400 est renvoyée avec un message d'erreur. <br>
+     *                             Si la lecture du fichier s'arrête en cours de route, une réponse 400 est renvoyée avec le rapport :
+     *                             les biens lus avant l'erreur sont importés, failure indique la ligne et la cause de l'arrêt.
+     */
+    @Operation(
+            summary = "Import rentals in bulk",
+            description = "Creates rentals from an NDJSON or CSV upload and returns a per-row error report. Invalid rows are skipped.",
+            tags = { "Rental" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Import done, see the report for rejected rows.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = RentalImportResponse.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Invalid CSV header, or the file could not be read to the end: the report then lists the rows imported before the failure.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @PostMapping(value = "/import", consumes = { "application/x-ndjson", "text/csv" }, produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> importRentals(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream contenu, Principal principal) {
+        try {
+            ImportFormat format = ImportFormat.fromContentType(contentType);
+            RentalImportResponse rapport = rentalImportService.importRentals(contenu, format, principal.getName());
+            return rapport.isComplete() ? ResponseEntity.ok(rapport) : ResponseEntity.badRequest().body(rapport);
+
+        } catch (IllegalArgumentException | UserDoesNotExistException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.badRequest().body(errorResponse);
+
+        } catch (Exception e) {
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de l'import des biens locatifs.");
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(errorResponse);
+        }
+    }
+
+    /**
+     * Endpoint pour obtenir les messages d'un bien, les plus récents en premier. <br>
+     * La liste est paginée par clé sur (date de création, id) : chaque page coûte le même temps,
+     * quel que soit le nombre de messages du bien. <br>
+     * Seuls le propriétaire du bien et les utilisateurs qui y ont écrit peuvent lire ses messages. <br>
+     * Correspond à : /rentals/:id/messages?size=20&amp;cursor=...
+     *
+     * @param id        L'identifiant du bien.
+     * @param size      Le nombre de messages par page (20 par défaut, 100 au maximum).
+     * @param cursor    Le curseur "nextCursor" renvoyé par la page précédente, absent pour la première page.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Réponse HTTP contenant la page de messages et le curseur suivant en cas de succès. <br>
+     * En cas de curseur invalide, une réponse 400 est renvoyée ; si le bien n'existe pas ou si l'utilisateur n'a pas
+     * accès à ses messages, une réponse 404.
+     */
+    @Operation(
+            summary = "Get the messages of a Rental",
+            description = "Retrieves a page of the rental's messages, newest first. Use the returned nextCursor to read the next page. Only the rental's owner and the users who wrote about it can read its messages.",
+            tags = { "Rental" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the messages.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageThreadResponse.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Invalid cursor.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "404", description = "Rental not found, or its messages are not readable by the current user.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @GetMapping(value = "/{id}/messages", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> getRentalMessages(@PathVariable Integer id,
+                                               @RequestParam(required = false) Integer size,
+                                               @RequestParam(required = false) String cursor,
+                                               Principal principal) {
+        try {
+            KeysetCursor apres = KeysetCursor.decode(cursor);
+            return ResponseEntity.ok(messageService.getRentalMessages(id, principal.getName(), apres, size));
+
+        } catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+
+        } catch (RentalDoesNotExistException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.status(404).body(errorResponse);
+
+        } catch (Exception e) {
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la lecture des messages.");
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(errorResponse);
+        }
+    }
+
     /**
      * Endpoint pour récupérer un bien en location par son ID. <br>
      * Cette méthode GET permet de récupérer une entité de location par son identifiant. <br>
-     * Correspond à : /rentals/:id
+     * Si le bien n'a pas changé depuis l'ETag (If-None-Match) ou la date (If-Modified-Since) envoyés,
+     * une réponse 304 est renvoyée sans charger le bien. <br>
+     * Le bien est lu en entier (il est mis en cache par identifiant), seuls les champs demandés sont renvoyés. <br>
+     * Un bien en cache plus ancien que la version lue en base est relu : l'ETag et le Last-Modified renvoyés sont
+     * toujours ceux du bien contenu dans le corps. <br>
+     * Correspond à : /rentals/:id?fields=id,name,price,picture
      * @param id L'identifiant du bien en location à récupérer.
+     * @param fields Les champs à renvoyer, séparés par des virgules (tous par défaut).
+     * @param webRequest La requête en cours, utilisée pour les en-têtes conditionnels.
      * @return Optional<RentalEntity> - L'objet représentant le bien en location récupéré, s'il existe. <br>
      *                                Si aucun bien en location correspondant à l'ID donné n'est trouvé, Optional.empty() est retourné.
      */
@@ -143,13 +462,38 @@ public class RentalController {
             description = "Retrieves a rental entity by its ID.",
             tags = { "Rental" })
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved the rental.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the rental.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = RentalDto.class)) }),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag / date sent by the client.", content = { @Content }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Unknown field.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
             @ApiResponse(responseCode = "404", description = "Rental not found.", content = { @Content(mediaType = "application/json") })
     })
-    @GetMapping(value = "/{id}", produces = "application/json")
-    public ResponseEntity<RentalDto> getRentalById(@PathVariable Integer id) {
+    @GetMapping(value = "/{id}", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<?> getRentalById(@PathVariable Integer id, @RequestParam(required = false) String fields, WebRequest webRequest) {
+        FieldSet champs;
+        try {
+            champs = FieldSet.parse(fields, RentalDto.CHAMPS);
+        }
+        catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
         try{
-            return ResponseEntity.ok(rentalService.getRentalById(id));
+            Optional<VersionDto> version = rentalService.getRentalVersion(id);
+            if (version.isPresent() && ConditionalGet.isNotModified(webRequest, "rental", version.get())) {
+                return null;
+            }
+            RentalDto rental = rentalService.getRentalById(id);
+            if (version.isPresent() && rental.getUpdatedAt() != null && version.get().getUpdatedAt() != null
+                    && rental.getUpdatedAt().before(version.get().getUpdatedAt())) {
+                rental = rentalService.refreshRentalById(id);
+            }
+            if (version.isEmpty() || !Objects.equals(rental.getUpdatedAt(), version.get().getUpdatedAt())) {
+                ConditionalGet.setVersion(webRequest, "rental", new VersionDto(rental.getId(), rental.getUpdatedAt()));
+            }
+            return ResponseEntity.ok()
+                    .cacheControl(ConditionalGet.REVALIDATION)
+                    .body(champs.appliquer(rental));
         }
         catch(Exception e){
             return ResponseEntity.status(500).build();
@@ -159,6 +503,7 @@ public class RentalController {
     /**
      * Endpoint pour mettre à jour (update) un bien en location par son ID. <br>
      * Cette méthode PUT permet de mettre à jour une entité de location par son identifiant. <br>
+     * L'image peut être remplacée par une image envoyée par /api/uploads, désignée par pictureName. <br>
      *
      * Correspond à : /rentals/:id
      * @ModelAttribute = multipart (form-data avec différents types de variables)
@@ -172,7 +517,7 @@ public class RentalController {
      */
     @Operation(
             summary = "Update Rental by ID",
-            description = "Updates a rental entity by its ID.",
+            description = "Updates a rental entity by its ID. Give pictureName to replace the picture with one sent through /api/uploads.",
             tags = { "Rental" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successfully updated the rental.", content = { @Content(mediaType = "application/json") }),
@@ -180,26 +525,26 @@ public class RentalController {
             @ApiResponse(responseCode = "404", description = "Rental not found.", content = { @Content(mediaType = "application/json") }),
             @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
     })
-    @PutMapping(value = "/{id}", consumes = "multipart/form-data" ,produces = "application/json")
-    public ResponseEntity<String> updateRental(@PathVariable Integer id, @ModelAttribute RentalUpdateRequest rentalUpdateRequest){
+    @PutMapping(value = "/{id}", consumes = "multipart/form-data" ,produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseFormats.SMILE_VALUE })
+    public ResponseEntity<MessageResponse> updateRental(@PathVariable Integer id, @ModelAttribute RentalUpdateRequest rentalUpdateRequest){
         try {
             RentalEntity rentalEntity = rentalService.updateRental(rentalUpdateRequest, id);
 
-            // Crée un message JSON avec le message de succès
-            String jsonResponse = "{\"message\": \"Rental updated !\"}";
+            // Crée la réponse avec le message de succès
+            MessageResponse successResponse = new MessageResponse("Rental updated !");
 
-            return ResponseEntity.ok().body(jsonResponse);
+            return ResponseEntity.ok().body(successResponse);
 
         } catch (IllegalArgumentException e){
-            String errorResponse = "{\"message\": \"" + e.getMessage() + "\"}";
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
             return ResponseEntity.badRequest().body(errorResponse);
 
         } catch(RentalDoesNotExistException e){
-            String errorResponse = "{\"message\": \" "+ e.getMessage() + "\"}";
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
             return ResponseEntity.status(404).body(errorResponse);
 
         } catch(Exception e){
-            String errorResponse = "{\"message\": \"Une erreur s'est produite lors de la modification du bien locatif.\"}";
+            MessageResponse errorResponse = new MessageResponse("Une erreur s'est produite lors de la modification du bien locatif.");
             return ResponseEntity.status(500).body(errorResponse);
         }
     }
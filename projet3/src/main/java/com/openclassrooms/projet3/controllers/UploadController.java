@@ -0,0 +1,242 @@
+package com.openclassrooms.projet3.controllers;
+
+import com.openclassrooms.projet3.dto.UploadSessionDto;
+import com.openclassrooms.projet3.exception.ImageTooLargeException;
+import com.openclassrooms.projet3.exception.UnsupportedImageTypeException;
+import com.openclassrooms.projet3.exception.UploadSessionNotFoundException;
+import com.openclassrooms.projet3.request.UploadCreationRequest;
+import com.openclassrooms.projet3.response.MessageResponse;
+import com.openclassrooms.projet3.response.UploadCommitResponse;
+import com.openclassrooms.projet3.services.ImageService;
+import com.openclassrooms.projet3.services.UploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.apache.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/uploads")
+@Tag(name = "Uploads Controller", description = "Endpoints related to resumable image uploads")
+@SecurityRequirement(name = "bearerAuth")
+public class UploadController {
+    private static final Logger LOGGER = Logger.getLogger(UploadController.class);
+
+    // --------------------------------------
+    // Injection de dépendance des services UploadService et ImageService
+    // --------------------------------------
+    private final UploadService uploadService;
+    private final ImageService imageService;
+
+    // --------------------------------------
+    // Contrôleur
+    // --------------------------------------
+    public UploadController(UploadService uploadService, ImageService imageService) {
+        this.uploadService = uploadService;
+        this.imageService = imageService;
+    }
+
+    /**
+     * Endpoint pour commencer l'envoi d'une image en plusieurs morceaux. <br>
+     * Cette méthode POST réserve la place du fichier et renvoie la taille et le nombre de morceaux à envoyer. <br>
+     * Correspond à : /uploads
+     *
+     * @param uploadRequest Le nom et la taille en octets du fichier.
+     * @param principal     L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Une réponse 201 contenant l'envoi en cas de succès. <br>
+     * Si le nom ou la taille manquent, une réponse 400 est renvoyée. <br>
+     * Si l'image dépasse la taille maximale, une réponse 413 est renvoyée. <br>
+     * Si trop d'envois sont en cours, une réponse 429 est renvoyée.
+     */
+    @Operation(
+            summary = "Start a resumable upload",
+            description = "Reserves the file and returns the chunk size and the number of chunks to send with PUT /api/uploads/{id}/chunks/{index}.",
+            tags = { "Upload" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Upload created.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSessionDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Missing file name or size.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "413", description = "The image exceeds the maximum size.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "429", description = "Too many uploads in progress.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createUpload(@RequestBody UploadCreationRequest uploadRequest, Principal principal) {
+        try {
+            UploadSessionDto session = uploadService.creer(principal.getName(), uploadRequest);
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.getId())).body(session);
+
+        } catch (ImageTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new MessageResponse(e.getMessage()));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(new MessageResponse(e.getMessage()));
+
+        } catch (Exception e) {
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(new MessageResponse("Une erreur s'est produite lors de la création de l'envoi."));
+        }
+    }
+
+    /**
+     * Endpoint pour obtenir l'état d'un envoi. <br>
+     * Cette méthode GET renvoie les morceaux encore manquants, pour reprendre un envoi interrompu. <br>
+     * Correspond à : /uploads/:id
+     *
+     * @param id        L'identifiant de l'envoi.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Une réponse HTTP contenant l'envoi en cas de succès. <br>
+     * Si l'envoi n'existe pas, une réponse 404 est renvoyée.
+     */
+    @Operation(
+            summary = "Get an upload",
+            description = "Returns the upload and its missing chunks, to resume an interrupted upload.",
+            tags = { "Upload" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the upload.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSessionDto.class)) }),
+            @ApiResponse(responseCode = "404", description = "Upload not found, finished or expired.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) })
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getUpload(@PathVariable String id, Principal principal) {
+        try {
+            return ResponseEntity.ok(uploadService.getSession(id, principal.getName()));
+
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint pour envoyer un morceau. <br>
+     * Cette méthode PUT écrit le morceau à sa place dans le fichier : les morceaux peuvent être envoyés dans n'importe quel
+     * ordre, en parallèle, et renvoyés après une erreur. Chaque morceau fait chunkSize octets, sauf le dernier. <br>
+     * Correspond à : /uploads/:id/chunks/:index
+     *
+     * @param id        L'identifiant de l'envoi.
+     * @param index     Le numéro du morceau, à partir de 0.
+     * @param contenu   Les octets du morceau (application/octet-stream).
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Une réponse HTTP contenant l'envoi et ses morceaux manquants en cas de succès. <br>
+     * Si le numéro ou la taille du morceau sont invalides, une réponse 400 est renvoyée. <br>
+     * Si l'envoi n'existe pas, une réponse 404 est renvoyée.
+     */
+    @Operation(
+            summary = "Upload a chunk",
+            description = "Writes the chunk at its position. Chunks may be sent in any order, concurrently, and sent again after a failure.",
+            tags = { "Upload" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Chunk written.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSessionDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Invalid chunk index or size.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "404", description = "Upload not found, finished or expired.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @PutMapping(value = "/{id}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> uploadChunk(@PathVariable String id, @PathVariable int index, InputStream contenu, Principal principal) {
+        try {
+            return ResponseEntity.ok(uploadService.ecrireMorceau(id, principal.getName(), index, contenu));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+
+        } catch (Exception e) {
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(new MessageResponse("Une erreur s'est produite lors de l'écriture du morceau."));
+        }
+    }
+
+    /**
+     * Endpoint pour terminer un envoi. <br>
+     * Cette méthode POST enregistre l'image une fois tous les morceaux reçus. Son nom peut ensuite être donné dans le champ
+     * pictureName d'une location. <br>
+     * Correspond à : /uploads/:id/commit
+     *
+     * @param id        L'identifiant de l'envoi.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Une réponse 201 contenant le nom et l'URL de l'image en cas de succès. <br>
+     * S'il manque des morceaux, une réponse 409 est renvoyée. <br>
+     * Si le fichier n'est pas une image JPEG, PNG, GIF ou WebP, une réponse 415 est renvoyée et l'envoi est abandonné. <br>
+     * Si l'envoi n'existe pas, une réponse 404 est renvoyée.
+     */
+    @Operation(
+            summary = "Commit an upload",
+            description = "Stores the image once every chunk has been received. Use the returned name as pictureName when creating or updating a rental.",
+            tags = { "Upload" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Image stored.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = UploadCommitResponse.class)) }),
+            @ApiResponse(responseCode = "404", description = "Upload not found, finished or expired.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "409", description = "Some chunks are missing.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "415", description = "The file is not a JPEG, PNG, GIF or WebP image.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.", content = { @Content(mediaType = "application/json") })
+    })
+    @PostMapping("/{id}/commit")
+    public ResponseEntity<?> commitUpload(@PathVariable String id, Principal principal) {
+        try {
+            String nomImage = uploadService.valider(id, principal.getName());
+            return ResponseEntity.created(URI.create(imageService.getUrl(nomImage)))
+                    .body(new UploadCommitResponse(nomImage, imageService.getUrl(nomImage)));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new MessageResponse(e.getMessage()));
+
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+
+        } catch (UnsupportedImageTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(new MessageResponse(e.getMessage()));
+
+        } catch (Exception e) {
+            LOGGER.error("Exception : " + e);
+            return ResponseEntity.status(500).body(new MessageResponse("Une erreur s'est produite lors de l'enregistrement de l'image."));
+        }
+    }
+
+    /**
+     * Endpoint pour abandonner un envoi. <br>
+     * Correspond à : /uploads/:id
+     *
+     * @param id        L'identifiant de l'envoi.
+     * @param principal L'utilisateur principal effectuant la demande.
+     * @return ResponseEntity<?> - Une réponse 204 en cas de succès, 404 si l'envoi n'existe pas.
+     */
+    @Operation(
+            summary = "Cancel an upload",
+            description = "Deletes the upload and its file.",
+            tags = { "Upload" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Upload cancelled.", content = { @Content }),
+            @ApiResponse(responseCode = "404", description = "Upload not found, finished or expired.", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)) })
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelUpload(@PathVariable String id, Principal principal) {
+        try {
+            uploadService.annuler(id, principal.getName());
+            return ResponseEntity.noContent().build();
+
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.openclassrooms.projet3.controllers;
 
 import com.openclassrooms.projet3.dto.UserDto;
+import com.openclassrooms.projet3.projection.FieldSet;
+import com.openclassrooms.projet3.response.MessageResponse;
 import com.openclassrooms.projet3.services.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,10 +14,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/user")
 @Tag(name = "User Controller", description = "Endpoints related to User")
@@ -32,10 +33,14 @@ public class UserController {
 
     /**
      * Endpoint pour récupérer tous les utilisateurs. <br>
-     * Cette méthode GET permet de récupérer une liste de tous les utilisateurs.
+     * Cette méthode GET permet de récupérer une liste de tous les utilisateurs. <br>
+     * Avec le paramètre fields, seules les colonnes demandées sont lues et renvoyées. <br>
+     * Correspond à : /user?fields=id,name
      *
+     * @param fields Les champs à renvoyer pour chaque utilisateur, séparés par des virgules (tous par défaut).
      * @return List<UserEntity> - La liste des utilisateurs récupérés. <br>
-     * Si aucun utilisateur n'est trouvé, une liste vide est retournée.
+     * Si aucun utilisateur n'est trouvé, une liste vide est retournée. <br>
+     * Si un champ demandé est inconnu, une réponse 400 est renvoyée.
      */
     @Operation(
             summary = "Get All Users",
@@ -43,11 +48,19 @@ public class UserController {
             tags = { "User" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Users retrieved successfully.", content = { @Content(mediaType = "application/json") }),
+            @ApiResponse(responseCode = "400", description = "Bad request. Unknown field.", content = { @Content(mediaType = "application/json") }),
             @ApiResponse(responseCode = "404", description = "No users found.", content = { @Content(mediaType = "application/json") })
     })
     @GetMapping
-    public ResponseEntity<List<UserDto>> getAllUsers() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) String fields) {
+        try {
+            FieldSet champs = FieldSet.parse(fields, UserDto.CHAMPS);
+            return ResponseEntity.ok(champs.appliquer(userService.getAllUsers(champs)));
+        }
+        catch (IllegalArgumentException e) {
+            MessageResponse errorResponse = new MessageResponse(e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
     }
 
     /**
@@ -0,0 +1,73 @@
+package com.openclassrooms.projet3.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * Conversation de la boîte de réception : le bien, l'interlocuteur, le début du dernier message reçu,
+ * sa date et le nombre de messages non lus.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationDto {
+    // Variables
+    private Integer id;
+    private Integer rentalId;
+    private Integer userId;
+    private String lastMessage;
+    private Timestamp lastAt;
+    private Integer unreadCount;
+
+    // Getters & Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getRentalId() {
+        return rentalId;
+    }
+
+    public void setRentalId(Integer rentalId) {
+        this.rentalId = rentalId;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public Timestamp getLastAt() {
+        return lastAt;
+    }
+
+    public void setLastAt(Timestamp lastAt) {
+        this.lastAt = lastAt;
+    }
+
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.projet3.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * Bien en location vu par son propriétaire : résumé du bien, nombre de messages reçus
+ * et date du dernier message (null si aucun message).
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OwnerRentalDto {
+    // Variables
+    private Integer id;
+    private String name;
+    private Double surface;
+    private Double price;
+    private String picture;
+    private Timestamp createdAt;
+    private Timestamp updatedAt;
+    private Long messageCount;
+    private Timestamp lastMessageAt;
+
+    // Getters & Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Double getSurface() {
+        return surface;
+    }
+
+    public void setSurface(Double surface) {
+        this.surface = surface;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public String getPicture() {
+        return picture;
+    }
+
+    public void setPicture(String picture) {
+        this.picture = picture;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(Long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public Timestamp getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(Timestamp lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+}
@@ -1,21 +1,31 @@
 package com.openclassrooms.projet3.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.openclassrooms.projet3.projection.FieldSet;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
 
 import java.sql.Timestamp;
+import java.util.List;
 
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonFilter(FieldSet.FILTRE)
 public class RentalDto {
+    // Champs pouvant être demandés avec le paramètre "fields", dans l'ordre de la projection complète
+    public static final List<String> CHAMPS = List.of("id", "name", "surface", "price", "picture", "pictureThumbnail", "pictureMedium", "pictureFull", "description", "ownerId", "createdAt", "updatedAt");
+
     // Variables
     private Integer id;
     private String name;
     private Double surface;
     private Double price;
     private String picture;
+    private String pictureThumbnail;
+    private String pictureMedium;
+    private String pictureFull;
     private String description;
     private Integer ownerId;
     private Timestamp createdAt;
@@ -62,6 +72,30 @@ public class RentalDto {
         this.picture = picture;
     }
 
+    public String getPictureThumbnail() {
+        return pictureThumbnail;
+    }
+
+    public void setPictureThumbnail(String pictureThumbnail) {
+        this.pictureThumbnail = pictureThumbnail;
+    }
+
+    public String getPictureMedium() {
+        return pictureMedium;
+    }
+
+    public void setPictureMedium(String pictureMedium) {
+        this.pictureMedium = pictureMedium;
+    }
+
+    public String getPictureFull() {
+        return pictureFull;
+    }
+
+    public void setPictureFull(String pictureFull) {
+        this.pictureFull = pictureFull;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -0,0 +1,111 @@
+package com.openclassrooms.projet3.dto;
+
+import java.util.List;
+
+/**
+ * Statistiques de marché des biens en location : percentiles des prix et des prix au m², histogramme des surfaces. <br>
+ * Les percentiles sont approchés à 1 % près ; ils valent null tant qu'aucun bien n'est compté.
+ */
+public class RentalStatisticsDto {
+    // Variables
+    private final long count;
+    private final Double meanPrice;
+    private final Percentiles price;
+    private final Percentiles pricePerSquareMeter;
+    private final List<Bucket> surfaceHistogram;
+
+    public RentalStatisticsDto(long count, Double meanPrice, Percentiles price, Percentiles pricePerSquareMeter, List<Bucket> surfaceHistogram) {
+        this.count = count;
+        this.meanPrice = meanPrice;
+        this.price = price;
+        this.pricePerSquareMeter = pricePerSquareMeter;
+        this.surfaceHistogram = surfaceHistogram;
+    }
+
+    // Getters
+    public long getCount() {
+        return count;
+    }
+
+    public Double getMeanPrice() {
+        return meanPrice;
+    }
+
+    public Percentiles getPrice() {
+        return price;
+    }
+
+    public Percentiles getPricePerSquareMeter() {
+        return pricePerSquareMeter;
+    }
+
+    public List<Bucket> getSurfaceHistogram() {
+        return surfaceHistogram;
+    }
+
+    /**
+     * Percentiles usuels d'une distribution (p50 = médiane).
+     */
+    public static class Percentiles {
+        private final Double p10;
+        private final Double p25;
+        private final Double p50;
+        private final Double p75;
+        private final Double p90;
+
+        public Percentiles(Double p10, Double p25, Double p50, Double p75, Double p90) {
+            this.p10 = p10;
+            this.p25 = p25;
+            this.p50 = p50;
+            this.p75 = p75;
+            this.p90 = p90;
+        }
+
+        public Double getP10() {
+            return p10;
+        }
+
+        public Double getP25() {
+            return p25;
+        }
+
+        public Double getP50() {
+            return p50;
+        }
+
+        public Double getP75() {
+            return p75;
+        }
+
+        public Double getP90() {
+            return p90;
+        }
+    }
+
+    /**
+     * Seau d'histogramme : nombre de biens dont la valeur est dans [min, max). min ou max est null pour un seau ouvert.
+     */
+    public static class Bucket {
+        private final Double min;
+        private final Double max;
+        private final long count;
+
+        public Bucket(Double min, Double max, long count) {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.projet3.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résumé d'un bien en location pour les listes de résultats : sans la description (jusqu'à 2000 caractères)
+ * ni les dates, lu directement par projection SQL.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RentalSummaryDto {
+    // Variables
+    private Integer id;
+    private String name;
+    private Double surface;
+    private Double price;
+    private String picture;
+    private Integer ownerId;
+
+    // Getters & Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Double getSurface() {
+        return surface;
+    }
+
+    public void setSurface(Double surface) {
+        this.surface = surface;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public String getPicture() {
+        return picture;
+    }
+
+    public void setPicture(String picture) {
+        this.picture = picture;
+    }
+
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Integer ownerId) {
+        this.ownerId = ownerId;
+    }
+}
@@ -0,0 +1,76 @@
+package com.openclassrooms.projet3.dto;
+
+import java.util.List;
+
+/**
+ * État d'un envoi en plusieurs morceaux. <br>
+ * Le morceau n occupe les octets [n * chunkSize, (n + 1) * chunkSize[ du fichier ; le dernier peut être plus court. <br>
+ * Pour reprendre un envoi interrompu, le client renvoie seulement les morceaux listés dans missingChunks.
+ */
+public class UploadSessionDto {
+    // Variables
+    private String id;
+    private String fileName;
+    private Long size;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    private List<Integer> missingChunks;
+
+    public UploadSessionDto(String id, String fileName, Long size, Integer chunkSize, Integer chunkCount, List<Integer> missingChunks) {
+        this.id = id;
+        this.fileName = fileName;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+        this.missingChunks = missingChunks;
+    }
+
+    // Getters & Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Integer chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public Integer getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(Integer chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+}
@@ -1,15 +1,22 @@
 package com.openclassrooms.projet3.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.openclassrooms.projet3.projection.FieldSet;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
 
 import java.sql.Timestamp;
+import java.util.List;
 
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonFilter(FieldSet.FILTRE)
 public class UserDto {
+    // Champs pouvant être demandés avec le paramètre "fields", dans l'ordre de la projection complète
+    public static final List<String> CHAMPS = List.of("id", "email", "name", "createdAt", "updatedAt");
+
     // Variables
     private Integer id;
     private String email;
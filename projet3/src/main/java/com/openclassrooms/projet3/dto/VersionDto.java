@@ -0,0 +1,52 @@
+package com.openclassrooms.projet3.dto;
+
+import java.sql.Timestamp;
+
+/**
+ * Version d'une ressource (ou d'une collection) utilisée pour les requêtes conditionnelles. <br>
+ * Pour une ressource : son identifiant et sa date de mise à jour. <br>
+ * Pour une collection : le plus grand identifiant, la plus récente date de mise à jour, et la révision de la liste
+ * (table COLLECTION_VERSIONS), qui change aussi quand des lignes sont supprimées (archivage des messages).
+ */
+public class VersionDto {
+    // Variables
+    private Integer id;
+    private Timestamp updatedAt;
+    private Long revision;
+
+    // Constructeurs utilisés par les requêtes JPQL "SELECT new ..."
+    public VersionDto(Integer id, Timestamp updatedAt) {
+        this.id = id;
+        this.updatedAt = updatedAt;
+    }
+
+    public VersionDto(Integer id, Timestamp updatedAt, Long revision) {
+        this(id, updatedAt);
+        this.revision = revision;
+    }
+
+    // Getters & Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(Long revision) {
+        this.revision = revision;
+    }
+}
@@ -0,0 +1,35 @@
+package com.openclassrooms.projet3.entites;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+/**
+ * Révision d'une liste servie avec un ETag (/api/rentals, /api/messages) : une ligne par liste, lue par clé primaire. <br>
+ * La révision est incrémentée dans la transaction qui modifie la liste, pour que la version de la liste change
+ * sans compter ses lignes.
+ */
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "COLLECTION_VERSIONS")
+public class CollectionVersionEntity {
+    // Nom de la liste : "rentals" ou "messages"
+    @Id
+    private String name;
+
+    private Long revision;
+
+    // --------------------------------------
+    //Getter & Setter
+    // --------------------------------------
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Long getRevision() { return revision; }
+    public void setRevision(Long revision) { this.revision = revision; }
+}
@@ -0,0 +1,128 @@
+package com.openclassrooms.projet3.entites;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * Résumé d'une conversation : les messages d'un interlocuteur (user_id) sur un bien, vus par son propriétaire (owner_id). <br>
+ * Mis à jour dans la transaction de chaque message envoyé ; owner_id est recopié du bien pour que la boîte de réception
+ * se lise sur le seul index CONVERSATIONS_owner_id_last_at_index.
+ */
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "CONVERSATIONS")
+public class ConversationEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "rental_id")
+    private Integer rentalId;
+
+    @Column(name = "owner_id")
+    private Integer ownerId;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "last_message")
+    private String lastMessage;
+
+    @Column(name = "last_at")
+    private Timestamp lastAt;
+
+    @Column(name = "unread_count")
+    private Integer unreadCount;
+
+    @Column(name = "created_at")
+    private Timestamp createdAt;
+
+    @Column(name = "updated_at")
+    private Timestamp updatedAt;
+
+    //Getter & Setter
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getRentalId() {
+        return rentalId;
+    }
+
+    public void setRentalId(Integer rentalId) {
+        this.rentalId = rentalId;
+    }
+
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Integer ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public Timestamp getLastAt() {
+        return lastAt;
+    }
+
+    public void setLastAt(Timestamp lastAt) {
+        this.lastAt = lastAt;
+    }
+
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
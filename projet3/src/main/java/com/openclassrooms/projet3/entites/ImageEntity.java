@@ -0,0 +1,60 @@
+package com.openclassrooms.projet3.entites;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "IMAGES")
+public class ImageEntity {
+    // Empreinte SHA-256 du contenu, en hexadécimal
+    @Id
+    private String hash;
+
+    private Long size;
+
+    // Format reconnu à l'envoi (image/jpeg, image/png, image/gif, image/webp), servi comme Content-Type
+    @Column(name = "content_type")
+    private String contentType;
+
+    // Nombre d'envois qui utilisent encore ce contenu
+    @Column(name = "ref_count")
+    private Integer refCount;
+
+    @Column(name = "created_at")
+    private Timestamp createdAt;
+
+    // Date du dernier ajout ou retrait de référence : un contenu tout juste réutilisé n'est pas nettoyé
+    @Column(name = "updated_at")
+    private Timestamp updatedAt;
+
+    // --------------------------------------
+    //Getter & Setter
+    // --------------------------------------
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public Long getSize() { return size; }
+    public void setSize(Long size) { this.size = size; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public Integer getRefCount() { return refCount; }
+    public void setRefCount(Integer refCount) { this.refCount = refCount; }
+
+    public Timestamp getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
+
+    public Timestamp getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Timestamp updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -26,11 +26,30 @@ public class RentalEntity {
     private Double surface;
     private Double price;
     private String picture;
+
+    // Variantes redimensionnées de l'image envoyée, renseignées en arrière-plan (null tant qu'elles ne sont pas prêtes)
+    @Column(name = "picture_thumbnail")
+    private String pictureThumbnail;
+
+    @Column(name = "picture_medium")
+    private String pictureMedium;
+
+    @Column(name = "picture_full")
+    private String pictureFull;
+
     private String description;
 
     @Column(name = "owner_id")
     private Integer ownerId;
 
+    // Messages archivés du bien (date du plus récent et nombre), tenus à jour par l'archivage seul :
+    // lus par le tableau de bord du propriétaire, jamais écrits par l'enregistrement du bien
+    @Column(name = "messages_archived_at", insertable = false, updatable = false)
+    private Timestamp messagesArchivedAt;
+
+    @Column(name = "messages_archived_count", insertable = false, updatable = false)
+    private Integer messagesArchivedCount;
+
     @Column(name = "created_at")
     private Timestamp createdAt;
 
@@ -55,12 +74,25 @@ public class RentalEntity {
     public String getPicture() { return picture; }
     public void setPicture(String picture) { this.picture = picture; }
 
+    public String getPictureThumbnail() { return pictureThumbnail; }
+    public void setPictureThumbnail(String pictureThumbnail) { this.pictureThumbnail = pictureThumbnail; }
+
+    public String getPictureMedium() { return pictureMedium; }
+    public void setPictureMedium(String pictureMedium) { this.pictureMedium = pictureMedium; }
+
+    public String getPictureFull() { return pictureFull; }
+    public void setPictureFull(String pictureFull) { this.pictureFull = pictureFull; }
+
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
     public Integer getOwnerId() { return ownerId; }
     public void setOwnerId(Integer ownerId) { this.ownerId = ownerId; }
 
+    public Timestamp getMessagesArchivedAt() { return messagesArchivedAt; }
+
+    public Integer getMessagesArchivedCount() { return messagesArchivedCount; }
+
     public Timestamp getCreatedAt() { return createdAt; }
     public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
 
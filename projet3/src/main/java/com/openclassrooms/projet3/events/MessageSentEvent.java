@@ -0,0 +1,21 @@
+package com.openclassrooms.projet3.events;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+
+/**
+ * Événement publié après l'enregistrement d'un message. <br>
+ * Le flux des messages (GET /api/messages/stream) l'écoute pour envoyer le message au propriétaire du bien.
+ */
+public class MessageSentEvent {
+
+    // Message tel qu'enregistré, avec son identifiant
+    private final MessageDto message;
+
+    public MessageSentEvent(MessageDto message) {
+        this.message = message;
+    }
+
+    public MessageDto getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,33 @@
+package com.openclassrooms.projet3.events;
+
+import com.openclassrooms.projet3.dto.RentalDto;
+
+/**
+ * Événement publié après l'enregistrement d'un bien en location (création, modification ou import). <br>
+ * Les composants qui tiennent une vue en mémoire des biens (index de recherche, statistiques...)
+ * l'écoutent pour se mettre à jour sans relire la base.
+ */
+public class RentalSavedEvent {
+
+    // État du bien avant modification, null pour un bien créé
+    private final RentalDto previous;
+    // État du bien tel qu'enregistré
+    private final RentalDto current;
+
+    public RentalSavedEvent(RentalDto previous, RentalDto current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public RentalDto getPrevious() {
+        return previous;
+    }
+
+    public RentalDto getCurrent() {
+        return current;
+    }
+
+    public boolean isCreation() {
+        return previous == null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.openclassrooms.projet3.exception;
+
+public class ConversationDoesNotExistException extends RuntimeException {
+    // Constructeur avec un message d'erreur à afficher lors de l'exception
+    public ConversationDoesNotExistException(String message) {
+        super(message);
+    }
+}
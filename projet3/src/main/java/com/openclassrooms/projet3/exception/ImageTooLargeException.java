@@ -0,0 +1,7 @@
+package com.openclassrooms.projet3.exception;
+
+public class ImageTooLargeException extends RuntimeException {
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.openclassrooms.projet3.exception;
+
+public class UnsupportedImageTypeException extends RuntimeException {
+    public UnsupportedImageTypeException(String message) {
+        super(message);
+    }
+}
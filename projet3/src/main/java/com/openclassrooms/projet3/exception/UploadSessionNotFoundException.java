@@ -0,0 +1,7 @@
+package com.openclassrooms.projet3.exception;
+
+public class UploadSessionNotFoundException extends Exception {
+    public UploadSessionNotFoundException(String message) {
+        super(message);
+    }
+}
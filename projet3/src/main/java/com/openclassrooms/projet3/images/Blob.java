@@ -0,0 +1,101 @@
+package com.openclassrooms.projet3.images;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Contenu enregistré dans un {@link BlobStore}, lu en flux. <br>
+ * Le contenu occupe les octets [position, position + taille[ du fichier indiqué : tout le fichier pour un fichier seul,
+ * une zone d'un segment pour le stockage groupé. Cette position permet de l'envoyer par sendfile dans les deux cas. <br>
+ * Un contenu gardé par ImageCache est lu en mémoire : il n'est plus lu sur le disque. <br>
+ * Le format d'image ({@link ImageType}) est connu du service des images, pas du stockage : absent si le contenu
+ * n'est pas une image acceptée.
+ */
+public final class Blob extends AbstractResource {
+
+    // Ouvre un flux sur le contenu, à chaque lecture
+    @FunctionalInterface
+    public interface Ouverture {
+        InputStream ouvrir() throws IOException;
+    }
+
+    private final Path fichier;
+    private final long position;
+    private final long taille;
+    private final long derniereModification;
+    private final Ouverture ouverture;
+    private final boolean enMemoire;
+    private final ImageType type;
+
+    public Blob(Path fichier, long position, long taille, long derniereModification, Ouverture ouverture) {
+        this(fichier, position, taille, derniereModification, ouverture, false, null);
+    }
+
+    private Blob(Path fichier, long position, long taille, long derniereModification, Ouverture ouverture, boolean enMemoire,
+                 ImageType type) {
+        this.fichier = fichier;
+        this.position = position;
+        this.taille = taille;
+        this.derniereModification = derniereModification;
+        this.ouverture = ouverture;
+        this.enMemoire = enMemoire;
+        this.type = type;
+    }
+
+    // Contenu occupant un fichier entier
+    public static Blob depuisFichier(Path fichier) throws IOException {
+        return new Blob(fichier, 0, Files.size(fichier), Files.getLastModifiedTime(fichier).toMillis(),
+                () -> Files.newInputStream(fichier));
+    }
+
+    public Path getFichier() {
+        return fichier;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public boolean isEnMemoire() {
+        return enMemoire;
+    }
+
+    public Optional<ImageType> getType() {
+        return Optional.ofNullable(type);
+    }
+
+    // Le même contenu, lu en mémoire
+    public Blob enMemoire(Ouverture lecture) {
+        return new Blob(fichier, position, taille, derniereModification, lecture, true, type);
+    }
+
+    // Le même contenu, dans le format d'image indiqué (null si ce n'est pas une image acceptée)
+    public Blob avecType(ImageType typeImage) {
+        return new Blob(fichier, position, taille, derniereModification, ouverture, enMemoire, typeImage);
+    }
+
+    @Override
+    public long contentLength() {
+        return taille;
+    }
+
+    @Override
+    public long lastModified() {
+        return derniereModification;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return ouverture.ouvrir();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + fichier + ", position " + position + ", taille " + taille + "]";
+    }
+}
@@ -0,0 +1,63 @@
+package com.openclassrooms.projet3.images;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Stockage des contenus d'image, désignés par leur empreinte SHA-256 (64 caractères hexadécimaux). <br>
+ * Le stockage ne compte pas les références : c'est ImageService qui décide quand un contenu peut être supprimé.
+ * Le choix de l'implémentation se fait avec la propriété images.store (voir BlobStoreConfig).
+ */
+public interface BlobStore {
+
+    /**
+     * Enregistre un contenu reçu dans un fichier temporaire, s'il n'est pas déjà présent. <br>
+     * Le fichier peut être déplacé par le stockage ; sinon il reste à la charge de l'appelant.
+     *
+     * @param hash    L'empreinte du contenu.
+     * @param fichier Le fichier temporaire contenant les octets.
+     * @return boolean - true si le contenu a été ajouté, false s'il était déjà enregistré.
+     * @throws IOException En cas d'erreur d'écriture.
+     */
+    boolean put(String hash, Path fichier) throws IOException;
+
+    /**
+     * Ouvre un flux sur un contenu.
+     *
+     * @param hash L'empreinte du contenu.
+     * @return InputStream - Les octets du contenu.
+     * @throws java.nio.file.NoSuchFileException Si le contenu n'est pas enregistré.
+     * @throws IOException                       En cas d'erreur de lecture.
+     */
+    InputStream get(String hash) throws IOException;
+
+    /**
+     * Décrit un contenu enregistré : fichier, position, taille et date d'ajout.
+     *
+     * @param hash L'empreinte du contenu.
+     * @return Optional<Blob> - Le contenu, ou vide s'il n'est pas enregistré.
+     * @throws IOException En cas d'erreur de lecture.
+     */
+    Optional<Blob> stat(String hash) throws IOException;
+
+    /**
+     * Supprime un contenu.
+     *
+     * @param hash L'empreinte du contenu.
+     * @return boolean - true si le contenu existait.
+     * @throws IOException En cas d'erreur de suppression.
+     */
+    boolean delete(String hash) throws IOException;
+
+    /**
+     * Parcourt les empreintes des contenus enregistrés, en flux et sans ordre particulier. <br>
+     * Le Stream doit être fermé.
+     *
+     * @return Stream<String> - Les empreintes.
+     * @throws IOException En cas d'erreur de lecture.
+     */
+    Stream<String> list() throws IOException;
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.projet3.images;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Un fichier par contenu, rangé dans racine/ab/cd/&lt;empreinte&gt; : deux niveaux de 256 sous-dossiers gardent chaque dossier petit. <br>
+ * Les fichiers temporaires doivent être sur le même disque que la racine, pour que leur déplacement soit atomique.
+ */
+public class FileSystemBlobStore implements BlobStore {
+    private static final Pattern EMPREINTE = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path racine;
+
+    public FileSystemBlobStore(Path racine) {
+        this.racine = racine;
+    }
+
+    @Override
+    public boolean put(String hash, Path fichier) throws IOException {
+        Path chemin = chemin(hash);
+        if (Files.exists(chemin)) {
+            return false;
+        }
+        Files.createDirectories(chemin.getParent());
+        Files.move(fichier, chemin, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    @Override
+    public InputStream get(String hash) throws IOException {
+        return Files.newInputStream(chemin(hash));
+    }
+
+    @Override
+    public Optional<Blob> stat(String hash) throws IOException {
+        Path chemin = chemin(hash);
+        if (!Files.isRegularFile(chemin)) {
+            return Optional.empty();
+        }
+        return Optional.of(Blob.depuisFichier(chemin));
+    }
+
+    @Override
+    public boolean delete(String hash) throws IOException {
+        return Files.deleteIfExists(chemin(hash));
+    }
+
+    // Les contenus sont au troisième niveau ; les fichiers temporaires et les segments, au deuxième, sont ignorés
+    @Override
+    public Stream<String> list() throws IOException {
+        if (!Files.isDirectory(racine)) {
+            return Stream.empty();
+        }
+        return Files.walk(racine, 3)
+                .filter(chemin -> racine.relativize(chemin).getNameCount() == 3)
+                .map(chemin -> chemin.getFileName().toString())
+                .filter(nom -> EMPREINTE.matcher(nom).matches());
+    }
+
+    // Chemin d'un contenu : racine/ab/cd/abcd...
+    private Path chemin(String hash) {
+        return racine.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
@@ -0,0 +1,159 @@
+package com.openclassrooms.projet3.images;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache en mémoire des images les plus demandées, hors du tas Java. <br>
+ * Chaque image est copiée une fois dans un ByteBuffer direct : le ramasse-miettes ne parcourt ni ne déplace ses octets,
+ * seul le petit objet ByteBuffer reste dans le tas. <br>
+ * Caffeine choisit les images à garder (W-TinyLFU : une image lue une seule fois ne chasse pas une image souvent lue),
+ * dans la limite de images.cache.size octets ; une image plus grande que images.cache.max-entry-size n'est pas gardée. <br>
+ * Une image absente du cache est servie depuis le disque (par sendfile si possible), jamais chargée pendant la requête :
+ * elle n'est copiée en mémoire, en arrière-plan, qu'à sa deuxième lecture parmi les {@value #ADMISSIONS} dernières images
+ * manquées. Une image lue une seule fois n'alloue donc pas de mémoire hors tas. <br>
+ * La mémoire d'une image retirée est rendue quand son ByteBuffer est ramassé : -XX:MaxDirectMemorySize doit laisser
+ * un peu de marge au-dessus de images.cache.size. <br>
+ * Métriques : cache.gets (result=hit/miss), cache.evictions (cache=images), images.cache.bytes et images.cache.hit.ratio.
+ */
+@Component
+public class ImageCache {
+    private static final Logger LOGGER = Logger.getLogger(ImageCache.class);
+
+    // Nombre d'images manquées dont on se souvient pour décider de les garder à la lecture suivante
+    private static final int ADMISSIONS = 10_000;
+
+    // Chargements en attente au-delà desquels une image manquée n'est pas chargée (elle le sera à une lecture suivante)
+    private static final int CHARGEMENTS_EN_ATTENTE = 64;
+
+    private final Cache<String, ByteBuffer> tampons;
+    private final long tailleMaxEntree;
+
+    // Images manquées une fois, et images en cours de chargement
+    private final Cache<String, Boolean> manquees = Caffeine.newBuilder().maximumSize(ADMISSIONS).build();
+    private final Set<String> enCours = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor chargements = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(CHARGEMENTS_EN_ATTENTE), nommerThread(), new ThreadPoolExecutor.AbortPolicy());
+
+    public ImageCache(@Value("${images.cache.size}") DataSize taille, @Value("${images.cache.max-entry-size}") DataSize tailleMaxEntree,
+                      MeterRegistry meterRegistry) {
+        this.tailleMaxEntree = tailleMaxEntree.toBytes();
+        this.tampons = Caffeine.newBuilder()
+                .maximumWeight(taille.toBytes())
+                .<String, ByteBuffer>weigher((hash, tampon) -> tampon.capacity())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, tampons, "images");
+        Gauge.builder("images.cache.bytes", tampons, cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0L))
+                .description("Octets d'image gardés en mémoire")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("images.cache.hit.ratio", tampons, cache -> cache.stats().hitRate())
+                .description("Part des lectures d'image servies depuis la mémoire")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Renvoie le contenu à lire depuis la mémoire s'il y est déjà. <br>
+     * Sinon le contenu est renvoyé tel quel, pour être lu sur le disque, et son chargement en mémoire est planifié s'il
+     * est admis (taille inférieure à images.cache.max-entry-size, déjà manqué récemment).
+     *
+     * @param hash L'empreinte du contenu.
+     * @param blob Le contenu enregistré.
+     * @return Blob - Le contenu, lu en mémoire si possible.
+     */
+    public Blob enMemoire(String hash, Blob blob) {
+        if (blob.contentLength() > tailleMaxEntree) {
+            return blob;
+        }
+        ByteBuffer tampon = tampons.getIfPresent(hash);
+        if (tampon != null) {
+            // Chaque lecture a sa propre vue, avec sa propre position ; elle ne peut pas modifier le tampon partagé
+            return blob.enMemoire(() -> new LectureTampon(tampon.asReadOnlyBuffer()));
+        }
+        if (manquees.asMap().remove(hash) == null) {
+            manquees.put(hash, Boolean.TRUE);
+        } else {
+            planifier(hash, blob);
+        }
+        return blob;
+    }
+
+    // Un contenu supprimé ne doit plus être servi
+    public void retirer(String hash) {
+        manquees.invalidate(hash);
+        tampons.invalidate(hash);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        chargements.shutdownNow();
+    }
+
+    // Un seul chargement par contenu ; file pleine : le chargement est abandonné
+    private void planifier(String hash, Blob blob) {
+        if (!enCours.add(hash)) {
+            return;
+        }
+        try {
+            chargements.execute(() -> {
+                try {
+                    // Chargé dans le calcul de la map : une suppression concurrente attend sa fin, puis retire le tampon
+                    tampons.asMap().computeIfAbsent(hash, cle -> charger(blob));
+                } catch (UncheckedIOException e) {
+                    LOGGER.warn("Image non chargée en mémoire : " + e.getCause());
+                } finally {
+                    enCours.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            enCours.remove(hash);
+        }
+    }
+
+    private static ThreadFactory nommerThread() {
+        return tache -> {
+            Thread thread = new Thread(tache, "image-cache");
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Lecture directe du fichier vers la mémoire hors tas, sans passer par un tableau intermédiaire
+    private static ByteBuffer charger(Blob blob) {
+        ByteBuffer tampon = ByteBuffer.allocateDirect((int) blob.contentLength());
+        try (FileChannel canal = FileChannel.open(blob.getFichier(), StandardOpenOption.READ)) {
+            while (tampon.hasRemaining()) {
+                if (canal.read(tampon, blob.getPosition() + tampon.position()) < 0) {
+                    throw new EOFException("Fichier tronqué : " + blob.getFichier());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tampon.flip();
+    }
+}
@@ -0,0 +1,122 @@
+package com.openclassrooms.projet3.images;
+
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Formats d'image acceptés à l'envoi et servis par GET /api/images/{name}. <br>
+ * Le format est reconnu aux premiers octets du contenu (signature), jamais au nom ou au Content-Type envoyés par le
+ * client : un contenu qui n'est pas une image de cette liste n'est pas enregistré, et ne peut donc pas être servi
+ * comme page HTML ou SVG actives sur le domaine de l'API.
+ */
+public enum ImageType {
+    JPEG("jpg", MediaType.IMAGE_JPEG_VALUE),
+    PNG("png", MediaType.IMAGE_PNG_VALUE),
+    GIF("gif", MediaType.IMAGE_GIF_VALUE),
+    WEBP("webp", "image/webp");
+
+    // Nombre d'octets lus pour reconnaître un format (signature WebP : "RIFF", taille, "WEBP")
+    public static final int TAILLE_SIGNATURE = 12;
+
+    private static final byte[] SIGNATURE_JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] SIGNATURE_PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] SIGNATURE_GIF87 = { 'G', 'I', 'F', '8', '7', 'a' };
+    private static final byte[] SIGNATURE_GIF89 = { 'G', 'I', 'F', '8', '9', 'a' };
+    private static final byte[] SIGNATURE_RIFF = { 'R', 'I', 'F', 'F' };
+    private static final byte[] SIGNATURE_WEBP = { 'W', 'E', 'B', 'P' };
+
+    private final String extension;
+    private final String contentType;
+
+    ImageType(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    // Extension des noms d'image enregistrés dans ce format, sans le point
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public MediaType getMediaType() {
+        return MediaType.parseMediaType(contentType);
+    }
+
+    /**
+     * Reconnaît le format d'une image à ses premiers octets.
+     *
+     * @param entete   Le début du contenu.
+     * @param longueur Le nombre d'octets lus dans entete.
+     * @return Optional<ImageType> - Le format, vide si le contenu n'est pas une image acceptée.
+     */
+    public static Optional<ImageType> detecter(byte[] entete, int longueur) {
+        if (commencePar(entete, longueur, 0, SIGNATURE_JPEG)) {
+            return Optional.of(JPEG);
+        }
+        if (commencePar(entete, longueur, 0, SIGNATURE_PNG)) {
+            return Optional.of(PNG);
+        }
+        if (commencePar(entete, longueur, 0, SIGNATURE_GIF87) || commencePar(entete, longueur, 0, SIGNATURE_GIF89)) {
+            return Optional.of(GIF);
+        }
+        if (commencePar(entete, longueur, 0, SIGNATURE_RIFF) && commencePar(entete, longueur, 8, SIGNATURE_WEBP)) {
+            return Optional.of(WEBP);
+        }
+        return Optional.empty();
+    }
+
+    // Reconnaît le format des premiers octets d'un fichier
+    public static Optional<ImageType> detecter(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_SIGNATURE);
+            while (entete.hasRemaining()) {
+                if (canal.read(entete) < 0) {
+                    break;
+                }
+            }
+            return detecter(entete.array(), entete.position());
+        }
+    }
+
+    // Reconnaît le format des premiers octets d'un flux, qui est fermé
+    public static Optional<ImageType> detecter(InputStream contenu) throws IOException {
+        try (contenu) {
+            byte[] entete = contenu.readNBytes(TAILLE_SIGNATURE);
+            return detecter(entete, entete.length);
+        }
+    }
+
+    // Format correspondant à une extension de nom d'image ("jpg", "jpeg", ...), vide si elle n'est pas acceptée
+    public static Optional<ImageType> depuisExtension(String extension) {
+        String normalisee = extension.toLowerCase(Locale.ROOT);
+        if (normalisee.equals("jpeg")) {
+            return Optional.of(JPEG);
+        }
+        return Arrays.stream(values()).filter(type -> type.extension.equals(normalisee)).findFirst();
+    }
+
+    // Format enregistré dans la colonne IMAGES.content_type
+    public static Optional<ImageType> depuisContentType(String contentType) {
+        return Arrays.stream(values()).filter(type -> type.contentType.equals(contentType)).findFirst();
+    }
+
+    private static boolean commencePar(byte[] entete, int longueur, int position, byte[] signature) {
+        if (longueur < position + signature.length) {
+            return false;
+        }
+        return Arrays.equals(entete, position, position + signature.length, signature, 0, signature.length);
+    }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.projet3.images;
+
+/**
+ * Variantes redimensionnées générées pour chaque image envoyée. <br>
+ * L'image est réduite pour tenir dans la largeur indiquée, en gardant ses proportions ; elle n'est jamais agrandie.
+ */
+public enum ImageVariant {
+    // Vignette des listes
+    THUMBNAIL("thumb", 320),
+    // Fiche d'un bien sur mobile
+    MEDIUM("medium", 800),
+    // Affichage plein écran
+    FULL("full", 1600);
+
+    private final String suffixe;
+    private final int largeurMax;
+
+    ImageVariant(String suffixe, int largeurMax) {
+        this.suffixe = suffixe;
+        this.largeurMax = largeurMax;
+    }
+
+    // Suffixe identifiant la variante (thumb, medium, full)
+    public String getSuffixe() {
+        return suffixe;
+    }
+
+    public int getLargeurMax() {
+        return largeurMax;
+    }
+}
@@ -0,0 +1,43 @@
+package com.openclassrooms.projet3.images;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Flux sur un tampon (projection d'un segment, cache en mémoire), sans copie intermédiaire
+final class LectureTampon extends InputStream {
+    private final ByteBuffer tampon;
+
+    LectureTampon(ByteBuffer tampon) {
+        this.tampon = tampon;
+    }
+
+    @Override
+    public int read() {
+        return tampon.hasRemaining() ? tampon.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] destination, int debut, int longueur) {
+        if (longueur == 0) {
+            return 0;
+        }
+        if (!tampon.hasRemaining()) {
+            return -1;
+        }
+        int lus = Math.min(longueur, tampon.remaining());
+        tampon.get(destination, debut, lus);
+        return lus;
+    }
+
+    @Override
+    public long skip(long nombre) {
+        int sautes = (int) Math.max(0, Math.min(nombre, tampon.remaining()));
+        tampon.position(tampon.position() + sautes);
+        return sautes;
+    }
+
+    @Override
+    public int available() {
+        return tampon.remaining();
+    }
+}
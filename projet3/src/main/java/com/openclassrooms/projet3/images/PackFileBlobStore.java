@@ -0,0 +1,265 @@
+package com.openclassrooms.projet3.images;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Petits contenus regroupés dans de gros fichiers segments projetés en mémoire (segment-000001.pack, ...). <br>
+ * Un segment est rempli à la suite, enregistrement après enregistrement : en-tête (marque, état, empreinte, date d'ajout,
+ * taille) puis les octets du contenu. L'index des contenus est gardé en mémoire et reconstruit au démarrage en lisant les
+ * en-têtes : des millions de petites images ne coûtent ni un inode chacune, ni une ouverture de fichier par lecture. <br>
+ * La marque est écrite en dernier : un enregistrement interrompu n'est pas relu et sa place est réutilisée. <br>
+ * Le contenu et l'en-tête sont écrits sur le disque (force) avant la marque, et la marque avant le retour de put :
+ * un contenu dont l'ajout est confirmé survit à un arrêt brutal de la machine, et une marque n'est jamais relue
+ * devant des octets perdus. <br>
+ * Une suppression marque l'enregistrement sans libérer sa place. <br>
+ * Les contenus plus grands que la taille maximale sont confiés au stockage fichier.
+ */
+public class PackFileBlobStore implements BlobStore, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(PackFileBlobStore.class);
+
+    // En-tête d'un enregistrement : marque (4), état (1), empreinte (32), date d'ajout (8), taille (4)
+    private static final int MARQUE = 0x424C4F42;
+    private static final int POSITION_ETAT = 4;
+    private static final int POSITION_EMPREINTE = 5;
+    private static final int POSITION_AJOUT = 37;
+    private static final int POSITION_TAILLE = 45;
+    private static final int TAILLE_EN_TETE = 49;
+
+    private static final byte ACTIF = 1;
+    private static final byte SUPPRIME = 0;
+
+    private static final Pattern NOM_SEGMENT = Pattern.compile("segment-(\\d{6})\\.pack");
+
+    private final Path dossier;
+    private final int tailleSegment;
+    private final long tailleMaxContenu;
+    private final BlobStore grosContenus;
+
+    // Index des contenus actifs, lu sans verrou ; les écritures sont faites sous le verrou de l'objet
+    private final Map<String, Emplacement> index = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment courant;
+
+    /**
+     * Ouvre les segments existants et reconstruit l'index.
+     *
+     * @param dossier          Le dossier des segments.
+     * @param tailleSegment    La taille d'un segment (au plus 2 Go, limite d'une projection en mémoire).
+     * @param tailleMaxContenu La taille au-delà de laquelle un contenu est confié à grosContenus.
+     * @param grosContenus     Le stockage des contenus trop grands pour un segment.
+     * @throws IOException En cas d'erreur de lecture des segments.
+     */
+    public PackFileBlobStore(Path dossier, long tailleSegment, long tailleMaxContenu, BlobStore grosContenus) throws IOException {
+        if (tailleSegment > Integer.MAX_VALUE || tailleMaxContenu + TAILLE_EN_TETE > tailleSegment) {
+            throw new IllegalArgumentException("Taille de segment invalide : " + tailleSegment);
+        }
+        this.dossier = dossier;
+        this.tailleSegment = (int) tailleSegment;
+        this.tailleMaxContenu = tailleMaxContenu;
+        this.grosContenus = grosContenus;
+
+        Files.createDirectories(dossier);
+        List<Integer> numeros;
+        try (Stream<Path> fichiers = Files.list(dossier)) {
+            numeros = fichiers
+                    .map(fichier -> NOM_SEGMENT.matcher(fichier.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(nom -> Integer.parseInt(nom.group(1)))
+                    .sorted()
+                    .toList();
+        }
+        for (Integer numero : numeros) {
+            Segment segment = ouvrirSegment(numero);
+            relire(segment);
+            segments.add(segment);
+        }
+        courant = segments.isEmpty() ? nouveauSegment() : segments.get(segments.size() - 1);
+        LOGGER.info(index.size() + " images dans " + segments.size() + " segments");
+    }
+
+    @Override
+    public synchronized boolean put(String hash, Path fichier) throws IOException {
+        long taille = Files.size(fichier);
+        if (taille > tailleMaxContenu) {
+            return grosContenus.put(hash, fichier);
+        }
+        if (index.containsKey(hash)) {
+            return false;
+        }
+        if (courant.fin + TAILLE_EN_TETE + taille > courant.carte.capacity()) {
+            courant = nouveauSegment();
+        }
+
+        int enTete = courant.fin;
+        ByteBuffer zone = courant.carte.slice(enTete + TAILLE_EN_TETE, (int) taille);
+        try (FileChannel source = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            while (zone.hasRemaining()) {
+                if (source.read(zone) < 0) {
+                    throw new EOFException("Fichier tronqué : " + fichier);
+                }
+            }
+        }
+
+        long ajout = System.currentTimeMillis();
+        courant.carte.put(enTete + POSITION_ETAT, ACTIF);
+        courant.carte.put(enTete + POSITION_EMPREINTE, HexFormat.of().parseHex(hash));
+        courant.carte.putLong(enTete + POSITION_AJOUT, ajout);
+        courant.carte.putInt(enTete + POSITION_TAILLE, (int) taille);
+        int fin = enTete + TAILLE_EN_TETE + (int) taille;
+        int finEcrite = fin;
+        if (fin + Integer.BYTES <= courant.carte.capacity()) {
+            // Efface une éventuelle marque laissée par un enregistrement interrompu plus long que celui-ci
+            courant.carte.putInt(fin, 0);
+            finEcrite += Integer.BYTES;
+        }
+        courant.carte.force(enTete, finEcrite - enTete);
+
+        // La marque rend l'enregistrement visible à la prochaine relecture
+        courant.carte.putInt(enTete, MARQUE);
+        courant.carte.force(enTete, Integer.BYTES);
+
+        courant.fin = fin;
+        index.put(hash, new Emplacement(courant, enTete, (int) taille, ajout));
+        return true;
+    }
+
+    @Override
+    public InputStream get(String hash) throws IOException {
+        Emplacement emplacement = index.get(hash);
+        if (emplacement == null) {
+            return grosContenus.get(hash);
+        }
+        return emplacement.ouvrir();
+    }
+
+    @Override
+    public Optional<Blob> stat(String hash) throws IOException {
+        Emplacement emplacement = index.get(hash);
+        if (emplacement == null) {
+            return grosContenus.stat(hash);
+        }
+        return Optional.of(new Blob(emplacement.segment.chemin, emplacement.enTete + TAILLE_EN_TETE,
+                emplacement.taille, emplacement.ajout, emplacement::ouvrir));
+    }
+
+    @Override
+    public synchronized boolean delete(String hash) throws IOException {
+        Emplacement emplacement = index.remove(hash);
+        if (emplacement == null) {
+            return grosContenus.delete(hash);
+        }
+        // Les lectures en cours gardent leurs octets : seul l'état de l'enregistrement change
+        emplacement.segment.carte.put(emplacement.enTete + POSITION_ETAT, SUPPRIME);
+        return true;
+    }
+
+    // Les contenus des segments, lus dans l'index, puis les gros contenus
+    @Override
+    public Stream<String> list() throws IOException {
+        return Stream.concat(index.keySet().stream(), grosContenus.list());
+    }
+
+    // Écrit les segments sur le disque et ferme leurs fichiers ; les projections sont libérées par le ramasse-miettes
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.carte.force();
+            segment.canal.close();
+        }
+    }
+
+    // --------------------------------------
+    // Segments
+    // --------------------------------------
+
+    private Segment ouvrirSegment(int numero) throws IOException {
+        Path chemin = dossier.resolve(String.format("segment-%06d.pack", numero));
+        FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Le fichier est agrandi à la taille du segment ; la partie non écrite n'occupe pas de place sur le disque
+        long taille = Math.max(canal.size(), tailleSegment);
+        return new Segment(numero, chemin, canal, canal.map(FileChannel.MapMode.READ_WRITE, 0, taille));
+    }
+
+    private Segment nouveauSegment() throws IOException {
+        int numero = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).numero + 1;
+        Segment segment = ouvrirSegment(numero);
+        segments.add(segment);
+        return segment;
+    }
+
+    // Parcourt les en-têtes jusqu'au premier emplacement sans marque, qui devient la fin du segment
+    private void relire(Segment segment) {
+        MappedByteBuffer carte = segment.carte;
+        byte[] empreinte = new byte[32];
+        int position = 0;
+        while (position + TAILLE_EN_TETE <= carte.capacity() && carte.getInt(position) == MARQUE) {
+            int taille = carte.getInt(position + POSITION_TAILLE);
+            if (taille < 0 || (long) position + TAILLE_EN_TETE + taille > carte.capacity()) {
+                LOGGER.warn("Enregistrement invalide dans " + segment.chemin + " à la position " + position);
+                break;
+            }
+            if (carte.get(position + POSITION_ETAT) == ACTIF) {
+                carte.get(position + POSITION_EMPREINTE, empreinte);
+                index.put(HexFormat.of().formatHex(empreinte),
+                        new Emplacement(segment, position, taille, carte.getLong(position + POSITION_AJOUT)));
+            }
+            position += TAILLE_EN_TETE + taille;
+        }
+        segment.fin = position;
+    }
+
+    private static final class Segment {
+        private final int numero;
+        private final Path chemin;
+        private final FileChannel canal;
+        private final MappedByteBuffer carte;
+        // Position du prochain enregistrement
+        private int fin;
+
+        private Segment(int numero, Path chemin, FileChannel canal, MappedByteBuffer carte) {
+            this.numero = numero;
+            this.chemin = chemin;
+            this.canal = canal;
+            this.carte = carte;
+        }
+    }
+
+    private static final class Emplacement {
+        private final Segment segment;
+        private final int enTete;
+        private final int taille;
+        private final long ajout;
+
+        private Emplacement(Segment segment, int enTete, int taille, long ajout) {
+            this.segment = segment;
+            this.enTete = enTete;
+            this.taille = taille;
+            this.ajout = ajout;
+        }
+
+        // Chaque lecture a sa propre vue sur la projection, avec sa propre position
+        private InputStream ouvrir() {
+            return new LectureTampon(segment.carte.slice(enTete + TAILLE_EN_TETE, taille));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.openclassrooms.projet3.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecture en flux d'un fichier CSV (RFC 4180), un enregistrement à la fois. <br>
+ * Les champs peuvent être entourés de guillemets, contenir des virgules, des retours à la ligne
+ * et des guillemets doublés (""). Les fins de ligne \n et \r\n sont acceptées. <br>
+ * Un enregistrement plus long que la limite donnée est refusé (IOException) : un guillemet jamais fermé ne peut pas
+ * faire lire tout le fichier en mémoire.
+ */
+public class CsvReader {
+    private static final char SEPARATEUR = ',';
+    private static final char GUILLEMET = '"';
+
+    private final Reader reader;
+    private final int longueurMax;
+    private int suivant = -2;
+    private long ligne = 1;
+    private long ligneEnregistrement;
+
+    // Le Reader doit être tamponné (BufferedReader) : il est lu caractère par caractère
+    public CsvReader(Reader reader, int longueurMax) {
+        this.reader = reader;
+        this.longueurMax = longueurMax;
+    }
+
+    /**
+     * Lit l'enregistrement suivant.
+     *
+     * @return List<String> - Les champs de l'enregistrement, ou null à la fin du fichier.
+     * @throws IOException En cas d'erreur de lecture, si un guillemet n'est pas fermé ou si l'enregistrement est trop long.
+     */
+    public List<String> readRecord() throws IOException {
+        long debut = ligne;
+        int c = lire();
+        if (c == -1) {
+            return null;
+        }
+        ligneEnregistrement = debut;
+
+        List<String> champs = new ArrayList<>();
+        StringBuilder champ = new StringBuilder();
+        boolean entreGuillemets = false;
+        int longueur = 0;
+
+        while (true) {
+            if (++longueur > longueurMax) {
+                throw new IOException("Enregistrement de plus de " + longueurMax + " caractères (ligne " + ligneEnregistrement + ")");
+            }
+            if (entreGuillemets) {
+                if (c == -1) {
+                    throw new IOException("Guillemet non fermé (enregistrement commençant ligne " + ligneEnregistrement + ")");
+                }
+                if (c == GUILLEMET) {
+                    if (regarder() == GUILLEMET) {
+                        lire();
+                        champ.append(GUILLEMET);
+                    } else {
+                        entreGuillemets = false;
+                    }
+                } else {
+                    champ.append((char) c);
+                }
+            } else if (c == GUILLEMET && champ.isEmpty()) {
+                entreGuillemets = true;
+            } else if (c == SEPARATEUR) {
+                champs.add(champ.toString());
+                champ.setLength(0);
+            } else if (c == '\r' && regarder() == '\n') {
+                // \r\n : le \n termine l'enregistrement au tour suivant
+            } else if (c == '\n' || c == -1) {
+                champs.add(champ.toString());
+                return champs;
+            } else {
+                champ.append((char) c);
+            }
+            c = lire();
+        }
+    }
+
+    // Numéro de la ligne en cours de lecture (à partir de 1)
+    public long getLigne() {
+        return ligne;
+    }
+
+    // Numéro de la ligne où commence le dernier enregistrement lu (à partir de 1)
+    public long getLigneEnregistrement() {
+        return ligneEnregistrement;
+    }
+
+    private int lire() throws IOException {
+        int c = suivant != -2 ? suivant : reader.read();
+        suivant = -2;
+        if (c == '\n') {
+            ligne++;
+        }
+        return c;
+    }
+
+    private int regarder() throws IOException {
+        if (suivant == -2) {
+            suivant = reader.read();
+        }
+        return suivant;
+    }
+}
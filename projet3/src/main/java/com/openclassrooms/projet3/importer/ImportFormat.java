@@ -0,0 +1,42 @@
+package com.openclassrooms.projet3.importer;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Formats acceptés par l'import de biens en masse.
+ */
+public enum ImportFormat {
+    // Un objet JSON par ligne : {"name": ..., "surface": ..., "price": ..., "description": ...}
+    NDJSON("application/x-ndjson"),
+    // Une ligne d'en-tête (name,surface,price,description) puis un bien par enregistrement
+    CSV("text/csv");
+
+    private final String mediaType;
+
+    ImportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Retrouve le format à partir de l'en-tête Content-Type de la requête (paramètres tels que charset ignorés).
+     *
+     * @param contentType La valeur de l'en-tête Content-Type.
+     * @return ImportFormat - Le format correspondant.
+     * @throws IllegalArgumentException Si le type de contenu n'est pas pris en charge.
+     */
+    public static ImportFormat fromContentType(String contentType) throws IllegalArgumentException {
+        if (contentType != null) {
+            MediaType type = MediaType.parseMediaType(contentType);
+            for (ImportFormat format : values()) {
+                if (type.isCompatibleWith(MediaType.parseMediaType(format.mediaType))) {
+                    return format;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Format d'import non pris en charge : " + contentType);
+    }
+}
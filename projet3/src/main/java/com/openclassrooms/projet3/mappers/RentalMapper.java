@@ -12,6 +12,9 @@ public class RentalMapper {
                 .surface(rentalEntity.getSurface())
                 .price(rentalEntity.getPrice())
                 .picture(rentalEntity.getPicture())
+                .pictureThumbnail(rentalEntity.getPictureThumbnail())
+                .pictureMedium(rentalEntity.getPictureMedium())
+                .pictureFull(rentalEntity.getPictureFull())
                 .description(rentalEntity.getDescription())
                 .ownerId(rentalEntity.getOwnerId())
                 .createdAt(rentalEntity.getCreatedAt())
@@ -26,6 +29,9 @@ public class RentalMapper {
                 .surface(rentalDto.getSurface())
                 .price(rentalDto.getPrice())
                 .picture(rentalDto.getPicture())
+                .pictureThumbnail(rentalDto.getPictureThumbnail())
+                .pictureMedium(rentalDto.getPictureMedium())
+                .pictureFull(rentalDto.getPictureFull())
                 .description(rentalDto.getDescription())
                 .ownerId(rentalDto.getOwnerId())
                 .createdAt(rentalDto.getCreatedAt())
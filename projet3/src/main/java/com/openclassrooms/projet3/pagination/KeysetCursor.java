@@ -0,0 +1,136 @@
+package com.openclassrooms.projet3.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Curseur opaque utilisé pour la pagination par clé (keyset). <br>
+ * Il mémorise la ou les valeurs des colonnes de tri et l'identifiant de la dernière ligne renvoyée,
+ * ce qui permet de reprendre la lecture juste après sans OFFSET (coût constant quelle que soit la page). <br>
+ * Une valeur de tri NULL est encodée par un marqueur distinct, que ni un nombre ni une date ne peuvent prendre :
+ * la page suivante reprend alors parmi les lignes dont la colonne est NULL ({@link #isValeurNulle(int)}).
+ */
+public final class KeysetCursor {
+    private static final String SEPARATEUR = "|";
+    private static final String NULLE = "~";
+
+    private final String[] valeurs;
+    private final Integer id;
+
+    private KeysetCursor(String[] valeurs, Integer id) {
+        this.valeurs = valeurs;
+        this.id = id;
+    }
+
+    /**
+     * Crée un curseur à partir de la valeur de tri et de l'identifiant de la dernière ligne lue.
+     *
+     * @param valeur La valeur de la colonne de tri (Timestamp, Number ou String), peut être null.
+     * @param id     L'identifiant de la dernière ligne lue.
+     * @return KeysetCursor - Le curseur correspondant.
+     */
+    public static KeysetCursor of(Object valeur, Integer id) {
+        return new KeysetCursor(new String[] { enTexte(valeur) }, id);
+    }
+
+    /**
+     * Crée un curseur pour un tri sur plusieurs colonnes (ex : prix puis surface).
+     *
+     * @param id      L'identifiant de la dernière ligne lue.
+     * @param valeurs Les valeurs des colonnes de tri, dans l'ordre du tri.
+     * @return KeysetCursor - Le curseur correspondant.
+     */
+    public static KeysetCursor ofValeurs(Integer id, Object... valeurs) {
+        String[] textes = new String[valeurs.length];
+        for (int i = 0; i < valeurs.length; i++) {
+            textes[i] = enTexte(valeurs[i]);
+        }
+        return new KeysetCursor(textes, id);
+    }
+
+    private static String enTexte(Object valeur) {
+        if (valeur == null) {
+            return NULLE;
+        } else if (valeur instanceof Timestamp timestamp) {
+            return String.valueOf(timestamp.getTime());
+        }
+        return valeur.toString();
+    }
+
+    /**
+     * Encode le curseur sous forme de chaîne opaque (base64 url-safe) à renvoyer au client.
+     *
+     * @return String - Le curseur encodé.
+     */
+    public String encode() {
+        String brut = String.join(SEPARATEUR, valeurs) + SEPARATEUR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur reçu du client.
+     *
+     * @param token Le curseur encodé.
+     * @return KeysetCursor - Le curseur décodé, ou null si aucun curseur n'est fourni.
+     * @throws IllegalArgumentException Si le curseur est mal formé.
+     */
+    public static KeysetCursor decode(String token) throws IllegalArgumentException {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String brut = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] morceaux = brut.split("\\" + SEPARATEUR, -1);
+            if (morceaux.length < 2) {
+                throw new IllegalArgumentException("Curseur de pagination invalide.");
+            }
+            String[] valeurs = Arrays.copyOf(morceaux, morceaux.length - 1);
+            return new KeysetCursor(valeurs, Integer.valueOf(morceaux[morceaux.length - 1]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException et les erreurs base64 sont des IllegalArgumentException
+            throw new IllegalArgumentException("Curseur de pagination invalide.");
+        }
+    }
+
+    // --------------------------------------
+    // Getter
+    // --------------------------------------
+    public Integer getId() { return id; }
+
+    public String getValeur() { return valeurs[0]; }
+
+    public boolean isValeurNulle() {
+        return isValeurNulle(0);
+    }
+
+    // La n-ième colonne de tri était NULL sur la dernière ligne lue
+    public boolean isValeurNulle(int index) {
+        if (index >= valeurs.length) {
+            throw new IllegalArgumentException("Curseur de pagination invalide.");
+        }
+        return NULLE.equals(valeurs[index]);
+    }
+
+    public Double getValeurAsDouble() {
+        return getValeurAsDouble(0);
+    }
+
+    // Valeur de la n-ième colonne de tri
+    public Double getValeurAsDouble(int index) {
+        try {
+            return Double.valueOf(valeurs[index]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide.");
+        }
+    }
+
+    public Timestamp getValeurAsTimestamp() {
+        try {
+            return new Timestamp(Long.parseLong(valeurs[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide.");
+        }
+    }
+}
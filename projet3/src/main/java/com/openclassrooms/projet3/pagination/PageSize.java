@@ -0,0 +1,24 @@
+package com.openclassrooms.projet3.pagination;
+
+/**
+ * Bornes de la taille des pages renvoyées par les endpoints paginés.
+ */
+public final class PageSize {
+    public static final int PAR_DEFAUT = 20;
+    public static final int MAXIMUM = 100;
+
+    private PageSize() {}
+
+    /**
+     * Ramène la taille demandée par le client dans les bornes autorisées.
+     *
+     * @param taille La taille demandée (peut être null).
+     * @return int - La taille effective, entre 1 et {@link #MAXIMUM}.
+     */
+    public static int borner(Integer taille) {
+        if (taille == null) {
+            return PAR_DEFAUT;
+        }
+        return Math.max(1, Math.min(taille, MAXIMUM));
+    }
+}
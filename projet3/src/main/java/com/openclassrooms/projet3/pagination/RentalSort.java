@@ -0,0 +1,62 @@
+package com.openclassrooms.projet3.pagination;
+
+/**
+ * Ordres de tri disponibles pour la liste des biens en location. <br>
+ * Chaque ordre est adossé à un index (colonne de tri, id) déclaré dans schema.sql.
+ */
+public enum RentalSort {
+    // Les plus récents en premier
+    CREATED_AT("createdAt"),
+    // Prix croissant
+    PRICE("price"),
+    // Surface croissante
+    SURFACE("surface");
+
+    // Valeur du paramètre "sort", qui est aussi le nom de l'attribut trié de RentalEntity
+    private final String parametre;
+
+    RentalSort(String parametre) {
+        this.parametre = parametre;
+    }
+
+    public String getParametre() {
+        return parametre;
+    }
+
+    /**
+     * Retrouve l'ordre de tri à partir du paramètre de requête "sort".
+     *
+     * @param parametre La valeur du paramètre (createdAt, price ou surface), null pour l'ordre par défaut.
+     * @return RentalSort - L'ordre de tri correspondant.
+     * @throws IllegalArgumentException Si l'ordre de tri est inconnu.
+     */
+    public static RentalSort fromParametre(String parametre) throws IllegalArgumentException {
+        if (parametre == null || parametre.isBlank()) {
+            return CREATED_AT;
+        }
+        for (RentalSort sort : values()) {
+            if (sort.parametre.equalsIgnoreCase(parametre)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Ordre de tri inconnu : " + parametre);
+    }
+
+    /**
+     * Vérifie que la valeur portée par le curseur est lisible pour cet ordre de tri. <br>
+     * Permet de rejeter un curseur invalide avant de commencer à écrire la réponse.
+     *
+     * @param cursor Le curseur décodé (null pour la première page).
+     * @throws IllegalArgumentException Si le curseur ne correspond pas à cet ordre de tri.
+     */
+    public void verifier(KeysetCursor cursor) throws IllegalArgumentException {
+        if (cursor == null || cursor.isValeurNulle()) {
+            return;
+        }
+        if (this == CREATED_AT) {
+            cursor.getValeurAsTimestamp();
+        } else {
+            cursor.getValeurAsDouble();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.projet3.projection;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Champs demandés par le client avec le paramètre "fields" (ex : fields=id,name,price,picture). <br>
+ * La sélection sert deux fois : seules les colonnes correspondantes sont lues en base (projection),
+ * puis seuls ces champs sont écrits dans la réponse (filtre Jackson {@link #FILTRE}). <br>
+ * Sans paramètre, tous les champs sont lus et renvoyés, comme avant.
+ */
+public final class FieldSet {
+    // Identifiant du filtre Jackson posé sur les DTO (@JsonFilter), sans effet par défaut (voir JacksonConfig)
+    public static final String FILTRE = "fields";
+
+    // Aucun champ demandé : la ressource est renvoyée en entier
+    public static final FieldSet TOUS = new FieldSet(null);
+
+    private final Set<String> champs;
+
+    private FieldSet(Set<String> champs) {
+        this.champs = champs;
+    }
+
+    /**
+     * Lit le paramètre "fields" et vérifie chacun des champs demandés.
+     *
+     * @param parametre La valeur du paramètre (noms séparés par des virgules), null pour tous les champs.
+     * @param autorises Les champs de la ressource.
+     * @return FieldSet - La sélection correspondante.
+     * @throws IllegalArgumentException Si un champ est inconnu.
+     */
+    public static FieldSet parse(String parametre, Collection<String> autorises) throws IllegalArgumentException {
+        if (parametre == null || parametre.isBlank()) {
+            return TOUS;
+        }
+        Set<String> champs = new LinkedHashSet<>();
+        for (String champ : parametre.split(",")) {
+            String nom = champ.trim();
+            if (nom.isEmpty()) {
+                continue;
+            }
+            if (!autorises.contains(nom)) {
+                throw new IllegalArgumentException("Champ inconnu : " + nom);
+            }
+            champs.add(nom);
+        }
+        return champs.isEmpty() ? TOUS : new FieldSet(champs);
+    }
+
+    public boolean isComplet() {
+        return champs == null;
+    }
+
+    /**
+     * Colonnes à lire en base : les champs demandés, plus ceux dont le serveur a besoin
+     * (ex : l'identifiant et la colonne de tri pour construire le curseur), qui ne seront pas renvoyés s'ils n'ont pas été demandés.
+     *
+     * @param tous         Tous les champs de la ressource, dans l'ordre de la projection complète.
+     * @param obligatoires Les champs toujours lus.
+     * @return List<String> - Les colonnes à lire, dans l'ordre de la ressource.
+     */
+    public List<String> colonnes(List<String> tous, String... obligatoires) {
+        if (isComplet()) {
+            return tous;
+        }
+        List<String> requis = Arrays.asList(obligatoires);
+        return tous.stream()
+                .filter(champ -> champs.contains(champ) || requis.contains(champ))
+                .toList();
+    }
+
+    // Filtre Jackson correspondant à la sélection
+    public FilterProvider getFilterProvider() {
+        SimpleBeanPropertyFilter filtre = isComplet()
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : SimpleBeanPropertyFilter.filterOutAllExcept(champs);
+        return new SimpleFilterProvider().addFilter(FILTRE, filtre);
+    }
+
+    /**
+     * Enveloppe le corps de la réponse pour que les convertisseurs Jackson (JSON, CBOR, Smile) n'écrivent que les champs demandés.
+     *
+     * @param corps Le DTO ou la liste de DTO à renvoyer.
+     * @return MappingJacksonValue - Le corps accompagné du filtre.
+     */
+    public MappingJacksonValue appliquer(Object corps) {
+        MappingJacksonValue valeur = new MappingJacksonValue(corps);
+        valeur.setFilters(getFilterProvider());
+        return valeur;
+    }
+}
@@ -0,0 +1,75 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.ConversationDto;
+import com.openclassrooms.projet3.entites.ConversationEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface ConversationRepository extends JpaRepository<ConversationEntity, Integer> {
+
+    // --------------------------------------
+    // Mise à jour du résumé à chaque message, en une requête atomique côté base, sans lecture préalable de la ligne.
+    // La conversation est créée au premier message d'un interlocuteur sur un bien (index unique rental_id, user_id).
+    // Les messages du propriétaire sur son propre bien ne créent pas de conversation : ils n'ont pas d'interlocuteur.
+    // Un message plus ancien écrit après un plus récent (envois simultanés) ne remplace pas le dernier message.
+    // Les colonnes sont mises à jour dans l'ordre : last_message est comparé à l'ancien last_at.
+    // La ligne proposée est lue dans la table dérivée "nouveau" plutôt qu'avec VALUES(colonne), dépréciée depuis MySQL 8.0.20
+    // (l'alias de ligne INSERT ... AS n'est pas accepté avec INSERT ... SELECT).
+    // --------------------------------------
+    String SUR_DOUBLON = "ON DUPLICATE KEY UPDATE " +
+            "last_message = CASE WHEN nouveau.last_at >= CONVERSATIONS.last_at THEN nouveau.last_message " +
+            "ELSE CONVERSATIONS.last_message END, " +
+            "last_at = GREATEST(CONVERSATIONS.last_at, nouveau.last_at), " +
+            "unread_count = CONVERSATIONS.unread_count + 1, updated_at = CURRENT_TIMESTAMP";
+
+    String INSERTION = "INSERT INTO CONVERSATIONS (rental_id, owner_id, user_id, last_message, last_at, unread_count) " +
+            "SELECT * FROM (SELECT r.id AS rental_id, r.owner_id AS owner_id, ";
+
+    // Même requête en paramètres JDBC positionnels, pour l'écriture groupée des messages (MessageBatchWriter)
+    String MISE_A_JOUR = INSERTION + "? AS user_id, ? AS last_message, ? AS last_at, 1 AS unread_count " +
+            "FROM RENTALS r WHERE r.id = ? AND r.owner_id <> ?) AS nouveau " + SUR_DOUBLON;
+
+    @Modifying
+    @Transactional
+    @Query(value = INSERTION + ":userId AS user_id, :lastMessage AS last_message, :lastAt AS last_at, 1 AS unread_count " +
+            "FROM RENTALS r WHERE r.id = :rentalId AND r.owner_id <> :userId) AS nouveau " + SUR_DOUBLON, nativeQuery = true)
+    int addMessage(@Param("rentalId") Integer rentalId, @Param("userId") Integer userId,
+                   @Param("lastMessage") String lastMessage, @Param("lastAt") Timestamp lastAt);
+
+    // L'utilisateur a écrit sur ce bien sans en être le propriétaire (index CONVERSATIONS_rental_id_user_id_index)
+    boolean existsByRentalIdAndUserId(Integer rentalId, Integer userId);
+
+    // Les messages de la conversation ont été lus par le propriétaire ; renvoie 0 si elle n'est pas à lui
+    @Modifying
+    @Transactional
+    @Query("UPDATE ConversationEntity c SET c.unreadCount = 0 WHERE c.id = :id AND c.ownerId = :ownerId")
+    int markAsRead(@Param("id") Integer id, @Param("ownerId") Integer ownerId);
+
+    // --------------------------------------
+    // Boîte de réception du propriétaire, conversations les plus récentes en premier.
+    // Paginée par clé sur (last_at, id) décroissants : une page est un seul parcours de l'index
+    // CONVERSATIONS_owner_id_last_at_index (owner_id, last_at, id), d'au plus "limite" lignes.
+    // La borne last_at <= :lastAt, redondante, fait démarrer le parcours de l'index au curseur.
+    // --------------------------------------
+    String CONVERSATION_DTO = "new com.openclassrooms.projet3.dto.ConversationDto(c.id, c.rentalId, c.userId, c.lastMessage, " +
+            "c.lastAt, c.unreadCount)";
+
+    @Query("SELECT " + CONVERSATION_DTO + " FROM ConversationEntity c WHERE c.ownerId = :ownerId " +
+            "ORDER BY c.lastAt DESC, c.id DESC")
+    List<ConversationDto> findFirstPageByOwner(@Param("ownerId") Integer ownerId, Pageable limite);
+
+    @Query("SELECT " + CONVERSATION_DTO + " FROM ConversationEntity c WHERE c.ownerId = :ownerId " +
+            "AND c.lastAt <= :lastAt AND (c.lastAt < :lastAt OR c.id < :id) " +
+            "ORDER BY c.lastAt DESC, c.id DESC")
+    List<ConversationDto> findPageByOwnerAfter(@Param("ownerId") Integer ownerId, @Param("lastAt") Timestamp lastAt,
+                                               @Param("id") Integer id, Pageable limite);
+}
@@ -0,0 +1,58 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.entites.ImageEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface ImageRepository extends JpaRepository<ImageEntity, String> {
+
+    // Format enregistré à l'envoi, vide pour un contenu enregistré avant la colonne content_type
+    @Query("SELECT i.contentType FROM ImageEntity i WHERE i.hash = :hash")
+    Optional<String> findContentTypeByHash(@Param("hash") String hash);
+
+    // Verrouille la ligne du contenu jusqu'à la fin de la transaction : le fichier est écrit ou supprimé sous ce verrou,
+    // pour toutes les instances de l'application
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM ImageEntity i WHERE i.hash = :hash")
+    Optional<ImageEntity> findByHashForUpdate(@Param("hash") String hash);
+
+    // --------------------------------------
+    // Comptage des références : chaque requête est atomique côté base, sans lecture préalable de la ligne
+    // --------------------------------------
+
+    // Ajoute une référence au contenu, en créant sa ligne au premier envoi ; le format reconnu complète une ligne plus ancienne
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO IMAGES (hash, size, content_type, ref_count) VALUES (:hash, :size, :contentType, 1) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, content_type = COALESCE(content_type, :contentType), " +
+            "updated_at = CURRENT_TIMESTAMP", nativeQuery = true)
+    int addReference(@Param("hash") String hash, @Param("size") long size, @Param("contentType") String contentType);
+
+    // Retire une référence ; renvoie 0 si le contenu est inconnu ou n'est déjà plus référencé
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageEntity i SET i.refCount = i.refCount - 1 WHERE i.hash = :hash AND i.refCount > 0")
+    int removeReference(@Param("hash") String hash);
+
+    // Supprime la ligne d'un contenu qui n'est plus référencé ni utilisé par un bien ; renvoie 1 si le fichier peut être supprimé
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM IMAGES WHERE hash = :hash AND ref_count = 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM RENTAL_IMAGES WHERE RENTAL_IMAGES.hash = :hash)", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    // Supprime la ligne d'un contenu qu'aucun bien n'utilise, quel que soit son compteur (nettoyage des orphelins)
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImageEntity i WHERE i.hash = :hash")
+    int deleteImage(@Param("hash") String hash);
+}
@@ -0,0 +1,21 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+
+import java.util.List;
+
+/**
+ * Lectures des messages projetées sur les colonnes demandées (implémentées dans MessageProjectionRepositoryImpl).
+ */
+public interface MessageProjectionRepository {
+
+    /**
+     * Lit les messages qu'un utilisateur peut lire (ceux qu'il a écrits et ceux reçus sur ses biens),
+     * en ne lisant que les colonnes demandées.
+     *
+     * @param lecteur  L'identifiant de l'utilisateur.
+     * @param colonnes Les attributs à lire (voir MessageDto.CHAMPS).
+     * @return List<MessageDto> - Les messages, dont seules les propriétés lues sont renseignées.
+     */
+    List<MessageDto> findDtosVisibleBy(Integer lecteur, List<String> colonnes);
+}
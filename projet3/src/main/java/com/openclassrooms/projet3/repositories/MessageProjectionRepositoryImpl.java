@@ -0,0 +1,41 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.entites.MessageEntity;
+import com.openclassrooms.projet3.entites.RentalEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.util.List;
+
+// Implémentation de MessageProjectionRepository, rattachée à MessageRepository par Spring Data (suffixe Impl)
+class MessageProjectionRepositoryImpl implements MessageProjectionRepository {
+
+    private final EntityManager entityManager;
+
+    MessageProjectionRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<MessageDto> findDtosVisibleBy(Integer lecteur, List<String> colonnes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MessageEntity> message = query.from(MessageEntity.class);
+        TupleProjection.selectionner(query, message, colonnes);
+
+        // Messages de l'utilisateur (index de la clé étrangère user_id), puis ceux reçus sur ses biens (RENTALS_owner_id_index)
+        Subquery<Integer> sesBiens = query.subquery(Integer.class);
+        Root<RentalEntity> rental = sesBiens.from(RentalEntity.class);
+        sesBiens.select(rental.get("id")).where(cb.equal(rental.get("ownerId"), lecteur));
+        query.where(cb.or(cb.equal(message.get("userId"), lecteur), message.get("rentalId").in(sesBiens)));
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> TupleProjection.versDto(tuple, MessageDto::new))
+                .toList();
+    }
+}
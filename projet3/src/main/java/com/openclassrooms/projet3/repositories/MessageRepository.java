@@ -1,9 +1,90 @@
 package com.openclassrooms.projet3.repositories;
 
+import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.dto.VersionDto;
 import com.openclassrooms.projet3.entites.MessageEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface MessageRepository extends JpaRepository<MessageEntity, Integer> {
+public interface MessageRepository extends JpaRepository<MessageEntity, Integer>, MessageProjectionRepository {
+
+    // --------------------------------------
+    // Versions utilisées par les requêtes conditionnelles (ETag / Last-Modified), sans charger les messages
+    // --------------------------------------
+
+    // Version d'un message, lue par clé primaire
+    @Query("SELECT new com.openclassrooms.projet3.dto.VersionDto(m.id, m.updatedAt) FROM MessageEntity m WHERE m.id = :id")
+    Optional<VersionDto> findVersionById(@Param("id") Integer id);
+
+    // Même version, vide si le message n'est lisible ni par son auteur ni par le propriétaire du bien
+    @Query("SELECT new com.openclassrooms.projet3.dto.VersionDto(m.id, m.updatedAt) FROM MessageEntity m WHERE m.id = :id " +
+            "AND (m.userId = :lecteur OR m.rentalId IN (SELECT r.id FROM RentalEntity r WHERE r.ownerId = :lecteur))")
+    Optional<VersionDto> findVersionByIdVisibleBy(@Param("id") Integer id, @Param("lecteur") Integer lecteur);
+
+    // Version de la liste : MAX(id) sur la clé primaire, MAX(updated_at) sur l'index MESSAGES_updated_at_index,
+    // et la révision de la liste (COLLECTION_VERSIONS), incrémentée par l'archivage, qui supprime des lignes sans changer
+    // les deux autres : trois lectures d'une ligne, quel que soit le nombre de messages
+    @Query("SELECT new com.openclassrooms.projet3.dto.VersionDto(MAX(m.id), MAX(m.updatedAt), " +
+            "(SELECT v.revision FROM CollectionVersionEntity v WHERE v.name = 'messages')) FROM MessageEntity m")
+    VersionDto findCollectionVersion();
+
+    // Incrémente la révision de la liste, dans la transaction de chaque lot de messages archivés (supprimés de la table).
+    // Un nouveau message change déjà MAX(id) : l'envoi ne touche pas à cette ligne, qui deviendrait un point de contention
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE COLLECTION_VERSIONS SET revision = revision + 1 WHERE name = 'messages'", nativeQuery = true)
+    int incrementCollectionRevision();
+
+    // --------------------------------------
+    // Lectures seules projetées directement dans des MessageDto : sans entité gérée ni instantané de dirty checking
+    // --------------------------------------
+    String MESSAGE_DTO = "new com.openclassrooms.projet3.dto.MessageDto(m.id, m.rentalId, m.userId, m.message, m.createdAt, m.updatedAt)";
+
+    @Query("SELECT " + MESSAGE_DTO + " FROM MessageEntity m WHERE m.id = :id")
+    Optional<MessageDto> findDtoById(@Param("id") Integer id);
+
+    // --------------------------------------
+    // Fil des messages d'un bien, les plus récents en premier.
+    // Paginé par clé sur (created_at, id) décroissants, index MESSAGES_rental_id_created_at_index (rental_id, created_at, id) :
+    // chaque page lit au plus "limite" lignes de l'index, quel que soit le nombre total de messages.
+    // La borne created_at <= :createdAt, redondante, fait démarrer le parcours de l'index au curseur.
+    // --------------------------------------
+    @Query("SELECT " + MESSAGE_DTO + " FROM MessageEntity m WHERE m.rentalId = :rentalId " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageDto> findFirstPageByRental(@Param("rentalId") Integer rentalId, Pageable limite);
+
+    @Query("SELECT " + MESSAGE_DTO + " FROM MessageEntity m WHERE m.rentalId = :rentalId " +
+            "AND m.createdAt <= :createdAt AND (m.createdAt < :createdAt OR m.id < :id) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageDto> findPageByRentalAfter(@Param("rentalId") Integer rentalId, @Param("createdAt") Timestamp createdAt,
+                                           @Param("id") Integer id, Pageable limite);
+
+    // Même fil réduit aux messages d'un auteur, sur l'index MESSAGES_rental_id_user_id_created_at_index (rental_id, user_id, created_at, id)
+    @Query("SELECT " + MESSAGE_DTO + " FROM MessageEntity m WHERE m.rentalId = :rentalId AND m.userId = :userId " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageDto> findFirstPageByRentalAndUser(@Param("rentalId") Integer rentalId, @Param("userId") Integer userId, Pageable limite);
+
+    @Query("SELECT " + MESSAGE_DTO + " FROM MessageEntity m WHERE m.rentalId = :rentalId AND m.userId = :userId " +
+            "AND m.createdAt <= :createdAt AND (m.createdAt < :createdAt OR m.id < :id) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageDto> findPageByRentalAndUserAfter(@Param("rentalId") Integer rentalId, @Param("userId") Integer userId,
+                                                  @Param("createdAt") Timestamp createdAt, @Param("id") Integer id, Pageable limite);
+
+    // --------------------------------------
+    // Archivage : messages plus anciens que la limite, par identifiant croissant.
+    // Parcours de la clé primaire depuis le début : une fois l'archivage à jour, les premières lignes de la table sont
+    // les plus anciennes, et chaque lot ne lit que les lignes qu'il archive.
+    // --------------------------------------
+    @Query("SELECT " + MESSAGE_DTO + " FROM MessageEntity m WHERE m.createdAt < :limite ORDER BY m.id")
+    List<MessageDto> findArchivable(@Param("limite") Timestamp limite, Pageable lot);
 }
@@ -1,9 +1,136 @@
 package com.openclassrooms.projet3.repositories;
 
+import com.openclassrooms.projet3.dto.OwnerRentalDto;
+import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.dto.VersionDto;
 import com.openclassrooms.projet3.entites.RentalEntity;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface RentalRepository extends JpaRepository<RentalEntity, Integer> {
+public interface RentalRepository extends JpaRepository<RentalEntity, Integer>, RentalSearchRepository {
+    // Les méthodes findAll et findById sont générées automatiquement par Spring Data JPA
+
+    // Projection JPQL des lectures seules : les lignes sont copiées directement dans des RentalDto,
+    // sans entité gérée ni instantané conservé pour le dirty checking
+    String RENTAL_DTO = "new com.openclassrooms.projet3.dto.RentalDto(r.id, r.name, r.surface, r.price, r.picture, " +
+            "r.pictureThumbnail, r.pictureMedium, r.pictureFull, r.description, r.ownerId, r.createdAt, r.updatedAt)";
+
+    @Query("SELECT " + RENTAL_DTO + " FROM RentalEntity r WHERE r.id = :id")
+    Optional<RentalDto> findDtoById(@Param("id") Integer id);
+
+    // Enregistre les URL des variantes de l'image, une fois générées en arrière-plan
+    // La date de mise à jour change aussi, pour que les clients (ETag / Last-Modified) relisent le bien
+    // Renvoie 0 si l'image du bien a changé depuis, ou si ses variantes sont déjà enregistrées
+    @Modifying
+    @Transactional
+    @Query("UPDATE RentalEntity r SET r.pictureThumbnail = :thumbnail, r.pictureMedium = :medium, r.pictureFull = :full, " +
+            "r.updatedAt = :updatedAt WHERE r.id = :id AND r.picture = :picture AND r.pictureThumbnail IS NULL")
+    int updatePictureVariants(@Param("id") Integer id, @Param("picture") String picture, @Param("thumbnail") String thumbnail,
+                              @Param("medium") String medium, @Param("full") String full, @Param("updatedAt") Timestamp updatedAt);
+
+    // --------------------------------------
+    // Contenus d'image utilisés par chaque bien (picture et variantes), table RENTAL_IMAGES :
+    // réécrits avec les colonnes d'URL, dans la même transaction, et lus par empreinte par le nettoyage des images
+    // --------------------------------------
+    @Query(value = "SELECT DISTINCT hash FROM RENTAL_IMAGES WHERE hash IN (:hashes)", nativeQuery = true)
+    List<String> findReferencedImageHashes(@Param("hashes") Collection<String> hashes);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO RENTAL_IMAGES (hash, rental_id) VALUES (:hash, :id)", nativeQuery = true)
+    int addImageHash(@Param("id") Integer id, @Param("hash") String hash);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM RENTAL_IMAGES WHERE rental_id = :id", nativeQuery = true)
+    int deleteImageHashes(@Param("id") Integer id);
+
+    // --------------------------------------
+    // Messages archivés : date du plus récent message archivé de chaque bien, vide si aucun ne l'est, et nombre de
+    // messages archivés. La date est lue pour ne chercher dans l'archive que les fils qui y ont des messages, les deux
+    // par le tableau de bord du propriétaire ; updated_at est conservé, les colonnes ne faisant pas partie du bien
+    // servi aux clients.
+    // --------------------------------------
+    @Query(value = "SELECT messages_archived_at FROM RENTALS WHERE id = :id", nativeQuery = true)
+    Optional<Timestamp> findMessagesArchivedAtById(@Param("id") Integer id);
+
+    @Modifying
+    @Query(value = "UPDATE RENTALS SET messages_archived_at = GREATEST(COALESCE(messages_archived_at, :archivedAt), :archivedAt), " +
+            "messages_archived_count = messages_archived_count + :count, updated_at = updated_at WHERE id = :id", nativeQuery = true)
+    int addArchivedMessages(@Param("id") Integer id, @Param("archivedAt") Timestamp archivedAt, @Param("count") long count);
+
+    // --------------------------------------
+    // Versions utilisées par les requêtes conditionnelles (ETag / Last-Modified), sans charger les biens
+    // --------------------------------------
+
+    // Version d'un bien, lue par clé primaire
+    @Query("SELECT new com.openclassrooms.projet3.dto.VersionDto(r.id, r.updatedAt) FROM RentalEntity r WHERE r.id = :id")
+    Optional<VersionDto> findVersionById(@Param("id") Integer id);
+
+    // Propriétaire d'un bien, lu par clé primaire (destinataire des messages du bien)
+    @Query("SELECT r.ownerId FROM RentalEntity r WHERE r.id = :id")
+    Optional<Integer> findOwnerIdById(@Param("id") Integer id);
+
+    // Version de la liste : MAX(id) sur la clé primaire, MAX(updated_at) sur l'index RENTALS_updated_at_index,
+    // et la révision de la liste (COLLECTION_VERSIONS), lue par clé primaire : trois lectures d'une ligne, quel que soit
+    // le nombre de biens
+    @Query("SELECT new com.openclassrooms.projet3.dto.VersionDto(MAX(r.id), MAX(r.updatedAt), " +
+            "(SELECT v.revision FROM CollectionVersionEntity v WHERE v.name = 'rentals')) FROM RentalEntity r")
+    VersionDto findCollectionVersion();
+
+    // Incrémente la révision de la liste, dans la transaction de chaque création, modification ou suppression de bien
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE COLLECTION_VERSIONS SET revision = revision + 1 WHERE name = 'rentals'", nativeQuery = true)
+    int incrementCollectionRevision();
+
+    // --------------------------------------
+    // Tableau de bord du propriétaire : ses biens avec le nombre de messages et la date du dernier message,
+    // en une seule requête groupée (LEFT JOIN sur MESSAGES, index MESSAGES_rental_id_created_at_index).
+    // Les messages archivés, plus anciens que ceux de la table, sont comptés avec les colonnes messages_archived_*.
+    // Paginée par clé sur (created_at, id) décroissants, index RENTALS_owner_id_created_at_index.
+    // --------------------------------------
+    String OWNER_RENTAL_DTO = "new com.openclassrooms.projet3.dto.OwnerRentalDto(r.id, r.name, r.surface, r.price, r.picture, " +
+            "r.createdAt, r.updatedAt, COUNT(m.id) + r.messagesArchivedCount, COALESCE(MAX(m.createdAt), r.messagesArchivedAt)) " +
+            "FROM RentalEntity r LEFT JOIN MessageEntity m ON m.rentalId = r.id ";
+    String OWNER_RENTAL_GROUP_BY = "GROUP BY r.id, r.name, r.surface, r.price, r.picture, r.createdAt, r.updatedAt, " +
+            "r.messagesArchivedCount, r.messagesArchivedAt ORDER BY r.createdAt DESC, r.id DESC";
+
+    @Query("SELECT " + OWNER_RENTAL_DTO + "WHERE r.ownerId = :ownerId " + OWNER_RENTAL_GROUP_BY)
+    List<OwnerRentalDto> findFirstPageByOwner(@Param("ownerId") Integer ownerId, Pageable limite);
+
+    @Query("SELECT " + OWNER_RENTAL_DTO +
+            "WHERE r.ownerId = :ownerId AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+            OWNER_RENTAL_GROUP_BY)
+    List<OwnerRentalDto> findPageByOwnerAfter(@Param("ownerId") Integer ownerId, @Param("createdAt") Timestamp createdAt,
+                                              @Param("id") Integer id, Pageable limite);
+
+    // --------------------------------------
+    // Construction de l'index de recherche plein texte : seuls l'id, le nom, la description et la version sont lus,
+    // en flux, par id croissant
+    // --------------------------------------
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT r.id, r.name, r.description, r.updatedAt FROM RentalEntity r ORDER BY r.id")
+    Stream<Object[]> streamIndexableText();
+
+    // Alimentation des statistiques de marché : seuls l'id, le prix, la surface et la version sont lus, en flux, par id croissant
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT r.id, r.price, r.surface, r.updatedAt FROM RentalEntity r ORDER BY r.id")
+    Stream<Object[]> streamPriceAndSurface();
 }
@@ -0,0 +1,53 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.dto.RentalSummaryDto;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.pagination.RentalSort;
+import com.openclassrooms.projet3.request.RentalSearchRequest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Requêtes de recherche des biens construites dynamiquement (implémentées dans RentalSearchRepositoryImpl).
+ */
+public interface RentalSearchRepository {
+
+    /**
+     * Lit une page de biens triée et paginée par clé (keyset) : la reprise se fait sur (colonne de tri, id)
+     * grâce aux index de schema.sql (RENTALS_created_at_index, RENTALS_price_index, RENTALS_surface_index). <br>
+     * Seules les colonnes demandées sont lues ; les résultats sont lus en flux (curseur JDBC, useCursorFetch)
+     * et le Stream doit être consommé puis fermé à l'intérieur d'une transaction.
+     *
+     * @param sort     L'ordre de tri : date de création décroissante, prix ou surface croissants.
+     * @param apres    Le curseur de la dernière ligne de la page précédente, null pour la première page.
+     * @param limite   Le nombre maximum de lignes.
+     * @param colonnes Les attributs à lire (voir RentalDto.CHAMPS), dont l'id et la colonne de tri.
+     * @return Stream<RentalDto> - Les biens, dont seules les propriétés lues sont renseignées.
+     */
+    Stream<RentalDto> streamPage(RentalSort sort, KeysetCursor apres, int limite, List<String> colonnes);
+
+    /**
+     * Recherche les biens dont le prix, la surface et le propriétaire correspondent aux critères renseignés. <br>
+     * Seuls les critères renseignés sont ajoutés à la requête, pour que MySQL puisse parcourir l'index adapté. <br>
+     * Les résultats sont triés par (prix, surface, id) croissants, l'ordre de l'index RENTALS_price_surface_index.
+     *
+     * @param criteres Les critères de recherche.
+     * @param apres    Le curseur (prix, surface, id) du dernier résultat de la page précédente, null pour la première page.
+     * @param limite   Le nombre maximum de résultats.
+     * @return List<RentalSummaryDto> - Les résultats, projetés sans la description.
+     */
+    List<RentalSummaryDto> searchByRange(RentalSearchRequest criteres, KeysetCursor apres, int limite);
+
+    /**
+     * Lit les résumés des biens dont l'identifiant est donné et qui correspondent aux critères renseignés. <br>
+     * Utilisé par la recherche plein texte : l'index fournit les identifiants, la base applique les filtres.
+     *
+     * @param criteres Les critères de recherche (fourchettes et propriétaire).
+     * @param ids      Les identifiants des biens candidats.
+     * @return List<RentalSummaryDto> - Les résumés des biens retenus, sans ordre particulier.
+     */
+    List<RentalSummaryDto> findSummariesByIds(RentalSearchRequest criteres, Collection<Integer> ids);
+}
@@ -0,0 +1,164 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.dto.RentalSummaryDto;
+import com.openclassrooms.projet3.entites.RentalEntity;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.pagination.RentalSort;
+import com.openclassrooms.projet3.request.RentalSearchRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+// Implémentation de RentalSearchRepository, rattachée à RentalRepository par Spring Data (suffixe Impl)
+class RentalSearchRepositoryImpl implements RentalSearchRepository {
+
+    private final EntityManager entityManager;
+
+    RentalSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Stream<RentalDto> streamPage(RentalSort sort, KeysetCursor apres, int limite, List<String> colonnes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<RentalEntity> rental = query.from(RentalEntity.class);
+        TupleProjection.selectionner(query, rental, colonnes);
+
+        Path<Integer> id = rental.get("id");
+        if (sort == RentalSort.CREATED_AT) {
+            // Les plus récents en premier : (created_at, id) < (date, id) du curseur.
+            // En ordre décroissant, MySQL place les dates NULL en dernier : elles suivent toujours une date renseignée
+            Path<Timestamp> createdAt = rental.get("createdAt");
+            if (apres != null && apres.isValeurNulle()) {
+                query.where(cb.and(cb.isNull(createdAt), cb.lessThan(id, apres.getId())));
+            } else if (apres != null) {
+                Timestamp dateCurseur = apres.getValeurAsTimestamp();
+                query.where(cb.or(
+                        cb.lessThan(createdAt, dateCurseur),
+                        cb.and(cb.equal(createdAt, dateCurseur), cb.lessThan(id, apres.getId())),
+                        cb.isNull(createdAt)));
+            }
+            query.orderBy(cb.desc(createdAt), cb.desc(id));
+        } else {
+            // Prix ou surface croissants : (colonne, id) > (valeur, id) du curseur
+            Path<Double> colonne = rental.get(sort.getParametre());
+            if (apres != null) {
+                query.where(suivantes(cb, colonne, valeur(apres, 0), cb.greaterThan(id, apres.getId())));
+            }
+            query.orderBy(cb.asc(colonne), cb.asc(id));
+        }
+
+        return entityManager.createQuery(query)
+                .setHint(HINT_FETCH_SIZE, 50)
+                .setMaxResults(limite)
+                .getResultStream()
+                .map(tuple -> TupleProjection.versDto(tuple, RentalDto::new));
+    }
+
+    @Override
+    public List<RentalSummaryDto> searchByRange(RentalSearchRequest criteres, KeysetCursor apres, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RentalSummaryDto> query = cb.createQuery(RentalSummaryDto.class);
+        Root<RentalEntity> rental = query.from(RentalEntity.class);
+
+        Path<Integer> id = rental.get("id");
+        Path<Double> price = rental.get("price");
+        Path<Double> surface = rental.get("surface");
+
+        query.select(projection(cb, rental));
+        List<Predicate> predicats = predicats(cb, rental, criteres);
+
+        // Reprise après le dernier résultat : (price, surface, id) > (prix, surface, id) du curseur
+        if (apres != null) {
+            predicats.add(suivantes(cb, price, valeur(apres, 0),
+                    suivantes(cb, surface, valeur(apres, 1), cb.greaterThan(id, apres.getId()))));
+        }
+
+        query.where(predicats.toArray(new Predicate[0]));
+        query.orderBy(cb.asc(price), cb.asc(surface), cb.asc(id));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+
+    // --------------------------------------
+    // Lignes après le curseur sur une colonne triée en ordre croissant : la ligne est après le curseur si sa valeur
+    // est plus grande, ou égale et "suite" (colonnes suivantes du tri) est vraie.
+    // En ordre croissant, MySQL place les valeurs NULL en premier : après une valeur NULL viennent les autres lignes
+    // NULL selon "suite", puis toutes les valeurs renseignées ; après une valeur renseignée, aucune ligne NULL.
+    // --------------------------------------
+    private static Predicate suivantes(CriteriaBuilder cb, Path<Double> colonne, Double valeur, Predicate suite) {
+        if (valeur == null) {
+            return cb.or(cb.isNotNull(colonne), cb.and(cb.isNull(colonne), suite));
+        }
+        return cb.or(cb.greaterThan(colonne, valeur), cb.and(cb.equal(colonne, valeur), suite));
+    }
+
+    // Valeur de la n-ième colonne de tri du curseur, null si elle était NULL
+    private static Double valeur(KeysetCursor curseur, int index) {
+        return curseur.isValeurNulle(index) ? null : curseur.getValeurAsDouble(index);
+    }
+
+    @Override
+    public List<RentalSummaryDto> findSummariesByIds(RentalSearchRequest criteres, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RentalSummaryDto> query = cb.createQuery(RentalSummaryDto.class);
+        Root<RentalEntity> rental = query.from(RentalEntity.class);
+
+        query.select(projection(cb, rental));
+        List<Predicate> predicats = predicats(cb, rental, criteres);
+        predicats.add(rental.get("id").in(ids));
+        query.where(predicats.toArray(new Predicate[0]));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    // Projection : seules les colonnes affichées dans une liste de résultats sont lues
+    private static CompoundSelection<RentalSummaryDto> projection(CriteriaBuilder cb, Root<RentalEntity> rental) {
+        return cb.construct(RentalSummaryDto.class,
+                rental.get("id"), rental.get("name"), rental.get("surface"), rental.get("price"), rental.get("picture"), rental.get("ownerId"));
+    }
+
+    // Seuls les critères renseignés sont ajoutés
+    private static List<Predicate> predicats(CriteriaBuilder cb, Root<RentalEntity> rental, RentalSearchRequest criteres) {
+        Path<Double> price = rental.get("price");
+        Path<Double> surface = rental.get("surface");
+
+        List<Predicate> predicats = new ArrayList<>();
+        if (criteres.getMinPrice() != null) {
+            predicats.add(cb.greaterThanOrEqualTo(price, criteres.getMinPrice()));
+        }
+        if (criteres.getMaxPrice() != null) {
+            predicats.add(cb.lessThanOrEqualTo(price, criteres.getMaxPrice()));
+        }
+        if (criteres.getMinSurface() != null) {
+            predicats.add(cb.greaterThanOrEqualTo(surface, criteres.getMinSurface()));
+        }
+        if (criteres.getMaxSurface() != null) {
+            predicats.add(cb.lessThanOrEqualTo(surface, criteres.getMaxSurface()));
+        }
+        if (criteres.getOwnerId() != null) {
+            predicats.add(cb.equal(rental.get("ownerId"), criteres.getOwnerId()));
+        }
+        return predicats;
+    }
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.projet3.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// Projection sur une liste de colonnes choisie à l'exécution (paramètre "fields") :
+// les attributs de l'entité sont lus sous leur nom et recopiés dans les propriétés du même nom du DTO
+final class TupleProjection {
+
+    private TupleProjection() {}
+
+    // Sélectionne les attributs demandés, chacun sous un alias égal à son nom
+    static <E> void selectionner(CriteriaQuery<Tuple> query, Root<E> root, List<String> colonnes) {
+        List<Selection<?>> selections = colonnes.stream()
+                .<Selection<?>>map(colonne -> root.get(colonne).alias(colonne))
+                .toList();
+        query.multiselect(selections);
+    }
+
+    // Copie une ligne dans un DTO neuf ; les propriétés non lues restent à null
+    static <D> D versDto(Tuple tuple, Supplier<D> fabrique) {
+        D dto = fabrique.get();
+        BeanWrapper wrapper = new BeanWrapperImpl(dto);
+        for (TupleElement<?> element : tuple.getElements()) {
+            wrapper.setPropertyValue(element.getAlias(), tuple.get(element));
+        }
+        return dto;
+    }
+
+    // Lit toutes les lignes d'une table en ne projetant que les colonnes demandées
+    static <E, D> List<D> lireTout(EntityManager entityManager, Class<E> entite, List<String> colonnes, Supplier<D> fabrique) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        selectionner(query, query.from(entite), colonnes);
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> versDto(tuple, fabrique))
+                .toList();
+    }
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.UserDto;
+
+import java.util.List;
+
+/**
+ * Lectures des utilisateurs projetées sur les colonnes demandées (implémentées dans UserProjectionRepositoryImpl).
+ */
+public interface UserProjectionRepository {
+
+    /**
+     * Lit tous les utilisateurs en ne lisant que les colonnes demandées.
+     *
+     * @param colonnes Les attributs à lire (voir UserDto.CHAMPS).
+     * @return List<UserDto> - Les utilisateurs, dont seules les propriétés lues sont renseignées.
+     */
+    List<UserDto> findAllDtos(List<String> colonnes);
+}
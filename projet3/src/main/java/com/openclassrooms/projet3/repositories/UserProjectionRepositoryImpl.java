@@ -0,0 +1,22 @@
+package com.openclassrooms.projet3.repositories;
+
+import com.openclassrooms.projet3.dto.UserDto;
+import com.openclassrooms.projet3.entites.UserEntity;
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+
+// Implémentation de UserProjectionRepository, rattachée à UserRepository par Spring Data (suffixe Impl)
+class UserProjectionRepositoryImpl implements UserProjectionRepository {
+
+    private final EntityManager entityManager;
+
+    UserProjectionRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<UserDto> findAllDtos(List<String> colonnes) {
+        return TupleProjection.lireTout(entityManager, UserEntity.class, colonnes, UserDto::new);
+    }
+}
@@ -1,16 +1,28 @@
 package com.openclassrooms.projet3.repositories;
 
+import com.openclassrooms.projet3.dto.UserDto;
 import com.openclassrooms.projet3.entites.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, Integer> {
+public interface UserRepository extends JpaRepository<UserEntity, Integer>, UserProjectionRepository {
     // Les méthodes findAll et findById sont générées automatiquement par Spring Data JPA
 
     boolean existsByEmail(String email);
 
     Optional<UserEntity> findByEmail(String email);
+
+    // --------------------------------------
+    // Lectures seules projetées directement dans des UserDto : le mot de passe n'est pas lu
+    // et aucune entité gérée n'est créée
+    // --------------------------------------
+    String USER_DTO = "new com.openclassrooms.projet3.dto.UserDto(u.id, u.email, u.name, u.createdAt, u.updatedAt)";
+
+    @Query("SELECT " + USER_DTO + " FROM UserEntity u WHERE u.id = :id")
+    Optional<UserDto> findDtoById(@Param("id") Integer id);
 }
@@ -11,16 +11,24 @@ public class RentalCreationRequest {
     private Double price;
     private MultipartFile picture;
     private String description;
+    private String pictureName;
+
+    // --------------------------------------
+    // Constructeur sans paramètre : le formulaire est lié par les setters, picture pouvant être absent (pictureName)
+    // --------------------------------------
+    public RentalCreationRequest() {
+    }
 
     // --------------------------------------
     // Constructeur avec paramètres pour initialiser les champs lors de la création d'une instance
     // --------------------------------------
-    public RentalCreationRequest(String name, Double surface, Double price, MultipartFile picture, String description) {
+    public RentalCreationRequest(String name, Double surface, Double price, MultipartFile picture, String description, String pictureName) {
         this.name = name;
         this.surface = surface;
         this.price = price;
         this.picture = picture;
         this.description = description;
+        this.pictureName = pictureName;
     }
 
     // --------------------------------------
@@ -66,4 +74,13 @@ public class RentalCreationRequest {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    // Nom d'une image déjà envoyée par /api/uploads, utilisé à la place de picture
+    public String getPictureName() {
+        return pictureName;
+    }
+
+    public void setPictureName(String pictureName) {
+        this.pictureName = pictureName;
+    }
 }
@@ -0,0 +1,59 @@
+package com.openclassrooms.projet3.request;
+
+public class RentalImportRow {
+    // --------------------------------------
+    // Champs d'un bien dans un fichier d'import (une ligne NDJSON ou un enregistrement CSV)
+    // --------------------------------------
+    private String name;
+    private Double surface;
+    private Double price;
+    private String description;
+
+    // --------------------------------------
+    // Constructeurs : sans paramètre pour Jackson (NDJSON), avec paramètres pour le CSV
+    // --------------------------------------
+    public RentalImportRow() {
+    }
+
+    public RentalImportRow(String name, Double surface, Double price, String description) {
+        this.name = name;
+        this.surface = surface;
+        this.price = price;
+        this.description = description;
+    }
+
+    // --------------------------------------
+    // Getter et Setter
+    // --------------------------------------
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Double getSurface() {
+        return surface;
+    }
+
+    public void setSurface(Double surface) {
+        this.surface = surface;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.projet3.request;
+
+public class RentalSearchRequest {
+    // --------------------------------------
+    // Critères de recherche des biens (tous optionnels) - paramètres de la requête GET
+    // --------------------------------------
+    // Texte recherché dans le nom et la description (recherche plein texte)
+    private String q;
+    private Double minPrice;
+    private Double maxPrice;
+    private Double minSurface;
+    private Double maxSurface;
+    private Integer ownerId;
+
+    // --------------------------------------
+    // Constructeur avec paramètres pour initialiser les champs lors de la création d'une instance
+    // --------------------------------------
+    public RentalSearchRequest(String q, Double minPrice, Double maxPrice, Double minSurface, Double maxSurface, Integer ownerId) {
+        this.q = q;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minSurface = minSurface;
+        this.maxSurface = maxSurface;
+        this.ownerId = ownerId;
+    }
+
+    // --------------------------------------
+    // Getter et Setter
+    // --------------------------------------
+    public String getQ() {
+        return q;
+    }
+
+    public void setQ(String q) {
+        this.q = q;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Double getMinSurface() {
+        return minSurface;
+    }
+
+    public void setMinSurface(Double minSurface) {
+        this.minSurface = minSurface;
+    }
+
+    public Double getMaxSurface() {
+        return maxSurface;
+    }
+
+    public void setMaxSurface(Double maxSurface) {
+        this.maxSurface = maxSurface;
+    }
+
+    public Integer getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Integer ownerId) {
+        this.ownerId = ownerId;
+    }
+}
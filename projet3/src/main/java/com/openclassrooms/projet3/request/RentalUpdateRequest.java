@@ -9,15 +9,17 @@ public class RentalUpdateRequest {
     private Double surface;
     private Double price;
     private String description;
+    private String pictureName;
 
     // --------------------------------------
     // Constructeur avec paramètres pour initialiser les champs lors de l'update d'une instance
     // --------------------------------------
-    public RentalUpdateRequest(String name, Double surface, Double price, String description) {
+    public RentalUpdateRequest(String name, Double surface, Double price, String description, String pictureName) {
         this.name = name;
         this.surface = surface;
         this.price = price;
         this.description = description;
+        this.pictureName = pictureName;
     }
 
     // --------------------------------------
@@ -54,4 +56,13 @@ public class RentalUpdateRequest {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    // Nom d'une image déjà envoyée par /api/uploads, utilisé à la place de picture
+    public String getPictureName() {
+        return pictureName;
+    }
+
+    public void setPictureName(String pictureName) {
+        this.pictureName = pictureName;
+    }
 }
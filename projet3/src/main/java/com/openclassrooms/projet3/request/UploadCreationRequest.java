@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.request;
+
+public class UploadCreationRequest {
+    // --------------------------------------
+    // Champs nécessaires pour ouvrir un envoi en plusieurs morceaux
+    // --------------------------------------
+    private String fileName;
+    private Long size;
+
+    // --------------------------------------
+    // Constructeur avec paramètres pour initialiser les champs lors de la création d'une instance
+    // --------------------------------------
+    public UploadCreationRequest(String fileName, Long size) {
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    // --------------------------------------
+    // Getter et Setter
+    // --------------------------------------
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.response;
+
+import com.openclassrooms.projet3.dto.ConversationDto;
+
+import java.util.List;
+
+/**
+ * Page de la boîte de réception renvoyée par GET /api/inbox. <br>
+ * nextCursor est null lorsqu'il n'y a plus de page à lire.
+ */
+public class InboxResponse {
+
+    private List<ConversationDto> conversations;
+    private String nextCursor;
+
+    public InboxResponse(List<ConversationDto> conversations, String nextCursor) {
+        this.conversations = conversations;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ConversationDto> getConversations() {
+        return conversations;
+    }
+
+    public void setConversations(List<ConversationDto> conversations) {
+        this.conversations = conversations;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
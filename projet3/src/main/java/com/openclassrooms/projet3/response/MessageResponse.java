@@ -0,0 +1,21 @@
+package com.openclassrooms.projet3.response;
+
+/**
+ * Réponse contenant un simple message (succès ou erreur), sérialisée dans le format négocié : {"message": "..."} en JSON.
+ */
+public class MessageResponse {
+
+    private String message;
+
+    public MessageResponse(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
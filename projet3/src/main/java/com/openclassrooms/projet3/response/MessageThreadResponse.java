@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.response;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+
+import java.util.List;
+
+/**
+ * Page des messages d'un bien renvoyée par GET /api/rentals/:id/messages et GET /api/messages?rentalId=. <br>
+ * nextCursor est null lorsqu'il n'y a plus de page à lire.
+ */
+public class MessageThreadResponse {
+
+    private List<MessageDto> messages;
+    private String nextCursor;
+
+    public MessageThreadResponse(List<MessageDto> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<MessageDto> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageDto> messages) {
+        this.messages = messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
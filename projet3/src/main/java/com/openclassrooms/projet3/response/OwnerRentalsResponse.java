@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.response;
+
+import com.openclassrooms.projet3.dto.OwnerRentalDto;
+
+import java.util.List;
+
+/**
+ * Page des biens du propriétaire connecté renvoyée par GET /api/rentals/mine. <br>
+ * nextCursor est null lorsqu'il n'y a plus de page à lire.
+ */
+public class OwnerRentalsResponse {
+
+    private List<OwnerRentalDto> rentals;
+    private String nextCursor;
+
+    public OwnerRentalsResponse(List<OwnerRentalDto> rentals, String nextCursor) {
+        this.rentals = rentals;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<OwnerRentalDto> getRentals() {
+        return rentals;
+    }
+
+    public void setRentals(List<OwnerRentalDto> rentals) {
+        this.rentals = rentals;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.projet3.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rapport d'un import de biens en masse : nombre de biens créés et erreurs ligne par ligne. <br>
+ * Les lignes en erreur sont ignorées, les autres sont importées. <br>
+ * Si la lecture du fichier s'arrête en cours de route (flux coupé, enregistrement illisible), les biens lus avant
+ * restent importés et failure indique la ligne et la cause de l'arrêt.
+ */
+public class RentalImportResponse {
+
+    private int imported;
+    private final List<RowError> errors = new ArrayList<>();
+    private RowError failure;
+
+    public void addImported(int nombre) {
+        imported += nombre;
+    }
+
+    public void addError(long line, String message) {
+        errors.add(new RowError(line, message));
+    }
+
+    // Arrêt de la lecture : les lignes suivantes n'ont pas été lues
+    public void interrompre(long line, String message) {
+        failure = new RowError(line, message);
+    }
+
+    public boolean isComplete() {
+        return failure == null;
+    }
+
+    // Ligne et cause de l'arrêt de la lecture, null si tout le fichier a été lu
+    public RowError getFailure() {
+        return failure;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getRejected() {
+        return errors.size();
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Erreur sur une ligne du fichier importé (numéro de ligne à partir de 1).
+     */
+    public static class RowError {
+        private final long line;
+        private final String message;
+
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
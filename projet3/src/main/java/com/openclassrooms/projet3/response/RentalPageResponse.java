@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.response;
+
+import com.openclassrooms.projet3.dto.RentalDto;
+
+import java.util.List;
+
+/**
+ * Page de biens en location renvoyée par GET /api/rentals. <br>
+ * nextCursor est null lorsqu'il n'y a plus de page à lire.
+ */
+public class RentalPageResponse {
+
+    private List<RentalDto> rentals;
+    private String nextCursor;
+
+    public RentalPageResponse(List<RentalDto> rentals, String nextCursor) {
+        this.rentals = rentals;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RentalDto> getRentals() {
+        return rentals;
+    }
+
+    public void setRentals(List<RentalDto> rentals) {
+        this.rentals = rentals;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.projet3.response;
+
+import com.openclassrooms.projet3.dto.RentalSummaryDto;
+
+import java.util.List;
+
+/**
+ * Page de résultats renvoyée par GET /api/rentals/search. <br>
+ * nextCursor est null lorsqu'il n'y a plus de résultat à lire.
+ */
+public class RentalSearchResponse {
+
+    private List<RentalSummaryDto> rentals;
+    private String nextCursor;
+
+    public RentalSearchResponse(List<RentalSummaryDto> rentals, String nextCursor) {
+        this.rentals = rentals;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RentalSummaryDto> getRentals() {
+        return rentals;
+    }
+
+    public void setRentals(List<RentalSummaryDto> rentals) {
+        this.rentals = rentals;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
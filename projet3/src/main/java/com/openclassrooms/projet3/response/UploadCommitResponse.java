@@ -0,0 +1,32 @@
+package com.openclassrooms.projet3.response;
+
+/**
+ * Image enregistrée à la fin d'un envoi en plusieurs morceaux : son nom, à donner dans le champ pictureName
+ * d'une location, et son URL publique.
+ */
+public class UploadCommitResponse {
+
+    private String name;
+    private String url;
+
+    public UploadCommitResponse(String name, String url) {
+        this.name = name;
+        this.url = url;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+}
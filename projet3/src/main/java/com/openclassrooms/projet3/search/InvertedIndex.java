@@ -0,0 +1,345 @@
+package com.openclassrooms.projet3.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index inversé en mémoire, classé par BM25. <br>
+ * Chaque bien indexé reçoit un numéro de document interne croissant ; pour chaque terme, l'index garde la liste
+ * compressée des documents qui le contiennent ({@link PostingList}). Une recherche ne lit que les listes des termes demandés,
+ * cumule les scores dans une table creuse et ne trie que les résultats demandés : son coût dépend du nombre de documents
+ * correspondants et non du nombre total de biens. <br>
+ * Une mise à jour supprime logiquement l'ancien document et en ajoute un nouveau en fin d'index ;
+ * les documents supprimés sont retirés des listes lorsqu'ils deviennent trop nombreux (compactage). <br>
+ * Thread-safe : les recherches partagent un verrou en lecture, les mises à jour prennent le verrou en écriture.
+ */
+public final class InvertedIndex {
+    // Paramètres BM25 usuels : saturation de la fréquence et normalisation par la longueur du document
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Le compactage est déclenché lorsque les documents supprimés dépassent ce seuil et le quart des documents actifs
+    private static final int SEUIL_COMPACTAGE = 1000;
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<Integer, Integer> documentParBien = new HashMap<>();
+    private int[] bienParDocument = new int[1024];
+    private int[] longueurs = new int[1024];
+    private BitSet supprimes = new BitSet();
+
+    private int prochainDocument;
+    private int documentsActifs;
+    private int documentsSupprimes;
+    private long longueurTotale;
+
+    /**
+     * Indexe un bien, ou remplace son entrée s'il est déjà indexé.
+     *
+     * @param idBien L'identifiant du bien.
+     * @param champs Les textes à indexer (nom, description...), peuvent être null.
+     */
+    public void index(int idBien, String... champs) {
+        List<String> termes = new ArrayList<>();
+        for (String champ : champs) {
+            termes.addAll(Tokenizer.tokenize(champ));
+        }
+        Map<String, Integer> frequences = new HashMap<>();
+        for (String terme : termes) {
+            frequences.merge(terme, 1, Integer::sum);
+        }
+
+        verrou.writeLock().lock();
+        try {
+            supprimerDocument(idBien);
+
+            int document = prochainDocument++;
+            if (document == bienParDocument.length) {
+                bienParDocument = Arrays.copyOf(bienParDocument, document * 2);
+                longueurs = Arrays.copyOf(longueurs, document * 2);
+            }
+            bienParDocument[document] = idBien;
+            longueurs[document] = termes.size();
+            for (Map.Entry<String, Integer> entree : frequences.entrySet()) {
+                postings.computeIfAbsent(entree.getKey(), terme -> new PostingList()).add(document, entree.getValue());
+            }
+
+            documentParBien.put(idBien, document);
+            documentsActifs++;
+            longueurTotale += termes.size();
+
+            if (documentsSupprimes > SEUIL_COMPACTAGE && documentsSupprimes > documentsActifs / 4) {
+                compacter();
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire un bien de l'index (sans effet s'il n'est pas indexé).
+     *
+     * @param idBien L'identifiant du bien.
+     */
+    public void remove(int idBien) {
+        verrou.writeLock().lock();
+        try {
+            supprimerDocument(idBien);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // Suppression logique : le document reste dans les listes jusqu'au prochain compactage
+    private void supprimerDocument(int idBien) {
+        Integer ancien = documentParBien.remove(idBien);
+        if (ancien != null) {
+            supprimes.set(ancien);
+            documentsActifs--;
+            documentsSupprimes++;
+            longueurTotale -= longueurs[ancien];
+        }
+    }
+
+    /**
+     * Retire définitivement les documents supprimés des listes, renumérote les documents
+     * et libère la capacité inutilisée. Appelé automatiquement, ou après la construction initiale de l'index.
+     */
+    public void compact() {
+        verrou.writeLock().lock();
+        try {
+            compacter();
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void compacter() {
+        // Nouveau numéro de chaque document, -1 pour les documents supprimés
+        int[] renumerotation = new int[prochainDocument];
+        int[] nouveauxBiens = new int[Math.max(documentsActifs, 16)];
+        int[] nouvellesLongueurs = new int[nouveauxBiens.length];
+        int suivant = 0;
+        for (int document = 0; document < prochainDocument; document++) {
+            if (supprimes.get(document)) {
+                renumerotation[document] = -1;
+            } else {
+                renumerotation[document] = suivant;
+                nouveauxBiens[suivant] = bienParDocument[document];
+                nouvellesLongueurs[suivant] = longueurs[document];
+                documentParBien.put(bienParDocument[document], suivant);
+                suivant++;
+            }
+        }
+
+        // La renumérotation conserve l'ordre : les listes restent triées
+        postings.replaceAll((terme, ancienne) -> {
+            PostingList nouvelle = new PostingList();
+            PostingList.Lecteur lecteur = ancienne.lecteur();
+            while (lecteur.suivant()) {
+                int document = renumerotation[lecteur.document()];
+                if (document >= 0) {
+                    nouvelle.add(document, lecteur.frequence());
+                }
+            }
+            nouvelle.ajuster();
+            return nouvelle;
+        });
+        postings.values().removeIf(liste -> liste.size() == 0);
+
+        bienParDocument = nouveauxBiens;
+        longueurs = nouvellesLongueurs;
+        supprimes = new BitSet();
+        prochainDocument = suivant;
+        documentsSupprimes = 0;
+    }
+
+    /**
+     * Recherche les biens contenant au moins un des termes de la requête, classés par score BM25 décroissant
+     * puis par identifiant croissant.
+     *
+     * @param requete Le texte recherché.
+     * @return List<Hit> - Les biens correspondants, du plus pertinent au moins pertinent.
+     */
+    public List<Hit> search(String requete) {
+        return rechercher(requete, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Recherche les premiers biens correspondant à la requête, dans l'ordre de {@link #search(String)}.
+     *
+     * @param requete Le texte recherché.
+     * @param limite  Le nombre maximum de résultats.
+     * @return List<Hit> - Les meilleurs résultats, du plus pertinent au moins pertinent.
+     */
+    public List<Hit> search(String requete, int limite) {
+        return rechercher(requete, null, limite);
+    }
+
+    /**
+     * Recherche les premiers biens classés après la position (score, id) donnée, dans l'ordre de {@link #search(String)}.
+     *
+     * @param requete  Le texte recherché.
+     * @param score    Le score du dernier résultat déjà lu.
+     * @param rentalId L'identifiant du dernier résultat déjà lu.
+     * @param limite   Le nombre maximum de résultats.
+     * @return List<Hit> - Les résultats suivants, du plus pertinent au moins pertinent.
+     */
+    public List<Hit> searchAfter(String requete, double score, int rentalId, int limite) {
+        return rechercher(requete, new Hit(rentalId, score), limite);
+    }
+
+    private List<Hit> rechercher(String requete, Hit apres, int limite) {
+        Set<String> termes = new LinkedHashSet<>(Tokenizer.tokenize(requete));
+        List<Hit> resultats = new ArrayList<>();
+        if (termes.isEmpty() || limite <= 0) {
+            return resultats;
+        }
+
+        verrou.readLock().lock();
+        try {
+            if (documentsActifs == 0) {
+                return resultats;
+            }
+            double longueurMoyenne = Math.max(1.0, (double) longueurTotale / documentsActifs);
+            // Seuls les documents des listes lues ont un score
+            Map<Integer, Double> scores = new HashMap<>();
+
+            for (String terme : termes) {
+                PostingList liste = postings.get(terme);
+                if (liste == null) {
+                    continue;
+                }
+                // Les documents supprimés non encore compactés sont comptés : le nombre est borné pour garder un idf positif
+                int frequenceDocuments = Math.min(liste.size(), documentsActifs);
+                double idf = Math.log(1 + (documentsActifs - frequenceDocuments + 0.5) / (frequenceDocuments + 0.5));
+
+                PostingList.Lecteur lecteur = liste.lecteur();
+                while (lecteur.suivant()) {
+                    int document = lecteur.document();
+                    if (supprimes.get(document)) {
+                        continue;
+                    }
+                    int frequence = lecteur.frequence();
+                    double normalisation = K1 * (1 - B + B * longueurs[document] / longueurMoyenne);
+                    scores.merge(document, idf * frequence * (K1 + 1) / (frequence + normalisation), Double::sum);
+                }
+            }
+
+            // Les "limite" meilleurs résultats après la position demandée, le moins bon en tête du tas
+            PriorityQueue<Hit> meilleurs = new PriorityQueue<>(Hit.ORDRE.reversed());
+            for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+                Hit hit = new Hit(bienParDocument[score.getKey()], score.getValue());
+                if (apres != null && !hit.isAfter(apres.score, apres.rentalId)) {
+                    continue;
+                }
+                if (meilleurs.size() < limite) {
+                    meilleurs.add(hit);
+                } else if (Hit.ORDRE.compare(hit, meilleurs.peek()) < 0) {
+                    meilleurs.poll();
+                    meilleurs.add(hit);
+                }
+            }
+            resultats.addAll(meilleurs);
+        } finally {
+            verrou.readLock().unlock();
+        }
+
+        resultats.sort(Hit.ORDRE);
+        return resultats;
+    }
+
+    // --------------------------------------
+    // Statistiques de l'index
+    // --------------------------------------
+
+    public int documentCount() {
+        verrou.readLock().lock();
+        try {
+            return documentsActifs;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        verrou.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estime la mémoire occupée par l'index sur le tas (JVM 64 bits, références compressées). <br>
+     * L'estimation compte les listes compressées, les termes, les tables de hachage et les tableaux par document.
+     *
+     * @return long - La taille estimée, en octets.
+     */
+    public long estimateHeapBytes() {
+        verrou.readLock().lock();
+        try {
+            // Entrée de HashMap (32 octets) et sa case dans la table (4 octets)
+            final int entree = 36;
+            long octets = 0;
+            for (Map.Entry<String, PostingList> terme : postings.entrySet()) {
+                // String (24 octets) et son tableau d'octets (16 octets d'en-tête, Latin-1 après normalisation)
+                octets += entree + 24 + 16 + terme.getKey().length() + terme.getValue().octetsUtilises();
+            }
+            // Entrée de documentParBien : clé et valeur Integer (16 octets chacune)
+            octets += (long) documentParBien.size() * (entree + 32);
+            octets += 16 + 4L * bienParDocument.length;
+            octets += 16 + 4L * longueurs.length;
+            octets += 16 + supprimes.size() / 8;
+            return octets;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bien trouvé par une recherche, avec son score BM25.
+     */
+    public static final class Hit {
+        static final Comparator<Hit> ORDRE = Comparator.comparingDouble(Hit::getScore).reversed()
+                .thenComparingInt(Hit::getRentalId);
+
+        private final int rentalId;
+        private final double score;
+
+        Hit(int rentalId, double score) {
+            this.rentalId = rentalId;
+            this.score = score;
+        }
+
+        public int getRentalId() {
+            return rentalId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Indique si ce résultat est classé après la position (score, id) donnée.
+         *
+         * @param score    Le score du dernier résultat déjà lu.
+         * @param rentalId L'identifiant du dernier résultat déjà lu.
+         * @return boolean - true si ce résultat vient après.
+         */
+        public boolean isAfter(double score, int rentalId) {
+            return this.score < score || (this.score == score && this.rentalId > rentalId);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.openclassrooms.projet3.search;
+
+import java.util.Arrays;
+
+/**
+ * Liste des documents contenant un terme, compressée. <br>
+ * Chaque entrée est stockée sous la forme (écart avec le document précédent, fréquence du terme), en entiers
+ * de longueur variable (7 bits par octet) : un document proche du précédent et une fréquence faible tiennent en deux octets. <br>
+ * Les documents doivent être ajoutés par numéro croissant. Non thread-safe : protégée par le verrou de {@link InvertedIndex}.
+ */
+final class PostingList {
+    private static final int TAILLE_INITIALE = 8;
+
+    // Taille approximative de l'objet et de l'en-tête du tableau sur une JVM 64 bits (références compressées)
+    static final int OCTETS_FIXES = 16 + 16 + 3 * 4;
+
+    private byte[] octets = new byte[TAILLE_INITIALE];
+    private int longueur;
+    private int taille;
+    private int dernierDocument = -1;
+
+    /**
+     * Ajoute un document à la fin de la liste.
+     *
+     * @param document  Le numéro interne du document, supérieur à celui du dernier document ajouté.
+     * @param frequence Le nombre d'occurrences du terme dans le document.
+     */
+    void add(int document, int frequence) {
+        if (document <= dernierDocument) {
+            throw new IllegalStateException("Les documents doivent être ajoutés par numéro croissant.");
+        }
+        // Dans le pire cas, deux entiers de 5 octets
+        if (longueur + 10 > octets.length) {
+            octets = Arrays.copyOf(octets, Math.max(octets.length * 2, longueur + 10));
+        }
+        ecrire(document - dernierDocument);
+        ecrire(frequence);
+        dernierDocument = document;
+        taille++;
+    }
+
+    private void ecrire(int valeur) {
+        while ((valeur & ~0x7F) != 0) {
+            octets[longueur++] = (byte) ((valeur & 0x7F) | 0x80);
+            valeur >>>= 7;
+        }
+        octets[longueur++] = (byte) valeur;
+    }
+
+    // Libère la capacité inutilisée (après la construction initiale ou un compactage)
+    void ajuster() {
+        if (octets.length > longueur) {
+            octets = Arrays.copyOf(octets, longueur);
+        }
+    }
+
+    int size() {
+        return taille;
+    }
+
+    long octetsUtilises() {
+        return OCTETS_FIXES + octets.length;
+    }
+
+    Lecteur lecteur() {
+        return new Lecteur();
+    }
+
+    /**
+     * Parcourt les entrées de la liste dans l'ordre des documents.
+     */
+    final class Lecteur {
+        private int position;
+        private int document = -1;
+        private int frequence;
+
+        boolean suivant() {
+            if (position >= longueur) {
+                return false;
+            }
+            document += lire();
+            frequence = lire();
+            return true;
+        }
+
+        int document() {
+            return document;
+        }
+
+        int frequence() {
+            return frequence;
+        }
+
+        private int lire() {
+            int valeur = 0;
+            int decalage = 0;
+            byte octet;
+            do {
+                octet = octets[position++];
+                valeur |= (octet & 0x7F) << decalage;
+                decalage += 7;
+            } while ((octet & 0x80) != 0);
+            return valeur;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.openclassrooms.projet3.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Découpe un texte en termes pour l'index de recherche. <br>
+ * Le texte est mis en minuscules et débarrassé de ses accents ("Étage" et "etage" donnent le même terme),
+ * puis découpé sur tout ce qui n'est ni une lettre ni un chiffre. Les mots vides et les termes d'un caractère sont ignorés.
+ */
+public final class Tokenizer {
+
+    // Mots vides français et anglais les plus fréquents : présents partout, ils ne discriminent aucun bien
+    private static final Set<String> MOTS_VIDES = Set.of(
+            "le", "la", "les", "un", "une", "des", "du", "de", "et", "ou", "en", "au", "aux", "a", "l", "d",
+            "dans", "par", "pour", "sur", "avec", "sans", "est", "son", "sa", "ses", "ce", "cette", "qui", "que",
+            "the", "an", "and", "or", "of", "to", "in", "on", "with", "for", "is");
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Découpe un texte en termes normalisés, dans l'ordre du texte (les doublons sont conservés).
+     *
+     * @param texte Le texte à découper, peut être null.
+     * @return List<String> - Les termes du texte.
+     */
+    public static List<String> tokenize(String texte) {
+        List<String> termes = new ArrayList<>();
+        if (texte == null || texte.isEmpty()) {
+            return termes;
+        }
+
+        // NFD sépare les lettres de leurs accents, qui sont ensuite supprimés
+        String normalise = Normalizer.normalize(texte, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        int debut = -1;
+        for (int i = 0; i <= normalise.length(); i++) {
+            boolean dansUnMot = i < normalise.length() && Character.isLetterOrDigit(normalise.charAt(i));
+            if (dansUnMot && debut < 0) {
+                debut = i;
+            } else if (!dansUnMot && debut >= 0) {
+                String terme = normalise.substring(debut, i);
+                if (terme.length() > 1 && !MOTS_VIDES.contains(terme)) {
+                    termes.add(terme);
+                }
+                debut = -1;
+            }
+        }
+        return termes;
+    }
+}
@@ -1,7 +1,11 @@
 package com.openclassrooms.projet3.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.ObjectPostProcessor;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -10,6 +14,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.header.HeaderWriterFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -21,30 +26,72 @@ public class SecurityConfig {
         this.jwtFilter = jwtFilter;
     }
 
+    /**
+     * Filtre de sécurité du flux des messages (/api/messages/stream), prioritaire sur le filtre général. <br>
+     * Mêmes règles que le filtre général, mais les en-têtes de sécurité sont écrits dès l'entrée de la requête, et non à
+     * l'envoi de la réponse : le flux est écrit par d'autres threads que celui de la requête, qui ne doivent pas modifier
+     * les en-têtes en même temps. Les autres réponses gardent l'écriture à l'envoi, qui laisse un contrôleur remplacer
+     * un en-tête (ex : Cache-Control des images). <br>
+     * La fin de la réponse asynchrone (dispatch ASYNC) passe par ce filtre : la requête a déjà été autorisée, et le jeton
+     * n'est pas relu.
+     *
+     * @param http HttpSecurity - Le constructeur de configuration de sécurité HTTP à utiliser pour configurer le filtre.
+     * @return SecurityFilterChain - Le filtre de sécurité du flux des messages.
+     * @throws Exception Si une erreur se produit lors de la configuration de la sécurité HTTP.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain fluxMessagesFilterChain(HttpSecurity http) throws Exception {
+        return sansEtat(http)
+                .securityMatcher("/api/messages/stream")
+                .headers(headers -> headers.addObjectPostProcessor(new ObjectPostProcessor<HeaderWriterFilter>() {
+                    @Override
+                    public <O extends HeaderWriterFilter> O postProcess(O filter) {
+                        filter.setShouldWriteHeadersEagerly(true);
+                        return filter;
+                    }
+                }))
+                .authorizeHttpRequests(auth -> {
+                    auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll();
+                    auth.anyRequest().authenticated();
+                })
+                .build();
+    }
+
     /**
      * Configure et retourne un filtre de sécurité pour gérer les requêtes HTTP entrantes. <br> <br>
      * Ce filtre désactive la protection CSRF (Cross-Site Request Forgery), la connexion par formulaire, et configure la gestion des sessions comme Stateless. <br>
      * De plus, il ajoute un filtre JWT (JSON Web Token) avant le filtre d'authentification par nom d'utilisateur/mot de passe. <br>
-     * Enfin, il définit les autorisations pour les différentes requêtes HTTP, en permettant l'accès aux endpoints d'inscription, de connexion, de récupération des informations utilisateur (profil), ainsi qu'aux endpoints Swagger. <br>
+     * Enfin, il définit les autorisations pour les différentes requêtes HTTP, en permettant l'accès aux endpoints d'inscription, de connexion, de récupération des informations utilisateur (profil), ainsi qu'aux endpoints Swagger et à la lecture des images. <br>
      * <br>
      * @param http HttpSecurity - Le constructeur de configuration de sécurité HTTP à utiliser pour configurer le filtre.
      * @return SecurityFilterChain - Le filtre de sécurité configuré.
      * @throws Exception Si une erreur se produit lors de la configuration de la sécurité HTTP.
      */
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-        return http
-                .csrf(AbstractHttpConfigurer::disable)
-                .formLogin(AbstractHttpConfigurer::disable)
-                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+        return sansEtat(http)
                 .authorizeHttpRequests(auth -> {
                     auth.requestMatchers("/api/auth/register", "/api/auth/login", "/swagger-ui.html", "/v3/api-docs/**", "/swagger-ui/**", "/api/auth/me").permitAll();
+                    // Les images sont affichées par des balises <img>, qui n'envoient pas de jeton ; leurs noms ne se devinent pas
+                    auth.requestMatchers(HttpMethod.GET, "/api/images/**").permitAll();
+                    // Fin d'une réponse asynchrone (liste des locations en flux) : la requête a déjà été autorisée, et le jeton n'est pas relu
+                    auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll();
                     auth.anyRequest().authenticated();
                 })
                 .build();
     }
 
+    // Règles communes aux deux filtres : sans CSRF ni formulaire de connexion, sans session, authentification par JWT
+    private HttpSecurity sansEtat(HttpSecurity http) throws Exception {
+        return http
+                .csrf(AbstractHttpConfigurer::disable)
+                .formLogin(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -0,0 +1,89 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.dto.ConversationDto;
+import com.openclassrooms.projet3.exception.ConversationDoesNotExistException;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.pagination.PageSize;
+import com.openclassrooms.projet3.repositories.ConversationRepository;
+import com.openclassrooms.projet3.response.InboxResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boîte de réception des propriétaires : une conversation par bien et par interlocuteur. <br>
+ * Les résumés (table CONVERSATIONS) sont tenus à jour à l'enregistrement de chaque message, dans sa transaction
+ * (MessageService et MessageBatchWriter) : la boîte de réception se lit sans regrouper les messages.
+ */
+@Service
+public class ConversationService {
+
+    // Longueur maximale du début de message gardé dans le résumé (colonne last_message)
+    private static final int LONGUEUR_EXTRAIT = 100;
+
+    private final ConversationRepository conversationRepository;
+
+    public ConversationService(ConversationRepository conversationRepository) {
+        this.conversationRepository = conversationRepository;
+    }
+
+    /**
+     * Renvoie le début d'un message, gardé dans le résumé de sa conversation.
+     *
+     * @param message Le message complet.
+     * @return String - Les LONGUEUR_EXTRAIT premiers caractères du message, sans couper un caractère en deux.
+     */
+    public static String extrait(String message) {
+        if (message.length() <= LONGUEUR_EXTRAIT) {
+            return message;
+        }
+        return message.substring(0, message.offsetByCodePoints(0, message.codePointCount(0, LONGUEUR_EXTRAIT)));
+    }
+
+    /**
+     * Lit une page de la boîte de réception du propriétaire, les conversations les plus récentes en premier. <br>
+     * Une conversation qui reçoit un message pendant la lecture remonte en tête : elle peut manquer dans la page suivante,
+     * et apparaît à la relecture de la première page.
+     *
+     * @param currentUserId L'identifiant de l'utilisateur actuel.
+     * @param apres         Le curseur renvoyé par la page précédente (null pour la première page).
+     * @param size          La taille de page demandée (bornée par {@link PageSize}).
+     * @return InboxResponse - Les conversations de la page et le curseur de la page suivante.
+     * @throws IllegalArgumentException Si le curseur est invalide.
+     */
+    @Transactional(readOnly = true)
+    public InboxResponse getInbox(String currentUserId, KeysetCursor apres, Integer size) throws IllegalArgumentException {
+        Integer ownerId = Integer.valueOf(currentUserId);
+        int taille = PageSize.borner(size);
+
+        // Une ligne de plus que la taille demandée est lue pour savoir s'il existe une page suivante
+        Pageable limite = PageRequest.ofSize(taille + 1);
+        List<ConversationDto> resultats = apres == null
+                ? conversationRepository.findFirstPageByOwner(ownerId, limite)
+                : conversationRepository.findPageByOwnerAfter(ownerId, apres.getValeurAsTimestamp(), apres.getId(), limite);
+        if (resultats.size() <= taille) {
+            return new InboxResponse(resultats, null);
+        }
+
+        List<ConversationDto> page = new ArrayList<>(resultats.subList(0, taille));
+        ConversationDto derniere = page.get(taille - 1);
+        return new InboxResponse(page, KeysetCursor.of(derniere.getLastAt(), derniere.getId()).encode());
+    }
+
+    /**
+     * Marque les messages d'une conversation comme lus.
+     *
+     * @param id            L'identifiant de la conversation.
+     * @param currentUserId L'identifiant de l'utilisateur actuel, propriétaire du bien.
+     * @throws ConversationDoesNotExistException Si la conversation n'existe pas ou n'appartient pas à l'utilisateur.
+     */
+    public void marquerLue(Integer id, String currentUserId) throws ConversationDoesNotExistException {
+        if (conversationRepository.markAsRead(id, Integer.valueOf(currentUserId)) == 0) {
+            throw new ConversationDoesNotExistException("La conversation avec cet identifiant n'existe pas !");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.repositories.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Nettoyage planifié des images qu'aucun bien n'utilise (envoi sans bien créé, variante remplacée, ...). <br>
+ * Les contenus du stockage sont parcourus en flux, par lots : chaque lot est cherché en une requête dans les contenus
+ * utilisés par les biens (table RENTAL_IMAGES : picture et variantes, lus par empreinte sur la clé primaire), puis les
+ * contenus orphelins plus anciens que le délai de grâce sont supprimés. <br>
+ * Le parcours est limité à images.gc.files-per-second fichiers par seconde pour ne pas ralentir les requêtes. <br>
+ * Métriques : images.gc.scanned, images.gc.deleted et images.gc.freed (octets libérés).
+ */
+@Service
+public class ImageCleanupService {
+    private static final Logger LOGGER = Logger.getLogger(ImageCleanupService.class);
+
+    // Un point d'avancement est écrit dans les journaux tous les N lots
+    private static final int LOTS_PAR_RAPPORT = 50;
+
+    private final ImageService imageService;
+    private final RentalRepository rentalRepository;
+    private final Duration delaiGrace;
+    private final int tailleLot;
+    private final int fichiersParSeconde;
+
+    private final Counter examines;
+    private final Counter supprimes;
+    private final Counter octetsLiberes;
+
+    // Un seul nettoyage à la fois, même lancé à la main pendant un nettoyage planifié
+    private final AtomicBoolean enCours = new AtomicBoolean();
+
+    // Délai de grâce, taille des lots et débit lus dans application.properties (images.gc.*)
+    public ImageCleanupService(ImageService imageService, RentalRepository rentalRepository, MeterRegistry meterRegistry,
+                               @Value("${images.gc.grace-period}") Duration delaiGrace,
+                               @Value("${images.gc.batch-size}") int tailleLot,
+                               @Value("${images.gc.files-per-second}") int fichiersParSeconde) {
+        this.imageService = imageService;
+        this.rentalRepository = rentalRepository;
+        this.delaiGrace = delaiGrace;
+        this.tailleLot = tailleLot;
+        this.fichiersParSeconde = fichiersParSeconde;
+
+        this.examines = Counter.builder("images.gc.scanned")
+                .description("Images examinées par le nettoyage")
+                .register(meterRegistry);
+        this.supprimes = Counter.builder("images.gc.deleted")
+                .description("Images orphelines supprimées")
+                .register(meterRegistry);
+        this.octetsLiberes = Counter.builder("images.gc.freed")
+                .description("Octets libérés par le nettoyage")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Parcourt le stockage et supprime les images orphelines. <br>
+     * Lancé selon images.gc.cron ; sans effet si un nettoyage est déjà en cours.
+     */
+    @Scheduled(cron = "${images.gc.cron}")
+    public void nettoyer() {
+        if (!enCours.compareAndSet(false, true)) {
+            LOGGER.warn("Nettoyage des images déjà en cours");
+            return;
+        }
+        Instant limite = Instant.now().minus(delaiGrace);
+        Avancement avancement = new Avancement();
+        LOGGER.info("Nettoyage des images : début (images antérieures à " + limite + ")");
+
+        try (Stream<String> hashes = imageService.listerContenus()) {
+            Iterator<String> parcours = hashes.iterator();
+            List<String> lot = new ArrayList<>(tailleLot);
+            while (parcours.hasNext()) {
+                lot.add(parcours.next());
+                if (lot.size() == tailleLot || !parcours.hasNext()) {
+                    traiterLot(lot, limite, avancement);
+                    lot.clear();
+                    ralentir(avancement);
+                }
+            }
+            LOGGER.info("Nettoyage des images : fin, " + avancement);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Nettoyage des images interrompu après " + avancement + " : " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Nettoyage des images arrêté après " + avancement);
+        } finally {
+            enCours.set(false);
+        }
+    }
+
+    // Une requête par lot : les contenus qu'aucun bien n'utilise sont orphelins
+    private void traiterLot(List<String> lot, Instant limite, Avancement avancement) throws IOException {
+        Set<String> utilises = new HashSet<>(rentalRepository.findReferencedImageHashes(lot));
+        for (String hash : lot) {
+            if (!utilises.contains(hash)) {
+                long liberes = imageService.supprimerOrphelin(hash, limite);
+                if (liberes >= 0) {
+                    avancement.supprimes++;
+                    avancement.octets += liberes;
+                    supprimes.increment();
+                    octetsLiberes.increment(liberes);
+                }
+            }
+        }
+        avancement.examines += lot.size();
+        avancement.lots++;
+        examines.increment(lot.size());
+        if (avancement.lots % LOTS_PAR_RAPPORT == 0) {
+            LOGGER.info("Nettoyage des images : " + avancement);
+        }
+    }
+
+    // Attend le temps nécessaire pour ne pas dépasser le débit autorisé depuis le début du nettoyage
+    private void ralentir(Avancement avancement) throws InterruptedException {
+        long attendu = TimeUnit.SECONDS.toNanos(avancement.examines) / fichiersParSeconde;
+        long ecoule = System.nanoTime() - avancement.debut;
+        if (attendu > ecoule) {
+            TimeUnit.NANOSECONDS.sleep(attendu - ecoule);
+        }
+    }
+
+    private static final class Avancement {
+        private final long debut = System.nanoTime();
+        private long lots;
+        private long examines;
+        private long supprimes;
+        private long octets;
+
+        @Override
+        public String toString() {
+            return examines + " images examinées, " + supprimes + " supprimées, " + octets + " octets libérés en "
+                    + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - debut) + " s";
+        }
+    }
+}
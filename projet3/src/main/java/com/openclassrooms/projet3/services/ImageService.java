@@ -1,54 +1,476 @@
 package com.openclassrooms.projet3.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.projet3.entites.ImageEntity;
 import com.openclassrooms.projet3.exception.ImageNotFoundException;
+import com.openclassrooms.projet3.exception.ImageTooLargeException;
+import com.openclassrooms.projet3.exception.UnsupportedImageTypeException;
+import com.openclassrooms.projet3.images.Blob;
+import com.openclassrooms.projet3.images.BlobStore;
+import com.openclassrooms.projet3.images.ImageCache;
+import com.openclassrooms.projet3.images.ImageType;
+import com.openclassrooms.projet3.repositories.ImageRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Stockage des images par contenu. <br>
+ * Chaque image est nommée d'après l'empreinte SHA-256 de ses octets, calculée pendant la réception, et confiée au
+ * {@link BlobStore} sous cette empreinte. <br>
+ * Seules les images JPEG, PNG, GIF et WebP sont acceptées, reconnues à leurs premiers octets ({@link ImageType}) ; le
+ * format reconnu est enregistré dans IMAGES.content_type et donne l'extension du nom et le Content-Type servi. <br>
+ * Une image envoyée plusieurs fois n'est écrite qu'une fois ; la table IMAGES compte ses références,
+ * et le contenu n'est supprimé qu'à la disparition de la dernière. <br>
+ * Le fichier d'un contenu n'est écrit ou supprimé que dans la transaction qui tient le verrou de sa ligne IMAGES :
+ * un même contenu n'est jamais ajouté et supprimé en même temps, même par deux instances de l'application.
+ */
 @Service
 public class ImageService {
-    private static final String DOSSIER_IMAGE = "C:\\Users\\crycr\\OneDrive\\Documents\\OpenClassrooms\\Projet 3 - Back-end en Java et Spring\\images";
+    // Sous-dossier des fichiers en cours de réception : sur le même disque que les images, pour que le déplacement final soit atomique
+    private static final String DOSSIER_TEMPORAIRE = ".tmp";
+
+    // Taille des blocs transférés par FileChannel.transferFrom
+    private static final long TAILLE_BLOC = 1024 * 1024;
+
+    // Nom public d'une image : empreinte SHA-256 en hexadécimal, suivie de l'extension de son format
+    private static final Pattern NOM_CONTENU = Pattern.compile("([0-9a-f]{64})(?:\\.([a-z0-9]{1,5}))?");
+
+    // Formats des contenus déjà servis : un contenu ne change jamais, son format non plus
+    private static final int TYPES_EN_MEMOIRE = 100_000;
+
+    // Nombre maximum de pixels d'une image à décoder (environ 160 Mo en mémoire une fois décodée)
+    private static final long PIXELS_MAXIMUM = 40_000_000L;
+
+    private final Path dossierImage;
+    private final long tailleMaximum;
+    private final String urlImages;
+    private final ImageRepository imageRepository;
+    private final BlobStore blobStore;
+    private final ImageCache imageCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, Optional<ImageType>> typesContenus = Caffeine.newBuilder()
+            .maximumSize(TYPES_EN_MEMOIRE)
+            .build();
+
+    // Le dossier de stockage, la taille maximale d'une image et l'URL publique des images sont lus dans application.properties
+    // (images.root, images.max-size, images.base-url)
+    public ImageService(@Value("${images.root}") Path dossierImage, @Value("${images.max-size}") DataSize tailleMaximum,
+                        @Value("${images.base-url}") String urlImages, ImageRepository imageRepository,
+                        BlobStore blobStore, ImageCache imageCache, PlatformTransactionManager transactionManager) {
+        this.dossierImage = dossierImage.toAbsolutePath().normalize();
+        this.tailleMaximum = tailleMaximum.toBytes();
+        this.urlImages = urlImages.endsWith("/") ? urlImages : urlImages + "/";
+        this.imageRepository = imageRepository;
+        this.blobStore = blobStore;
+        this.imageCache = imageCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // URL à laquelle une image enregistrée est servie (GET /api/images/{name})
+    public String getUrl(String nomImage) {
+        return urlImages + nomImage;
+    }
+
+    // Empreinte du contenu désigné par une URL (ou un nom) d'image, vide pour une image externe ou plus ancienne
+    public static Optional<String> empreinte(String url) {
+        if (url == null) {
+            return Optional.empty();
+        }
+        Matcher nomContenu = NOM_CONTENU.matcher(url.substring(url.lastIndexOf('/') + 1));
+        return nomContenu.matches() ? Optional.of(nomContenu.group(1)) : Optional.empty();
+    }
 
     // Sauvegarde l'image dans le répertoire local
-    public String sauvegardeImageDansDossier(MultipartFile fichierImage) throws IOException {
-        // Création d'un nom unique avec un identifiant unique généré aléatoirement
-        String nomFichierUnique = UUID.randomUUID().toString() + "_" + fichierImage.getOriginalFilename();
+    public String sauvegardeImageDansDossier(MultipartFile fichierImage) throws IOException, ImageTooLargeException {
+        // Taille annoncée : un fichier trop gros est refusé avant d'être lu
+        if (fichierImage.getSize() > tailleMaximum) {
+            throw new ImageTooLargeException("L'image dépasse la taille maximale autorisée.");
+        }
+        try (InputStream contenu = fichierImage.getInputStream()) {
+            return sauvegardeImage(contenu);
+        }
+    }
+
+    /**
+     * Enregistre une image lue en flux, sous le nom de son contenu. <br>
+     * Les octets sont copiés par FileChannel.transferFrom dans un fichier temporaire, en calculant leur empreinte SHA-256
+     * au passage. Le fichier complet est ensuite confié au stockage : une image à moitié écrite n'est jamais visible. <br>
+     * Si le même contenu est déjà enregistré, le fichier temporaire est supprimé et seule une référence est ajoutée. <br>
+     * La taille est vérifiée pendant la copie, le format une fois le fichier reçu ; le fichier temporaire est supprimé
+     * en cas d'erreur.
+     *
+     * @param contenu Le contenu de l'image.
+     * @return String - Le nom de l'image enregistrée (empreinte et extension de son format, ex : 9f86d0...0a08.jpg).
+     * @throws IOException                    En cas d'erreur d'écriture.
+     * @throws ImageTooLargeException         Si l'image dépasse la taille maximale.
+     * @throws UnsupportedImageTypeException Si le contenu n'est pas une image JPEG, PNG, GIF ou WebP.
+     */
+    public String sauvegardeImage(InputStream contenu) throws IOException, ImageTooLargeException, UnsupportedImageTypeException {
+        MessageDigest empreinte = sha256();
+        Path fichierTemporaire = fichierTemporaire("upload-");
+
+        try {
+            long taille = ecrire(Channels.newChannel(new DigestInputStream(contenu, empreinte)), fichierTemporaire);
+            ImageType type = typeAccepte(fichierTemporaire);
+            String hash = HexFormat.of().formatHex(empreinte.digest());
+            stocker(fichierTemporaire, hash, taille, type);
+
+            // Retourne le nom de l'image
+            return hash + "." + type.getExtension();
+        } finally {
+            // Déjà déplacé, sauf en cas d'erreur ou de contenu déjà enregistré
+            Files.deleteIfExists(fichierTemporaire);
+        }
+    }
+
+    /**
+     * Enregistre une image déjà écrite dans un fichier temporaire (voir {@link #fichierTemporaire(String)}),
+     * par exemple à la fin d'un envoi en plusieurs morceaux. <br>
+     * Le fichier est lu une fois pour calculer son empreinte, puis confié au stockage sans être recopié.
+     * Il n'existe plus au retour de la méthode.
+     *
+     * @param fichier Le fichier temporaire.
+     * @return String - Le nom de l'image enregistrée.
+     * @throws IOException                    En cas d'erreur de lecture ou d'écriture.
+     * @throws ImageTooLargeException         Si l'image dépasse la taille maximale.
+     * @throws UnsupportedImageTypeException Si le contenu n'est pas une image JPEG, PNG, GIF ou WebP.
+     */
+    public String sauvegardeFichier(Path fichier) throws IOException, ImageTooLargeException, UnsupportedImageTypeException {
+        try {
+            long taille = Files.size(fichier);
+            if (taille > tailleMaximum) {
+                throw new ImageTooLargeException("L'image dépasse la taille maximale autorisée.");
+            }
+            ImageType type = typeAccepte(fichier);
+
+            MessageDigest empreinte = sha256();
+            try (FileChannel source = FileChannel.open(fichier, StandardOpenOption.READ)) {
+                ByteBuffer tampon = ByteBuffer.allocateDirect((int) TAILLE_BLOC);
+                while (source.read(tampon) >= 0) {
+                    empreinte.update(tampon.flip());
+                    tampon.clear();
+                }
+            }
+            String hash = HexFormat.of().formatHex(empreinte.digest());
+            stocker(fichier, hash, taille, type);
+            return hash + "." + type.getExtension();
+        } finally {
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    // Copie le flux dans le fichier par blocs ; un octet de plus que le maximum est demandé pour détecter le dépassement
+    private long ecrire(ReadableByteChannel source, Path fichier) throws IOException, ImageTooLargeException {
+        try (FileChannel destination = FileChannel.open(fichier, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (true) {
+                long demande = Math.min(TAILLE_BLOC, tailleMaximum + 1 - position);
+                long transferes = destination.transferFrom(source, position, demande);
+                if (transferes == 0) {
+                    break;
+                }
+                position += transferes;
+                if (position > tailleMaximum) {
+                    throw new ImageTooLargeException("L'image dépasse la taille maximale autorisée.");
+                }
+            }
+            return position;
+        }
+    }
+
+    // Format reconnu aux premiers octets du fichier reçu ; le nom et le Content-Type envoyés par le client sont ignorés
+    private static ImageType typeAccepte(Path fichier) throws IOException, UnsupportedImageTypeException {
+        return ImageType.detecter(fichier)
+                .orElseThrow(() -> new UnsupportedImageTypeException("Format d'image non accepté (JPEG, PNG, GIF ou WebP)."));
+    }
+
+    // Ajoute une référence au contenu, puis confie le fichier reçu au stockage s'il n'y est pas déjà
+    private void stocker(Path fichierTemporaire, String hash, long taille, ImageType type) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(statut -> {
+                // L'ajout de la référence verrouille la ligne (créée au premier envoi) jusqu'à la fin de la transaction
+                imageRepository.addReference(hash, taille, type.getContentType());
+                try {
+                    blobStore.put(hash, fichierTemporaire);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lit et décode une image enregistrée.
+     *
+     * @param nomImage Le nom de l'image.
+     * @return BufferedImage - L'image décodée, ou null si le fichier n'est pas dans un format lisible par ImageIO.
+     * @throws IOException            En cas d'erreur de lecture.
+     * @throws ImageNotFoundException Si l'image n'existe pas.
+     */
+    public BufferedImage lireImage(String nomImage) throws IOException, ImageNotFoundException {
+        try (InputStream contenu = getImage(nomImage).getInputStream();
+             ImageInputStream entree = new MemoryCacheImageInputStream(contenu)) {
+            Iterator<ImageReader> lecteurs = ImageIO.getImageReaders(entree);
+            if (!lecteurs.hasNext()) {
+                return null;
+            }
+            ImageReader lecteur = lecteurs.next();
+            try {
+                lecteur.setInput(entree, true, true);
+                // Les dimensions sont lues dans l'en-tête : une image trop grande une fois décodée est refusée avant d'être chargée
+                if ((long) lecteur.getWidth(0) * lecteur.getHeight(0) > PIXELS_MAXIMUM) {
+                    throw new IOException("Image trop grande pour être redimensionnée : " + nomImage);
+                }
+                return lecteur.read(0);
+            } finally {
+                lecteur.dispose();
+            }
+        }
+    }
+
+    /**
+     * Enregistre une variante redimensionnée d'une image. <br>
+     * La variante est stockée par contenu, comme les envois : deux biens ayant la même image partagent aussi ses variantes.
+     *
+     * @param image L'image redimensionnée.
+     * @return String - Le nom de la variante enregistrée (ex : 2c26b4...7ae.jpg).
+     * @throws IOException En cas d'erreur d'écriture.
+     */
+    public String sauvegardeVariante(BufferedImage image) throws IOException {
+        // JPEG pour les images opaques, PNG pour garder la transparence
+        ImageType type = image.getColorModel().hasAlpha() ? ImageType.PNG : ImageType.JPEG;
+        String format = type.getExtension();
 
-        // Récupération du chemin du dossier de stockage
-        Path cheminDossierTelechargement = Path.of(DOSSIER_IMAGE);
-        Path cheminFichier = cheminDossierTelechargement.resolve(nomFichierUnique);
+        MessageDigest empreinte = sha256();
+        Path fichierTemporaire = fichierTemporaire("variante-");
 
-        // Si le dossier de téléchargement n'existe pas alors, on le crée
-        if (!Files.exists(cheminDossierTelechargement)) {
-            Files.createDirectories(cheminDossierTelechargement);
+        try {
+            try (OutputStream sortie = new DigestOutputStream(Files.newOutputStream(fichierTemporaire), empreinte)) {
+                if (!ImageIO.write(image, format, sortie)) {
+                    throw new IOException("Aucun encodeur ImageIO pour le format " + format);
+                }
+            }
+            String hash = HexFormat.of().formatHex(empreinte.digest());
+            stocker(fichierTemporaire, hash, Files.size(fichierTemporaire), type);
+            return hash + "." + format;
+        } finally {
+            Files.deleteIfExists(fichierTemporaire);
         }
+    }
 
-        // On place/copie le fichier dans le dossier des images
-        Files.copy(fichierImage.getInputStream(), cheminFichier, StandardCopyOption.REPLACE_EXISTING);
+    // Fichier temporaire dans le sous-dossier de réception, sur le même disque que les images
+    public Path fichierTemporaire(String prefixe) throws IOException {
+        Path dossierTemporaire = dossierImage.resolve(DOSSIER_TEMPORAIRE);
+        Files.createDirectories(dossierTemporaire);
+        return Files.createTempFile(dossierTemporaire, prefixe, ".part");
+    }
 
-        // Retourne le nom du fichier
-        return nomFichierUnique;
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Algorithme obligatoire dans toute JVM
+            throw new IllegalStateException(e);
+        }
     }
 
-    // Pour récupérer une image
-    public String getImage(String nomImage) throws IOException, ImageNotFoundException {
-        // On récupère le chemin du dossier image
-        Path cheminImage = Path.of(DOSSIER_IMAGE, nomImage);
+    /**
+     * Pour récupérer une image (emplacement, taille, date, format et lecture du contenu). <br>
+     * Le format est celui enregistré à l'envoi (ou reconnu aux premiers octets pour les images plus anciennes) ;
+     * une extension qui ne lui correspond pas est refusée, pour qu'un contenu ne soit jamais servi sous un autre type.
+     *
+     * @param nomImage Le nom de l'image.
+     * @return Blob - L'image, avec son format s'il est accepté.
+     * @throws IOException            En cas d'erreur de lecture.
+     * @throws ImageNotFoundException Si l'image n'existe pas, ou si l'extension ne correspond pas à son format.
+     */
+    public Blob getImage(String nomImage) throws IOException, ImageNotFoundException {
+        Matcher nomContenu = NOM_CONTENU.matcher(nomImage);
+        if (nomContenu.matches()) {
+            String hash = nomContenu.group(1);
+            Blob blob = blobStore.stat(hash).orElseThrow(() -> new ImageNotFoundException("Image non trouvée."));
+            Optional<ImageType> type = typeContenu(hash, blob);
+            verifierExtension(nomContenu.group(2), type);
+            return imageCache.enMemoire(hash, blob.avecType(type.orElse(null)));
+        }
 
-        String concatImage = DOSSIER_IMAGE + nomImage;
+        Path cheminImage = resoudre(nomImage);
+        if (!Files.isRegularFile(cheminImage)) {
+            throw new ImageNotFoundException("Image non trouvée.");
+        }
+        Optional<ImageType> type = ImageType.detecter(cheminImage);
+        verifierExtension(StringUtils.getFilenameExtension(nomImage), type);
+        return Blob.depuisFichier(cheminImage).avecType(type.orElse(null));
+    }
+
+    // Format enregistré du contenu ; pour un contenu envoyé avant l'enregistrement des formats, reconnu à ses premiers octets
+    private Optional<ImageType> typeContenu(String hash, Blob blob) throws IOException {
+        try {
+            return typesContenus.get(hash, cle -> imageRepository.findContentTypeByHash(cle)
+                    .flatMap(ImageType::depuisContentType)
+                    .or(() -> {
+                        try {
+                            return ImageType.detecter(blob.getInputStream());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        return concatImage;
+    // Sans extension, l'image est servie dans son format ; avec, l'extension doit être celle de son format
+    private static void verifierExtension(String extension, Optional<ImageType> type) throws ImageNotFoundException {
+        if (extension != null && (type.isEmpty() || !ImageType.depuisExtension(extension).equals(type))) {
+            throw new ImageNotFoundException("Image non trouvée.");
+        }
     }
 
-    // Supprimer une image
+    /**
+     * Supprime une référence à une image. <br>
+     * Le fichier n'est supprimé que lorsque plus aucun envoi ne l'utilise.
+     *
+     * @param nomImage Le nom de l'image.
+     * @throws IOException            En cas d'erreur de suppression.
+     * @throws ImageNotFoundException Si l'image n'existe pas ou n'est plus référencée.
+     */
     public void supprimerImage(String nomImage) throws IOException, ImageNotFoundException {
-        Path imagePath = Path.of(DOSSIER_IMAGE, nomImage);
+        Matcher nomContenu = NOM_CONTENU.matcher(nomImage);
+        if (!nomContenu.matches()) {
+            supprimerFichier(resoudre(nomImage));
+            return;
+        }
+
+        if (!retirerReference(nomContenu.group(1))) {
+            throw new ImageNotFoundException("Image non trouvée.");
+        }
+    }
+
+    /**
+     * Rend la référence prise par une image ou une variante qu'un bien n'utilise plus (image remplacée, variante
+     * générée pour une image déjà remplacée). <br>
+     * Une URL externe ou d'une image enregistrée avant le stockage par contenu est ignorée.
+     *
+     * @param url L'URL de l'image, null accepté.
+     * @throws IOException En cas d'erreur de suppression.
+     */
+    public void libererReference(String url) throws IOException {
+        Optional<String> hash = empreinte(url);
+        if (hash.isPresent()) {
+            retirerReference(hash.get());
+        }
+    }
+
+    // Retire une référence sous le verrou de la ligne ; le fichier est supprimé avec la dernière, si aucun bien ne l'utilise
+    // Renvoie false si le contenu est inconnu ou n'est déjà plus référencé
+    private boolean retirerReference(String hash) throws IOException {
+        try {
+            return transactionTemplate.execute(statut -> {
+                imageRepository.findByHashForUpdate(hash);
+                if (imageRepository.removeReference(hash) == 0) {
+                    return false;
+                }
+                if (imageRepository.deleteIfUnreferenced(hash) == 1) {
+                    imageCache.retirer(hash);
+                    supprimerContenu(hash);
+                }
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Empreintes des contenus enregistrés, en flux (Stream à fermer)
+    public Stream<String> listerContenus() throws IOException {
+        return blobStore.list();
+    }
+
+    /**
+     * Supprime un contenu qu'aucun bien n'utilise, quel que soit son compteur de références. <br>
+     * Sous le verrou de sa ligne IMAGES, le contenu est gardé s'il a été enregistré ou référencé après la date limite :
+     * un envoi en cours, dont le bien n'est pas encore créé, n'est jamais supprimé.
+     *
+     * @param hash   L'empreinte du contenu.
+     * @param limite La date avant laquelle le contenu doit avoir été enregistré et référencé pour la dernière fois.
+     * @return long - Le nombre d'octets libérés, ou -1 si le contenu est gardé.
+     * @throws IOException En cas d'erreur de suppression.
+     */
+    public long supprimerOrphelin(String hash, Instant limite) throws IOException {
+        try {
+            return transactionTemplate.execute(statut -> {
+                Optional<ImageEntity> ligne = imageRepository.findByHashForUpdate(hash);
+                if (ligne.isPresent() && ligne.get().getUpdatedAt() != null && ligne.get().getUpdatedAt().toInstant().isAfter(limite)) {
+                    return -1L;
+                }
+                Optional<Blob> blob;
+                try {
+                    blob = blobStore.stat(hash);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (blob.isEmpty() || Instant.ofEpochMilli(blob.get().lastModified()).isAfter(limite)) {
+                    return -1L;
+                }
+
+                imageRepository.deleteImage(hash);
+                imageCache.retirer(hash);
+                supprimerContenu(hash);
+                return blob.get().contentLength();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Suppression du fichier dans une transaction : l'erreur est relancée en UncheckedIOException et annule la transaction
+    private void supprimerContenu(String hash) {
+        try {
+            blobStore.delete(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    // Images enregistrées avant le stockage par contenu, directement dans le dossier racine
+    private void supprimerFichier(Path imagePath) throws IOException, ImageNotFoundException {
         // Si le fichier recherché existe, on le supprime
         if (Files.exists(imagePath)) {
             Files.delete(imagePath);
@@ -58,4 +480,13 @@ public class ImageService {
             throw new ImageNotFoundException("Image non trouvée.");
         }
     }
+
+    // Chemin d'une image dans le dossier de stockage ; un nom qui en sortirait (../, chemin absolu) est refusé
+    private Path resoudre(String nomImage) throws ImageNotFoundException {
+        Path cheminImage = dossierImage.resolve(nomImage).normalize();
+        if (!cheminImage.getParent().equals(dossierImage)) {
+            throw new ImageNotFoundException("Image non trouvée.");
+        }
+        return cheminImage;
+    }
 }
@@ -0,0 +1,163 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.config.CacheConfig;
+import com.openclassrooms.projet3.exception.ImageNotFoundException;
+import com.openclassrooms.projet3.images.ImageResizer;
+import com.openclassrooms.projet3.images.ImageVariant;
+import com.openclassrooms.projet3.repositories.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Génération en arrière-plan des variantes redimensionnées (vignette, moyenne, grande) des images des biens. <br>
+ * Les images sont confiées à un pool de threads borné : la création d'un bien n'attend pas le redimensionnement.
+ * Si la file est pleine, l'image est refusée et le bien garde seulement son image d'origine. <br>
+ * Métriques : rentals.images.queue.depth (images en attente), rentals.images.processing (durée de traitement),
+ * rentals.images.rejected et rentals.images.failed.
+ */
+@Service
+public class ImageVariantService {
+    private static final Logger LOGGER = Logger.getLogger(ImageVariantService.class);
+
+    private final ImageService imageService;
+    private final RentalRepository rentalRepository;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ThreadPoolExecutor executor;
+    private final Timer dureeTraitement;
+    private final Counter rejets;
+    private final Counter echecs;
+
+    // Nombre de threads et taille de la file d'attente lus dans application.properties (images.variants.*)
+    public ImageVariantService(ImageService imageService, RentalRepository rentalRepository, CacheManager cacheManager,
+                               PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                               @Value("${images.variants.threads}") int threads,
+                               @Value("${images.variants.queue-capacity}") int capaciteFile) {
+        this.imageService = imageService;
+        this.rentalRepository = rentalRepository;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capaciteFile), nommerThreads(), new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("rentals.images.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Images en attente de redimensionnement")
+                .register(meterRegistry);
+        this.dureeTraitement = Timer.builder("rentals.images.processing")
+                .description("Durée de génération des variantes d'une image")
+                .register(meterRegistry);
+        this.rejets = Counter.builder("rentals.images.rejected")
+                .description("Images refusées car la file d'attente était pleine")
+                .register(meterRegistry);
+        this.echecs = Counter.builder("rentals.images.failed")
+                .description("Images dont les variantes n'ont pas pu être générées")
+                .register(meterRegistry);
+    }
+
+    // Threads nommés pour les reconnaître dans les journaux et les dumps
+    private static ThreadFactory nommerThreads() {
+        AtomicInteger compteur = new AtomicInteger();
+        return tache -> {
+            Thread thread = new Thread(tache, "image-variants-" + compteur.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Planifie la génération des variantes de l'image d'un bien, sans attendre le résultat.
+     *
+     * @param idBien   L'identifiant du bien.
+     * @param nomImage Le nom de l'image enregistrée par ImageService.
+     */
+    public void planifier(Integer idBien, String nomImage) {
+        try {
+            executor.execute(() -> dureeTraitement.record(() -> generer(idBien, nomImage)));
+        } catch (RejectedExecutionException e) {
+            rejets.increment();
+            LOGGER.warn("File de redimensionnement pleine, image " + nomImage + " du bien " + idBien + " ignorée");
+        }
+    }
+
+    // Génère les variantes, puis enregistre leurs URL sur le bien
+    void generer(Integer idBien, String nomImage) {
+        try {
+            BufferedImage originale = imageService.lireImage(nomImage);
+            if (originale == null) {
+                echecs.increment();
+                LOGGER.warn("Format d'image non reconnu : " + nomImage);
+                return;
+            }
+
+            Map<ImageVariant, String> urls = new EnumMap<>(ImageVariant.class);
+            for (ImageVariant variante : ImageVariant.values()) {
+                BufferedImage reduite = ImageResizer.redimensionner(originale, variante.getLargeurMax());
+                urls.put(variante, imageService.getUrl(imageService.sauvegardeVariante(reduite)));
+            }
+
+            // Les URL et les contenus utilisés par le bien (RENTAL_IMAGES) sont enregistrés ensemble,
+            // seulement si le bien a toujours cette image et pas encore de variantes
+            boolean enregistrees = transactionTemplate.execute(statut -> {
+                if (rentalRepository.updatePictureVariants(idBien, imageService.getUrl(nomImage), urls.get(ImageVariant.THUMBNAIL),
+                        urls.get(ImageVariant.MEDIUM), urls.get(ImageVariant.FULL), Timestamp.valueOf(LocalDateTime.now())) == 0) {
+                    return false;
+                }
+                rentalRepository.incrementCollectionRevision();
+                urls.values().stream()
+                        .map(ImageService::empreinte)
+                        .flatMap(Optional::stream)
+                        .distinct()
+                        .forEach(hash -> rentalRepository.addImageHash(idBien, hash));
+                return true;
+            });
+            if (!enregistrees) {
+                // Image remplacée ou bien supprimé pendant la génération : chaque variante rend la référence qu'elle a prise
+                for (String url : urls.values()) {
+                    imageService.libererReference(url);
+                }
+                return;
+            }
+
+            // Le bien mis en cache ne connaît pas encore ses variantes
+            Cache cache = cacheManager.getCache(CacheConfig.RENTALS_CACHE);
+            if (cache != null) {
+                cache.evict(idBien);
+            }
+        } catch (IOException | ImageNotFoundException | RuntimeException e) {
+            echecs.increment();
+            LOGGER.error("Exception : " + e);
+        }
+    }
+
+    // Les images en attente sont abandonnées à l'arrêt : les biens concernés gardent leur image d'origine
+    @PreDestroy
+    public void arreter() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,163 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.archive.MessageArchive;
+import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.repositories.MessageRepository;
+import com.openclassrooms.projet3.repositories.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Archivage planifié des anciens messages : les messages plus anciens que messages.archive.max-age sont déplacés de la
+ * table MESSAGES vers l'archive compressée ({@link MessageArchive}), pour que la table et ses index restent petits. <br>
+ * Les messages sont déplacés par lots, par identifiant croissant : chaque lot est d'abord écrit durablement dans
+ * l'archive, puis supprimé de la table en une requête. Un message n'est donc jamais absent des deux ; après un arrêt
+ * entre les deux étapes, les messages déjà archivés sont seulement supprimés de la table au passage suivant. <br>
+ * Dans la même transaction que la suppression, RENTALS.messages_archived_at reçoit la date du plus récent message
+ * archivé de chaque bien du lot : les fils sans message archivé ne sont jamais cherchés dans l'archive. <br>
+ * Les messages archivés restent lisibles par GET /api/messages/:id et dans les fils des biens. <br>
+ * Métrique : messages.archive.archived.
+ */
+@Service
+public class MessageArchiveService {
+    private static final Logger LOGGER = Logger.getLogger(MessageArchiveService.class);
+
+    // Un point d'avancement est écrit dans les journaux tous les N lots
+    private static final int LOTS_PAR_RAPPORT = 50;
+
+    private final MessageRepository messageRepository;
+    private final RentalRepository rentalRepository;
+    private final MessageArchive messageArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ageMaximum;
+    private final int tailleLot;
+    private final int messagesParSeconde;
+
+    private final Counter archives;
+
+    // Un seul archivage à la fois, même lancé à la main pendant un archivage planifié
+    private final AtomicBoolean enCours = new AtomicBoolean();
+
+    // Âge des messages archivés, taille des lots et débit lus dans application.properties (messages.archive.*)
+    public MessageArchiveService(MessageRepository messageRepository, RentalRepository rentalRepository,
+                                 MessageArchive messageArchive, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${messages.archive.max-age}") Duration ageMaximum,
+                                 @Value("${messages.archive.batch-size}") int tailleLot,
+                                 @Value("${messages.archive.messages-per-second}") int messagesParSeconde) {
+        this.messageRepository = messageRepository;
+        this.rentalRepository = rentalRepository;
+        this.messageArchive = messageArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ageMaximum = ageMaximum;
+        this.tailleLot = tailleLot;
+        this.messagesParSeconde = messagesParSeconde;
+
+        this.archives = Counter.builder("messages.archive.archived")
+                .description("Messages déplacés de la table vers l'archive")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Déplace les messages plus anciens que messages.archive.max-age vers l'archive. <br>
+     * Lancé selon messages.archive.cron ; sans effet si un archivage est déjà en cours.
+     */
+    @Scheduled(cron = "${messages.archive.cron}")
+    public void archiver() {
+        if (!enCours.compareAndSet(false, true)) {
+            LOGGER.warn("Archivage des messages déjà en cours");
+            return;
+        }
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(ageMaximum));
+        Avancement avancement = new Avancement();
+        LOGGER.info("Archivage des messages : début (messages antérieurs à " + limite + ")");
+
+        try {
+            List<MessageDto> lot = messageRepository.findArchivable(limite, PageRequest.ofSize(tailleLot));
+            while (!lot.isEmpty()) {
+                traiterLot(lot, avancement);
+                if (lot.size() < tailleLot) {
+                    break;
+                }
+                ralentir(avancement);
+                lot = messageRepository.findArchivable(limite, PageRequest.ofSize(tailleLot));
+            }
+            LOGGER.info("Archivage des messages : fin, " + avancement);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Archivage des messages interrompu après " + avancement + " : " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Archivage des messages arrêté après " + avancement);
+        } finally {
+            enCours.set(false);
+        }
+    }
+
+    // L'archive d'abord (écriture durable), la table ensuite, avec la date et le nombre des messages archivés de chaque bien
+    // et la nouvelle révision de la liste des messages (ETag de GET /api/messages)
+    private void traiterLot(List<MessageDto> lot, Avancement avancement) throws IOException {
+        // Messages déjà archivés par un passage interrompu avant leur suppression : ils ne sont pas écrits deux fois
+        List<MessageDto> aArchiver = lot.stream()
+                .filter(message -> !messageArchive.contient(message.getId()))
+                .toList();
+        if (!aArchiver.isEmpty()) {
+            messageArchive.ajouter(aArchiver);
+        }
+        // Tout le lot, y compris les messages archivés par un passage interrompu avant la mise à jour des biens
+        // Les lignes du lot sont supprimées dans la même transaction : chacune est comptée une seule fois
+        Map<Integer, Timestamp> plusRecents = lot.stream().collect(Collectors.toMap(MessageDto::getRentalId,
+                MessageDto::getCreatedAt, BinaryOperator.maxBy(Comparator.naturalOrder())));
+        Map<Integer, Long> nombres = lot.stream().collect(Collectors.groupingBy(MessageDto::getRentalId, Collectors.counting()));
+        transactionTemplate.executeWithoutResult(statut -> {
+            messageRepository.deleteAllByIdInBatch(lot.stream().map(MessageDto::getId).toList());
+            plusRecents.forEach((rentalId, plusRecent) -> rentalRepository.addArchivedMessages(rentalId, plusRecent, nombres.get(rentalId)));
+            messageRepository.incrementCollectionRevision();
+        });
+
+        avancement.archives += lot.size();
+        avancement.lots++;
+        archives.increment(lot.size());
+        if (avancement.lots % LOTS_PAR_RAPPORT == 0) {
+            LOGGER.info("Archivage des messages : " + avancement);
+        }
+    }
+
+    // Attend le temps nécessaire pour ne pas dépasser le débit autorisé depuis le début de l'archivage
+    private void ralentir(Avancement avancement) throws InterruptedException {
+        long attendu = TimeUnit.SECONDS.toNanos(avancement.archives) / messagesParSeconde;
+        long ecoule = System.nanoTime() - avancement.debut;
+        if (attendu > ecoule) {
+            TimeUnit.NANOSECONDS.sleep(attendu - ecoule);
+        }
+    }
+
+    private static final class Avancement {
+        private final long debut = System.nanoTime();
+        private long lots;
+        private long archives;
+
+        @Override
+        public String toString() {
+            return archives + " messages archivés en " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - debut) + " s";
+        }
+    }
+}
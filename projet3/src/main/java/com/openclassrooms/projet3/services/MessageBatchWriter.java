@@ -0,0 +1,273 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.repositories.ConversationRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Écriture groupée des messages (group commit), activée par messages.group-commit.enabled. <br>
+ * Les messages envoyés en même temps sont placés dans une file bornée ; un seul thread les en retire et les insère
+ * par lots : une requête INSERT multi-lignes (rewriteBatchedStatements) et une seule transaction, donc une seule
+ * écriture du journal sur le disque, pour tout le lot. Les résumés des conversations (boîte de réception) sont mis à
+ * jour par un second lot JDBC, dans la même transaction. Chaque appelant reçoit son message, avec l'identifiant généré,
+ * une fois la transaction validée. <br>
+ * Un lot contient les messages arrivés pendant l'écriture du lot précédent ; le thread peut en plus attendre
+ * messages.group-commit.max-delay après le premier message pour le remplir, au prix d'autant de latence par envoi. <br>
+ * Un envoi encore dans la file au bout de messages.group-commit.timeout échoue (TimeoutException) et n'est pas écrit.
+ * Un envoi déjà pris dans un lot n'échoue plus sur le délai : son appelant reçoit le résultat du lot, pour qu'un message
+ * écrit ne soit jamais signalé en échec (et renvoyé en double par un client qui réessaie). <br>
+ * Métriques : messages.group-commit.queue.depth, messages.group-commit.batch.size et messages.group-commit.flush.
+ */
+@Service
+public class MessageBatchWriter {
+    private static final Logger LOGGER = Logger.getLogger(MessageBatchWriter.class);
+
+    private static final String INSERTION = "INSERT INTO MESSAGES (rental_id, user_id, message, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean actif;
+    private final long delaiMaximum;
+    private final long attenteMaximum;
+    private final int tailleLot;
+    private final BlockingQueue<Envoi> file;
+    private final Thread ecrivain;
+    private volatile boolean arrete;
+
+    private final DistributionSummary taillesLots;
+    private final Timer dureeEcriture;
+
+    // Activation, délais, taille des lots et capacité de la file lus dans application.properties (messages.group-commit.*)
+    public MessageBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${messages.group-commit.enabled}") boolean actif,
+                              @Value("${messages.group-commit.max-delay}") Duration delaiMaximum,
+                              @Value("${messages.group-commit.timeout}") Duration attenteMaximum,
+                              @Value("${messages.group-commit.batch-size}") int tailleLot,
+                              @Value("${messages.group-commit.queue-capacity}") int capaciteFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.actif = actif;
+        this.delaiMaximum = delaiMaximum.toNanos();
+        this.attenteMaximum = attenteMaximum.toMillis();
+        this.tailleLot = tailleLot;
+        this.file = new ArrayBlockingQueue<>(capaciteFile);
+
+        Gauge.builder("messages.group-commit.queue.depth", file, BlockingQueue::size)
+                .description("Messages en attente d'écriture")
+                .register(meterRegistry);
+        this.taillesLots = DistributionSummary.builder("messages.group-commit.batch.size")
+                .description("Nombre de messages écrits par transaction")
+                .register(meterRegistry);
+        this.dureeEcriture = Timer.builder("messages.group-commit.flush")
+                .description("Durée d'écriture d'un lot de messages")
+                .register(meterRegistry);
+
+        this.ecrivain = new Thread(this::ecrire, "message-writer");
+        this.ecrivain.setDaemon(true);
+        if (actif) {
+            this.ecrivain.start();
+        }
+    }
+
+    public boolean isActif() {
+        return actif;
+    }
+
+    /**
+     * Place un message dans la file d'écriture.
+     *
+     * @param message Le message à enregistrer, sans identifiant.
+     * @return CompletableFuture<MessageDto> - Le message enregistré avec son identifiant, une fois la transaction validée,
+     * l'erreur de la base de données, ou une TimeoutException s'il est encore dans la file au bout du délai
+     * messages.group-commit.timeout (il n'est alors pas écrit).
+     * @throws RejectedExecutionException Si la file est pleine ou si l'application s'arrête.
+     */
+    public CompletableFuture<MessageDto> envoyer(MessageDto message) throws RejectedExecutionException {
+        Envoi envoi = new Envoi(message);
+        if (arrete || !file.offer(envoi)) {
+            throw new RejectedExecutionException("Trop de messages en attente, merci de réessayer plus tard.");
+        }
+        CompletableFuture.delayedExecutor(attenteMaximum, TimeUnit.MILLISECONDS).execute(envoi::abandonner);
+        return envoi.resultat;
+    }
+
+    // Boucle du thread d'écriture : un lot par tour, jusqu'à l'arrêt et à l'épuisement de la file
+    private void ecrire() {
+        List<Envoi> lot = new ArrayList<>(tailleLot);
+        while (!arrete || !file.isEmpty()) {
+            try {
+                remplir(lot);
+            } catch (InterruptedException e) {
+                // Les messages déjà retirés de la file sont écrits sans attendre
+                file.drainTo(lot, tailleLot - lot.size());
+            }
+            // Envois abandonnés (délai dépassé) : ils ne sont pas écrits ; les autres ne peuvent plus l'être
+            lot.removeIf(envoi -> !envoi.prendre());
+            if (!lot.isEmpty()) {
+                dureeEcriture.record(() -> inserer(lot));
+                taillesLots.record(lot.size());
+                lot.clear();
+            }
+        }
+    }
+
+    // Attend le premier message, puis au plus delaiMaximum pour compléter le lot
+    private void remplir(List<Envoi> lot) throws InterruptedException {
+        Envoi premier = file.poll(1, TimeUnit.SECONDS);
+        if (premier == null) {
+            return;
+        }
+        lot.add(premier);
+        long limite = System.nanoTime() + delaiMaximum;
+        while (lot.size() < tailleLot) {
+            file.drainTo(lot, tailleLot - lot.size());
+            long restant = limite - System.nanoTime();
+            if (lot.size() >= tailleLot || restant <= 0) {
+                return;
+            }
+            Envoi suivant = file.poll(restant, TimeUnit.NANOSECONDS);
+            if (suivant == null) {
+                return;
+            }
+            lot.add(suivant);
+        }
+    }
+
+    // Insère le lot en une transaction ; s'il est refusé (ex : bien inexistant), chaque message est réessayé seul
+    // pour que l'erreur d'un message ne fasse pas échouer les autres
+    private void inserer(List<Envoi> lot) {
+        try {
+            List<Integer> ids = transactionTemplate.execute(statut -> jdbcTemplate.execute(insertion(lot)));
+            for (int i = 0; i < lot.size(); i++) {
+                lot.get(i).terminer(ids.get(i));
+            }
+        } catch (DataAccessException e) {
+            if (lot.size() == 1) {
+                lot.get(0).resultat.completeExceptionally(e);
+                return;
+            }
+            LOGGER.warn("Lot de " + lot.size() + " messages refusé, écriture message par message : " + e.getMessage());
+            for (Envoi envoi : lot) {
+                inserer(List.of(envoi));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception : " + e);
+            lot.forEach(envoi -> envoi.resultat.completeExceptionally(e));
+        }
+    }
+
+    // Insertion du lot en une seule exécution JDBC, en récupérant les identifiants générés dans l'ordre des lignes,
+    // puis mise à jour des conversations du lot sur la même connexion (même transaction)
+    private static ConnectionCallback<List<Integer>> insertion(List<Envoi> lot) {
+        return connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERTION, Statement.RETURN_GENERATED_KEYS)) {
+                for (Envoi envoi : lot) {
+                    MessageDto message = envoi.message;
+                    statement.setInt(1, message.getRentalId());
+                    statement.setInt(2, message.getUserId());
+                    statement.setString(3, message.getMessage());
+                    statement.setTimestamp(4, message.getCreatedAt());
+                    statement.setTimestamp(5, message.getUpdatedAt());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                List<Integer> ids = new ArrayList<>(lot.size());
+                try (ResultSet cles = statement.getGeneratedKeys()) {
+                    while (cles.next()) {
+                        ids.add(cles.getInt(1));
+                    }
+                }
+
+                try (PreparedStatement conversations = connection.prepareStatement(ConversationRepository.MISE_A_JOUR)) {
+                    for (Envoi envoi : lot) {
+                        MessageDto message = envoi.message;
+                        conversations.setInt(1, message.getUserId());
+                        conversations.setString(2, ConversationService.extrait(message.getMessage()));
+                        conversations.setTimestamp(3, message.getCreatedAt());
+                        conversations.setInt(4, message.getRentalId());
+                        conversations.setInt(5, message.getUserId());
+                        conversations.addBatch();
+                    }
+                    conversations.executeBatch();
+                }
+                return ids;
+            }
+        };
+    }
+
+    // Les messages en file sont écrits avant l'arrêt ; les envois suivants sont refusés
+    // Le thread n'est pas interrompu, pour ne pas couper une écriture en cours : il s'arrête une fois la file vide
+    @PreDestroy
+    public void arreter() throws InterruptedException {
+        arrete = true;
+        if (actif) {
+            ecrivain.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        // Messages arrivés pendant l'arrêt, ou restés en file si l'écriture n'a pas fini à temps
+        List<Envoi> restants = new ArrayList<>();
+        file.drainTo(restants);
+        restants.forEach(envoi -> envoi.resultat.completeExceptionally(
+                new RejectedExecutionException("Message non enregistré : l'application s'arrête.")));
+    }
+
+    private static final class Envoi {
+        // En file, pris dans un lot par le thread d'écriture, ou abandonné sur le délai : un seul des deux derniers
+        private static final int EN_FILE = 0;
+        private static final int PRIS = 1;
+        private static final int ABANDONNE = 2;
+
+        private final MessageDto message;
+        private final CompletableFuture<MessageDto> resultat = new CompletableFuture<>();
+        private final AtomicInteger etat = new AtomicInteger(EN_FILE);
+
+        private Envoi(MessageDto message) {
+            this.message = message;
+        }
+
+        // Appelé par le thread d'écriture avant d'écrire le lot : false si l'envoi a déjà été abandonné
+        private boolean prendre() {
+            return etat.compareAndSet(EN_FILE, PRIS);
+        }
+
+        // Appelé au bout du délai : sans effet si l'envoi est déjà pris dans un lot
+        private void abandonner() {
+            if (etat.compareAndSet(EN_FILE, ABANDONNE)) {
+                resultat.completeExceptionally(new TimeoutException("Message non écrit dans le délai"));
+            }
+        }
+
+        private void terminer(Integer id) {
+            message.setId(id);
+            resultat.complete(message);
+        }
+    }
+}
@@ -1,60 +1,224 @@
 package com.openclassrooms.projet3.services;
 
+import com.openclassrooms.projet3.archive.MessageArchive;
 import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.dto.VersionDto;
 import com.openclassrooms.projet3.entites.MessageEntity;
+import com.openclassrooms.projet3.events.MessageSentEvent;
+import com.openclassrooms.projet3.exception.RentalDoesNotExistException;
 import com.openclassrooms.projet3.mappers.MessageMapper;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.pagination.PageSize;
+import com.openclassrooms.projet3.projection.FieldSet;
+import com.openclassrooms.projet3.repositories.ConversationRepository;
 import com.openclassrooms.projet3.repositories.MessageRepository;
+import com.openclassrooms.projet3.repositories.RentalRepository;
 import com.openclassrooms.projet3.request.MessageSendRequest;
+import com.openclassrooms.projet3.response.MessageThreadResponse;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class MessageService {
 
     private final MessageRepository messageRepository;
+    private final RentalRepository rentalRepository;
+    private final ConversationRepository conversationRepository;
+    private final MessageBatchWriter messageBatchWriter;
+    private final MessageArchive messageArchive;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
-    public MessageService(MessageRepository messageRepository) {
+    public MessageService(MessageRepository messageRepository, RentalRepository rentalRepository, ConversationRepository conversationRepository,
+                          MessageBatchWriter messageBatchWriter, MessageArchive messageArchive, ApplicationEventPublisher eventPublisher,
+                          PlatformTransactionManager transactionManager) {
         this.messageRepository = messageRepository;
+        this.rentalRepository = rentalRepository;
+        this.conversationRepository = conversationRepository;
+        this.messageBatchWriter = messageBatchWriter;
+        this.messageArchive = messageArchive;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    public List<MessageDto> getAllMessages() {
-        return messageRepository.findAll()
-                .stream()
-                .map(MessageMapper::mapToDto)
-                .collect(Collectors.toList());
+    // Lectures seules projetées en MessageDto, sans charger d'entité
+    // Seuls les messages écrits par l'utilisateur ou reçus sur ses biens sont renvoyés
+    // Seules les colonnes demandées (paramètre "fields") sont lues ; les messages archivés n'en font pas partie
+    @Transactional(readOnly = true)
+    public List<MessageDto> getAllMessages(String currentUserId, FieldSet champs) {
+        return messageRepository.findDtosVisibleBy(Integer.valueOf(currentUserId), champs.colonnes(MessageDto.CHAMPS));
     }
 
-    public MessageDto getMessageById(Integer id) throws Exception {
-        MessageEntity messageEntity = messageRepository.findById(id).orElseThrow(()->new Exception("Message not found"));
-        return MessageMapper.mapToDto(messageEntity);
+    /**
+     * Renvoie une page des messages d'un bien, les plus récents en premier, paginée par clé sur (created_at, id). <br>
+     * Les messages archivés, plus anciens que ceux de la table, complètent la page quand la table n'en a plus et que
+     * le bien a des messages archivés (RENTALS.messages_archived_at). <br>
+     * Le fil complet n'est lisible que par le propriétaire du bien ; un utilisateur qui y a écrit (CONVERSATIONS)
+     * ne lit que ses propres messages. Pour les autres, le bien est traité comme inexistant.
+     *
+     * @param rentalId      L'identifiant du bien.
+     * @param currentUserId L'identifiant de l'utilisateur actuel.
+     * @param apres         Le curseur renvoyé par la page précédente (null pour la première page).
+     * @param size          La taille de page demandée (bornée par {@link PageSize}).
+     * @return MessageThreadResponse - Les messages de la page et le curseur de la page suivante.
+     * @throws IllegalArgumentException    Si le curseur est invalide.
+     * @throws RentalDoesNotExistException Si le bien n'existe pas ou si l'utilisateur n'a pas accès à son fil.
+     */
+    @Transactional(readOnly = true)
+    public MessageThreadResponse getRentalMessages(Integer rentalId, String currentUserId, KeysetCursor apres, Integer size)
+            throws IllegalArgumentException, RentalDoesNotExistException {
+        Integer lecteur = Integer.valueOf(currentUserId);
+        Optional<Integer> proprietaire = rentalRepository.findOwnerIdById(rentalId);
+        if (proprietaire.isEmpty()
+                || (!proprietaire.get().equals(lecteur) && !conversationRepository.existsByRentalIdAndUserId(rentalId, lecteur))) {
+            throw new RentalDoesNotExistException("Le bien avec cet identifiant n'existe pas !");
+        }
+        // Le propriétaire lit tout le fil, les autres utilisateurs uniquement leurs messages
+        Integer auteur = proprietaire.get().equals(lecteur) ? null : lecteur;
+        int taille = PageSize.borner(size);
+
+        // Une ligne de plus que la taille demandée est lue pour savoir s'il existe une page suivante
+        Pageable limite = PageRequest.ofSize(taille + 1);
+        List<MessageDto> resultats;
+        if (auteur == null) {
+            resultats = apres == null
+                    ? messageRepository.findFirstPageByRental(rentalId, limite)
+                    : messageRepository.findPageByRentalAfter(rentalId, apres.getValeurAsTimestamp(), apres.getId(), limite);
+        } else {
+            resultats = apres == null
+                    ? messageRepository.findFirstPageByRentalAndUser(rentalId, auteur, limite)
+                    : messageRepository.findPageByRentalAndUserAfter(rentalId, auteur, apres.getValeurAsTimestamp(), apres.getId(), limite);
+        }
+        Optional<Timestamp> plusRecentArchive = resultats.size() <= taille
+                ? rentalRepository.findMessagesArchivedAtById(rentalId)
+                : Optional.empty();
+        if (plusRecentArchive.isPresent()) {
+            // La suite du fil est dans l'archive, après le dernier message lu (ou le curseur)
+            MessageDto dernierLu = resultats.isEmpty() ? null : resultats.get(resultats.size() - 1);
+            Timestamp avantDate = dernierLu != null ? dernierLu.getCreatedAt() : apres != null ? apres.getValeurAsTimestamp() : null;
+            Integer avantId = dernierLu != null ? dernierLu.getId() : apres != null ? apres.getId() : null;
+            resultats = new ArrayList<>(resultats);
+            resultats.addAll(messageArchive.getRentalMessages(rentalId, auteur, plusRecentArchive.get(), avantDate, avantId,
+                    taille + 1 - resultats.size()));
+        }
+        if (resultats.size() <= taille) {
+            return new MessageThreadResponse(resultats, null);
+        }
+
+        List<MessageDto> page = new ArrayList<>(resultats.subList(0, taille));
+        MessageDto dernier = page.get(taille - 1);
+        return new MessageThreadResponse(page, KeysetCursor.of(dernier.getCreatedAt(), dernier.getId()).encode());
+    }
+
+    // Un message absent de la table est cherché dans l'archive
+    // Seuls son auteur et le propriétaire du bien peuvent le lire
+    @Transactional(readOnly = true)
+    public MessageDto getMessageById(Integer id, String currentUserId) throws Exception {
+        Integer lecteur = Integer.valueOf(currentUserId);
+        return messageRepository.findDtoById(id)
+                .or(() -> messageArchive.getMessage(id))
+                .filter(message -> estLisiblePar(message, lecteur))
+                .orElseThrow(()->new Exception("Message not found"));
+    }
+
+    /**
+     * Renvoie la version d'un message (identifiant et date de mise à jour) sans le charger. <br>
+     * Un message archivé ne change plus : sa version est lue dans l'archive.
+     *
+     * @param id            L'identifiant du message.
+     * @param currentUserId L'identifiant de l'utilisateur actuel.
+     * @return Optional<VersionDto> - La version du message, vide si le message n'existe pas ou si l'utilisateur
+     * n'en est ni l'auteur ni le propriétaire du bien.
+     */
+    public Optional<VersionDto> getMessageVersion(Integer id, String currentUserId) {
+        Integer lecteur = Integer.valueOf(currentUserId);
+        return messageRepository.findVersionByIdVisibleBy(id, lecteur)
+                .or(() -> messageArchive.getMessage(id)
+                        .filter(message -> estLisiblePar(message, lecteur))
+                        .map(message -> new VersionDto(message.getId(), message.getUpdatedAt())));
+    }
+
+    // Un message est lisible par son auteur et par le propriétaire du bien concerné
+    private boolean estLisiblePar(MessageDto message, Integer lecteur) {
+        return lecteur.equals(message.getUserId())
+                || rentalRepository.findOwnerIdById(message.getRentalId()).map(lecteur::equals).orElse(false);
+    }
+
+    /**
+     * Renvoie la version de la liste des messages (plus grand identifiant, dernière mise à jour et révision de la liste).
+     *
+     * @return VersionDto - La version de la liste.
+     */
+    public VersionDto getMessagesVersion() {
+        return messageRepository.findCollectionVersion();
     }
 
     /**
      * Envoie un message enregistré par l'utilisateur pour une location spécifique.
      *
      * @param messageSendRequest Les détails du message à envoyer.
+     * @param currentUserId      L'identifiant de l'utilisateur actuel, auteur du message (le user_id de la requête est ignoré).
      * @return L'entité du message créé et enregistré dans la base de données.
      * @throws IllegalArgumentException Si toutes les informations requises ne sont pas fournies.
+     * @throws RejectedExecutionException En mode group commit, si trop de messages sont en attente d'écriture, ou si le
+     * message était encore en attente au bout du délai messages.group-commit.timeout (il n'est alors pas écrit).
      */
-    public MessageDto envoieMessages(MessageSendRequest messageSendRequest) throws IllegalArgumentException {
+    public MessageDto envoieMessages(MessageSendRequest messageSendRequest, String currentUserId) throws IllegalArgumentException {
         // Assure que les données requises sont fournies
-        if (messageSendRequest.getMessage().equals("") || messageSendRequest.getUserId() == null || messageSendRequest.getRentalId() == null) {
+        if (messageSendRequest.getMessage() == null || messageSendRequest.getMessage().equals("") || messageSendRequest.getRentalId() == null) {
             throw new IllegalArgumentException("Toutes les informations requises ne sont pas renseignées. Merci de tout renseigner.");
         }
 
+        // Les dates sont renseignées ici : elles servent aux ETag / Last-Modified des messages
+        Timestamp temps = Timestamp.valueOf(LocalDateTime.now());
+
         // Création de l'objet MessageEntity
         MessageDto messageDto = MessageDto.builder()
                 .rentalId(messageSendRequest.getRentalId())
-                .userId(messageSendRequest.getUserId())
+                .userId(Integer.valueOf(currentUserId))
                 .message(messageSendRequest.getMessage())
+                .createdAt(temps)
+                .updatedAt(temps)
                 .build();
 
-        MessageEntity messageEntity = MessageMapper.mapToEntity(messageDto);
-
-        MessageEntity response = messageRepository.save(messageEntity);
+        // En mode group commit, le message est écrit avec ceux envoyés au même moment, en une transaction
+        MessageDto enregistre;
+        if (messageBatchWriter.isActif()) {
+            try {
+                enregistre = messageBatchWriter.envoyer(messageDto).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    throw new RejectedExecutionException("L'écriture du message a pris trop de temps, merci de réessayer plus tard.");
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        } else {
+            // Le message et le résumé de sa conversation (boîte de réception) sont enregistrés dans la même transaction
+            enregistre = transactionTemplate.execute(statut -> {
+                MessageEntity messageEntity = MessageMapper.mapToEntity(messageDto);
+                MessageDto sauvegarde = MessageMapper.mapToDto(messageRepository.save(messageEntity));
+                conversationRepository.addMessage(sauvegarde.getRentalId(), sauvegarde.getUserId(),
+                        ConversationService.extrait(sauvegarde.getMessage()), sauvegarde.getCreatedAt());
+                return sauvegarde;
+            });
+        }
 
-        return MessageMapper.mapToDto(response);
+        // Le message est enregistré : il peut être envoyé au propriétaire du bien (flux GET /api/messages/stream)
+        eventPublisher.publishEvent(new MessageSentEvent(enregistre));
+        return enregistre;
     }
 }
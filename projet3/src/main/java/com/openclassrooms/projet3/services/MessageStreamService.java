@@ -0,0 +1,277 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+import com.openclassrooms.projet3.events.MessageSentEvent;
+import com.openclassrooms.projet3.repositories.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flux des nouveaux messages (Server-Sent Events), envoyés en direct aux propriétaires des biens. <br>
+ * Chaque connexion est une requête asynchrone (SseEmitter) : une connexion inactive n'occupe aucun thread, seulement
+ * sa socket. Un message enregistré (MessageSentEvent) est placé dans la file bornée de chaque connexion du propriétaire
+ * du bien ; quelques threads vident ces files vers les clients. Un client trop lent dont la file est pleine est
+ * déconnecté plutôt que de retenir les messages des autres ; il se reconnecte et relit les messages manqués
+ * par GET /api/rentals/:id/messages. <br>
+ * Un utilisateur a au plus messages.stream.max-connections-per-user connexions : en ouvrir une de plus ferme sa plus
+ * ancienne (onglet oublié, client qui se reconnecte sans fermer). <br>
+ * L'écriture sur la socket est bloquante : un client qui ne lit plus occupe un thread d'envoi jusqu'à ce que Tomcat
+ * abandonne l'écriture, au bout de server.tomcat.connection-timeout (20 s). Le pool compte donc messages.stream.threads
+ * threads (64), créés à la demande et arrêtés après une minute d'inactivité : il faut autant de clients bloqués en même
+ * temps pour retarder les autres. <br>
+ * Métriques : messages.stream.connections et messages.stream.dropped.
+ */
+@Service
+public class MessageStreamService {
+    private static final Logger LOGGER = Logger.getLogger(MessageStreamService.class);
+
+    private final RentalRepository rentalRepository;
+
+    private final int tailleFile;
+    private final int connexionsMaximum;
+    private final int connexionsParUtilisateur;
+    private final long duree;
+
+    // Connexions ouvertes, par identifiant d'utilisateur
+    private final Map<Integer, Set<Abonne>> abonnes = new ConcurrentHashMap<>();
+    private final AtomicInteger connexions = new AtomicInteger();
+    // Ordre d'ouverture des connexions, pour fermer la plus ancienne d'un utilisateur
+    private final AtomicLong ouvertures = new AtomicLong();
+    private final ExecutorService envois;
+    private final Counter deconnexions;
+
+    // Taille des files, nombres maximum de connexions, durée d'une connexion et nombre de threads d'envoi lus dans application.properties (messages.stream.*)
+    public MessageStreamService(RentalRepository rentalRepository, MeterRegistry meterRegistry,
+                                @Value("${messages.stream.buffer-size}") int tailleFile,
+                                @Value("${messages.stream.max-connections}") int connexionsMaximum,
+                                @Value("${messages.stream.max-connections-per-user}") int connexionsParUtilisateur,
+                                @Value("${messages.stream.timeout}") Duration duree,
+                                @Value("${messages.stream.threads}") int threads) {
+        this.rentalRepository = rentalRepository;
+        this.tailleFile = tailleFile;
+        this.connexionsMaximum = connexionsMaximum;
+        this.connexionsParUtilisateur = connexionsParUtilisateur;
+        this.duree = duree.toMillis();
+
+        // Une connexion a au plus une tâche d'envoi en attente : la file du pool est bornée par le nombre de connexions
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), nommerThreads());
+        pool.allowCoreThreadTimeOut(true);
+        this.envois = pool;
+
+        Gauge.builder("messages.stream.connections", connexions, AtomicInteger::get)
+                .description("Connexions ouvertes au flux des messages")
+                .register(meterRegistry);
+        this.deconnexions = Counter.builder("messages.stream.dropped")
+                .description("Clients déconnectés car trop lents à lire le flux")
+                .register(meterRegistry);
+    }
+
+    // Threads nommés pour les reconnaître dans les journaux et les dumps
+    private static ThreadFactory nommerThreads() {
+        AtomicInteger compteur = new AtomicInteger();
+        return tache -> {
+            Thread thread = new Thread(tache, "message-stream-" + compteur.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Ouvre une connexion au flux pour un utilisateur. <br>
+     * Si l'utilisateur a déjà messages.stream.max-connections-per-user connexions, sa plus ancienne est fermée.
+     *
+     * @param idUtilisateur L'identifiant de l'utilisateur connecté.
+     * @return SseEmitter - La connexion, fermée par le serveur au bout de messages.stream.timeout.
+     * @throws IllegalStateException Si le nombre maximum de connexions est atteint.
+     */
+    public SseEmitter abonner(Integer idUtilisateur) throws IllegalStateException {
+        if (connexions.incrementAndGet() > connexionsMaximum) {
+            connexions.decrementAndGet();
+            throw new IllegalStateException("Trop de connexions au flux des messages, merci de réessayer plus tard.");
+        }
+        SseEmitter emetteur = new SseEmitter(duree);
+        Abonne abonne = new Abonne(idUtilisateur, ouvertures.incrementAndGet(), emetteur, new ArrayBlockingQueue<>(tailleFile));
+        // Ajout dans le calcul de la map : une connexion retirée en même temps ne fait pas disparaître l'ensemble
+        Set<Abonne> connexionsUtilisateur = abonnes.compute(idUtilisateur, (id, ouvertes) -> {
+            Set<Abonne> ensemble = ouvertes != null ? ouvertes : ConcurrentHashMap.<Abonne>newKeySet();
+            ensemble.add(abonne);
+            return ensemble;
+        });
+        if (connexionsUtilisateur.size() > connexionsParUtilisateur) {
+            connexionsUtilisateur.stream()
+                    .filter(autre -> autre != abonne)
+                    .min(Comparator.comparingLong(autre -> autre.ouverture))
+                    .ifPresent(this::fermer);
+        }
+
+        emetteur.onCompletion(() -> retirer(abonne));
+        emetteur.onTimeout(() -> {
+            // Fin normale de la connexion au bout de messages.stream.timeout : le client se reconnecte
+            retirer(abonne);
+            emetteur.complete();
+        });
+        emetteur.onError(erreur -> retirer(abonne));
+
+        // Premier événement : les en-têtes partent tout de suite et le client sait que la connexion est ouverte
+        publier(abonne, SseEmitter.event().comment("connecté"));
+        return emetteur;
+    }
+
+    /**
+     * Envoie un message qui vient d'être enregistré aux connexions du propriétaire du bien.
+     *
+     * @param event L'événement publié après l'enregistrement du message.
+     */
+    @EventListener
+    public void onMessageSent(MessageSentEvent event) {
+        // Personne n'écoute : le propriétaire n'est pas cherché
+        if (abonnes.isEmpty()) {
+            return;
+        }
+        MessageDto message = event.getMessage();
+        Optional<Integer> proprietaire = rentalRepository.findOwnerIdById(message.getRentalId());
+        Set<Abonne> destinataires = proprietaire.map(abonnes::get).orElse(null);
+        if (destinataires == null) {
+            return;
+        }
+        for (Abonne abonne : destinataires) {
+            publier(abonne, SseEmitter.event()
+                    .id(String.valueOf(message.getId()))
+                    .name("message")
+                    .data(message, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    // Commentaire envoyé régulièrement : garde les connexions ouvertes derrière les proxys et détecte les clients partis
+    @Scheduled(fixedDelayString = "${messages.stream.heartbeat}")
+    public void battement() {
+        for (Set<Abonne> connexionsUtilisateur : abonnes.values()) {
+            for (Abonne abonne : connexionsUtilisateur) {
+                publier(abonne, SseEmitter.event().comment(""));
+            }
+        }
+    }
+
+    // Ferme les connexions à l'arrêt : les clients se reconnecteront au redémarrage
+    @PreDestroy
+    public void arreter() {
+        for (Set<Abonne> connexionsUtilisateur : abonnes.values()) {
+            for (Abonne abonne : connexionsUtilisateur) {
+                abonne.emetteur.complete();
+            }
+        }
+        envois.shutdownNow();
+    }
+
+    // --------------------------------------
+    // Files des connexions
+    // --------------------------------------
+
+    // Place l'événement dans la file de la connexion, puis planifie l'envoi s'il n'est pas déjà planifié
+    private void publier(Abonne abonne, SseEmitter.SseEventBuilder evenement) {
+        if (abonne.ferme.get()) {
+            return;
+        }
+        if (!abonne.file.offer(evenement)) {
+            // Client trop lent : il est déconnecté plutôt que de laisser sa file grossir
+            // La connexion n'est pas fermée ici : un thread d'envoi bloqué sur ce client garde l'émetteur, et l'expéditeur
+            // du message attendrait avec lui ; c'est la tâche d'envoi de la connexion qui la ferme
+            if (retirer(abonne)) {
+                deconnexions.increment();
+                LOGGER.warn("Flux des messages : client trop lent déconnecté (utilisateur " + abonne.idUtilisateur + ")");
+            }
+        }
+        if (abonne.planifie.compareAndSet(false, true)) {
+            envois.execute(() -> vider(abonne));
+        }
+    }
+
+    // Retire la connexion ; elle est fermée par sa tâche d'envoi, seul thread qui écrit dessus
+    private void fermer(Abonne abonne) {
+        if (retirer(abonne) && abonne.planifie.compareAndSet(false, true)) {
+            envois.execute(() -> vider(abonne));
+        }
+    }
+
+    // Envoie les événements en attente ; un seul thread vide la file d'une connexion à la fois
+    private void vider(Abonne abonne) {
+        do {
+            SseEmitter.SseEventBuilder evenement;
+            while (!abonne.ferme.get() && (evenement = abonne.file.poll()) != null) {
+                try {
+                    abonne.emetteur.send(evenement);
+                } catch (IOException | IllegalStateException e) {
+                    // Client parti ou connexion déjà terminée
+                    retirer(abonne);
+                    abonne.emetteur.completeWithError(e);
+                    return;
+                }
+            }
+            if (abonne.ferme.get()) {
+                // Connexion retirée (client trop lent, arrêt) : fermée ici, par le seul thread qui écrit dessus
+                abonne.emetteur.complete();
+                return;
+            }
+            abonne.planifie.set(false);
+            // Un événement arrivé entre la fin de la boucle et le retour de "planifie" à false est envoyé ici
+        } while (!abonne.ferme.get() && !abonne.file.isEmpty() && abonne.planifie.compareAndSet(false, true));
+    }
+
+    // Retourne false si la connexion était déjà retirée
+    private boolean retirer(Abonne abonne) {
+        // Une connexion peut être retirée par plusieurs chemins (erreur d'envoi, fin, client lent) : une seule fois
+        if (!abonne.ferme.compareAndSet(false, true)) {
+            return false;
+        }
+        abonne.file.clear();
+        abonnes.computeIfPresent(abonne.idUtilisateur, (id, connexionsUtilisateur) -> {
+            connexionsUtilisateur.remove(abonne);
+            return connexionsUtilisateur.isEmpty() ? null : connexionsUtilisateur;
+        });
+        connexions.decrementAndGet();
+        return true;
+    }
+
+    private static final class Abonne {
+        private final Integer idUtilisateur;
+        private final long ouverture;
+        private final SseEmitter emetteur;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> file;
+        private final AtomicBoolean planifie = new AtomicBoolean();
+        private final AtomicBoolean ferme = new AtomicBoolean();
+
+        private Abonne(Integer idUtilisateur, long ouverture, SseEmitter emetteur, BlockingQueue<SseEmitter.SseEventBuilder> file) {
+            this.idUtilisateur = idUtilisateur;
+            this.ouverture = ouverture;
+            this.emetteur = emetteur;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.openclassrooms.projet3.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.events.RentalSavedEvent;
+import com.openclassrooms.projet3.exception.UserDoesNotExistException;
+import com.openclassrooms.projet3.importer.CsvReader;
+import com.openclassrooms.projet3.importer.ImportFormat;
+import com.openclassrooms.projet3.repositories.UserRepository;
+import com.openclassrooms.projet3.request.RentalImportRow;
+import com.openclassrooms.projet3.response.RentalImportResponse;
+import org.apache.log4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Import de biens en masse depuis un fichier NDJSON ou CSV. <br>
+ * Le fichier est lu en flux et chaque ligne est validée avec les mêmes règles que la création d'un bien ;
+ * les lignes valides sont insérées par lots JDBC (une requête INSERT multi-lignes par lot avec rewriteBatchedStatements),
+ * ce que Hibernate ne peut pas faire avec des identifiants GenerationType.IDENTITY. <br>
+ * Chaque lot est validé dans sa propre transaction : si la lecture s'arrête en cours de fichier, les lignes déjà lues
+ * sont importées et le rapport indique la ligne et la cause de l'arrêt (voir RentalImportResponse.getFailure).
+ */
+@Service
+public class RentalImportService {
+    private static final Logger logger = Logger.getLogger(RentalImportService.class);
+
+    // Nombre de lignes insérées par lot (et par transaction)
+    static final int TAILLE_LOT = 500;
+
+    // Longueurs maximales des colonnes (schema.sql) : une valeur trop longue ferait échouer tout le lot
+    private static final int LONGUEUR_MAX_NOM = 255;
+    private static final int LONGUEUR_MAX_DESCRIPTION = 2000;
+
+    // Longueur maximale d'une ligne NDJSON ou d'un enregistrement CSV, en caractères : assez pour un nom et une
+    // description de longueur maximale, même entièrement échappés en JSON (six caractères par caractère)
+    static final int LONGUEUR_MAX_LIGNE = 16 * 1024;
+
+    private static final String INSERTION = "INSERT INTO RENTALS (name, surface, price, picture, description, owner_id, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Révision de la liste des biens (ETag de GET /api/rentals), incrémentée une fois par lot, dans sa transaction
+    private static final String NOUVELLE_REVISION = "UPDATE COLLECTION_VERSIONS SET revision = revision + 1 WHERE name = 'rentals'";
+
+    // --------------------------------------
+    // Injection de dépendances dans le service
+    // --------------------------------------
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    // --------------------------------------
+    // Contrôleur
+    // --------------------------------------
+    public RentalImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, UserRepository userRepository,
+                               ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Importe les biens d'un fichier pour le compte de l'utilisateur actuel.
+     *
+     * @param contenu       Le contenu du fichier, lu en flux (UTF-8).
+     * @param format        Le format du fichier.
+     * @param currentUserId L'identifiant de l'utilisateur actuel, propriétaire des biens importés.
+     * @return RentalImportResponse - Le nombre de biens importés et les erreurs ligne par ligne ; en cas d'erreur de lecture
+     * du fichier, les biens lus avant l'erreur et la ligne où la lecture s'est arrêtée.
+     * @throws IllegalArgumentException Si l'en-tête CSV est invalide.
+     * @throws UserDoesNotExistException Si l'utilisateur actuel n'existe pas dans la base de données.
+     */
+    public RentalImportResponse importRentals(InputStream contenu, ImportFormat format, String currentUserId) throws IllegalArgumentException {
+        Integer ownerId = Integer.valueOf(currentUserId);
+        if (!userRepository.existsById(ownerId)) {
+            throw new UserDoesNotExistException("User does not exist.");
+        }
+
+        RentalImportResponse rapport = new RentalImportResponse();
+        Lot lot = new Lot(ownerId, rapport);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(contenu, StandardCharsets.UTF_8));
+
+        if (format == ImportFormat.CSV) {
+            lireCsv(reader, lot, rapport);
+        } else {
+            lireNdjson(reader, lot, rapport);
+        }
+        // Les lignes lues avant une éventuelle erreur de lecture sont importées
+        lot.inserer();
+
+        if (rapport.isComplete()) {
+            logger.info("Import de biens : " + rapport.getImported() + " importés, " + rapport.getRejected() + " rejetés");
+        } else {
+            logger.warn("Import de biens interrompu ligne " + rapport.getFailure().getLine() + " (" + rapport.getFailure().getMessage()
+                    + ") : " + rapport.getImported() + " importés, " + rapport.getRejected() + " rejetés");
+        }
+        return rapport;
+    }
+
+    private void lireNdjson(BufferedReader reader, Lot lot, RentalImportResponse rapport) {
+        StringBuilder texte = new StringBuilder();
+        long numero = 0;
+        try {
+            int longueur;
+            while ((longueur = lireLigne(reader, texte)) >= 0) {
+                numero++;
+                if (longueur > LONGUEUR_MAX_LIGNE) {
+                    rapport.addError(numero, "Ligne de plus de " + LONGUEUR_MAX_LIGNE + " caractères.");
+                    continue;
+                }
+                if (texte.toString().isBlank()) {
+                    continue;
+                }
+                try {
+                    lot.ajouter(numero, objectMapper.readValue(texte.toString(), RentalImportRow.class));
+                } catch (JsonProcessingException e) {
+                    rapport.addError(numero, "JSON invalide : " + e.getOriginalMessage());
+                }
+            }
+        } catch (IOException e) {
+            rapport.interrompre(numero + 1, "Lecture interrompue : " + e.getMessage());
+        }
+    }
+
+    // Lit une ligne dans texte, sans en garder plus de LONGUEUR_MAX_LIGNE caractères (la suite est lue et ignorée)
+    // Renvoie la longueur réelle de la ligne, ou -1 à la fin du fichier
+    private static int lireLigne(BufferedReader reader, StringBuilder texte) throws IOException {
+        texte.setLength(0);
+        int longueur = 0;
+        int c = reader.read();
+        if (c == -1) {
+            return -1;
+        }
+        int precedent = -1;
+        while (c != -1 && c != '\n') {
+            if (longueur < LONGUEUR_MAX_LIGNE) {
+                texte.append((char) c);
+            }
+            longueur++;
+            precedent = c;
+            c = reader.read();
+        }
+        // Fin de ligne \r\n : le \r ne fait pas partie de la ligne
+        if (precedent == '\r') {
+            longueur--;
+            texte.setLength(Math.min(texte.length(), longueur));
+        }
+        return longueur;
+    }
+
+    private void lireCsv(BufferedReader reader, Lot lot, RentalImportResponse rapport) {
+        CsvReader csv = new CsvReader(reader, LONGUEUR_MAX_LIGNE);
+        try {
+            lireEnregistrements(csv, lot, rapport);
+        } catch (IOException e) {
+            // Un enregistrement illisible ne peut pas être sauté : la fin du fichier n'est pas lue
+            rapport.interrompre(csv.getLigne(), "Lecture interrompue : " + e.getMessage());
+        }
+    }
+
+    private void lireEnregistrements(CsvReader csv, Lot lot, RentalImportResponse rapport) throws IOException {
+        // L'en-tête donne la position de chaque colonne
+        List<String> entete = csv.readRecord();
+        if (entete == null) {
+            return;
+        }
+        Map<String, Integer> colonnes = new HashMap<>();
+        for (int i = 0; i < entete.size(); i++) {
+            colonnes.put(entete.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String requise : List.of("name", "surface", "price")) {
+            if (!colonnes.containsKey(requise)) {
+                throw new IllegalArgumentException("Colonne manquante dans l'en-tête CSV : " + requise);
+            }
+        }
+
+        List<String> champs;
+        while ((champs = csv.readRecord()) != null) {
+            long numero = csv.getLigneEnregistrement();
+            if (champs.size() == 1 && champs.get(0).isBlank()) {
+                continue;
+            }
+            try {
+                lot.ajouter(numero, new RentalImportRow(
+                        champ(champs, colonnes.get("name")),
+                        nombre(champs, colonnes.get("surface"), "surface"),
+                        nombre(champs, colonnes.get("price"), "price"),
+                        champ(champs, colonnes.get("description"))));
+            } catch (NumberFormatException e) {
+                rapport.addError(numero, e.getMessage());
+            }
+        }
+    }
+
+    // Valeur d'une colonne, null si la colonne est absente ou vide
+    private static String champ(List<String> champs, Integer colonne) {
+        if (colonne == null || colonne >= champs.size() || champs.get(colonne).isEmpty()) {
+            return null;
+        }
+        return champs.get(colonne);
+    }
+
+    private static Double nombre(List<String> champs, Integer colonne, String nom) throws NumberFormatException {
+        String valeur = champ(champs, colonne);
+        if (valeur == null || valeur.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(valeur.trim());
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Valeur numérique invalide pour " + nom + " : " + valeur);
+        }
+    }
+
+    /**
+     * Lignes valides en attente d'insertion. Le lot est inséré dès qu'il atteint TAILLE_LOT lignes.
+     */
+    private class Lot {
+        private final Integer ownerId;
+        private final RentalImportResponse rapport;
+        private final List<RentalImportRow> lignes = new ArrayList<>(TAILLE_LOT);
+        private final List<Long> numeros = new ArrayList<>(TAILLE_LOT);
+
+        Lot(Integer ownerId, RentalImportResponse rapport) {
+            this.ownerId = ownerId;
+            this.rapport = rapport;
+        }
+
+        void ajouter(long numero, RentalImportRow ligne) {
+            String erreur = valider(ligne);
+            if (erreur != null) {
+                rapport.addError(numero, erreur);
+                return;
+            }
+            lignes.add(ligne);
+            numeros.add(numero);
+            if (lignes.size() == TAILLE_LOT) {
+                inserer();
+            }
+        }
+
+        // Mêmes règles que la création d'un bien, plus les longueurs des colonnes
+        private String valider(RentalImportRow ligne) {
+            if (!RentalService.areValidRequestRentalFields(ligne.getName(), ligne.getSurface(), ligne.getPrice())) {
+                return "Toutes les informations requises ne sont pas renseignées (name, surface et price positifs).";
+            }
+            if (ligne.getName().length() > LONGUEUR_MAX_NOM) {
+                return "Le nom dépasse " + LONGUEUR_MAX_NOM + " caractères.";
+            }
+            if (ligne.getDescription() != null && ligne.getDescription().length() > LONGUEUR_MAX_DESCRIPTION) {
+                return "La description dépasse " + LONGUEUR_MAX_DESCRIPTION + " caractères.";
+            }
+            return null;
+        }
+
+        void inserer() {
+            if (lignes.isEmpty()) {
+                return;
+            }
+            try {
+                Timestamp temps = Timestamp.valueOf(LocalDateTime.now());
+                List<Integer> ids = transactionTemplate.execute(statut -> {
+                    List<Integer> inseres = jdbcTemplate.execute(insertion(lignes, temps));
+                    jdbcTemplate.update(NOUVELLE_REVISION);
+                    return inseres;
+                });
+
+                // Met à jour les vues en mémoire des biens (index de recherche, statistiques)
+                for (int i = 0; i < ids.size(); i++) {
+                    RentalImportRow ligne = lignes.get(i);
+                    eventPublisher.publishEvent(new RentalSavedEvent(null, RentalDto.builder()
+                            .id(ids.get(i))
+                            .name(ligne.getName())
+                            .surface(ligne.getSurface())
+                            .price(ligne.getPrice())
+                            .picture(RentalService.IMAGE_PAR_DEFAUT)
+                            .description(ligne.getDescription())
+                            .ownerId(ownerId)
+                            .createdAt(temps)
+                            .updatedAt(temps)
+                            .build()));
+                }
+                rapport.addImported(lignes.size());
+            } catch (DataAccessException e) {
+                // Le lot est annulé en entier : chacune de ses lignes est signalée
+                logger.error("Exception : " + e);
+                for (Long numero : numeros) {
+                    rapport.addError(numero, "Insertion refusée par la base de données.");
+                }
+            }
+            lignes.clear();
+            numeros.clear();
+        }
+
+        // Insertion du lot en une seule exécution JDBC, en récupérant les identifiants générés dans l'ordre des lignes
+        private ConnectionCallback<List<Integer>> insertion(List<RentalImportRow> aInserer, Timestamp temps) {
+            return connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(INSERTION, Statement.RETURN_GENERATED_KEYS)) {
+                    for (RentalImportRow ligne : aInserer) {
+                        statement.setString(1, ligne.getName());
+                        statement.setDouble(2, ligne.getSurface());
+                        statement.setDouble(3, ligne.getPrice());
+                        statement.setString(4, RentalService.IMAGE_PAR_DEFAUT);
+                        if (ligne.getDescription() == null) {
+                            statement.setNull(5, Types.VARCHAR);
+                        } else {
+                            statement.setString(5, ligne.getDescription());
+                        }
+                        statement.setInt(6, ownerId);
+                        statement.setTimestamp(7, temps);
+                        statement.setTimestamp(8, temps);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    List<Integer> ids = new ArrayList<>(aInserer.size());
+                    try (ResultSet cles = statement.getGeneratedKeys()) {
+                        while (cles.next()) {
+                            ids.add(cles.getInt(1));
+                        }
+                    }
+                    return ids;
+                }
+            };
+        }
+    }
+}
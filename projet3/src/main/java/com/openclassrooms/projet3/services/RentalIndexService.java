@@ -0,0 +1,135 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.events.RentalSavedEvent;
+import com.openclassrooms.projet3.repositories.RentalRepository;
+import com.openclassrooms.projet3.search.InvertedIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tient à jour l'index de recherche plein texte des biens en location (nom et description). <br>
+ * L'index est construit au démarrage depuis la table RENTALS, puis mis à jour à chaque enregistrement d'un bien ({@link RentalSavedEvent}). <br>
+ * Sa taille est publiée sur /actuator/metrics (rentals.search.index.heap, .documents, .terms). <br>
+ * Comme pour les statistiques ({@link RentalStatisticsService}), les événements reçus pendant la construction sont mis
+ * en attente puis rejoués, et un événement n'est appliqué que s'il est postérieur à la version (updated_at) du bien lue :
+ * une ligne lue avant une modification n'écrase pas l'événement de cette modification, et inversement.
+ */
+@Service
+public class RentalIndexService {
+    private static final Logger logger = Logger.getLogger(RentalIndexService.class);
+
+    // --------------------------------------
+    // Injection de dépendances dans le service
+    // --------------------------------------
+    private final RentalRepository rentalRepository;
+    private final InvertedIndex index = new InvertedIndex();
+
+    // Événements reçus pendant la construction, rejoués à la fin ; null une fois l'index construit
+    private List<RentalSavedEvent> enAttente = new ArrayList<>();
+    private VersionsLues versionsLues = new VersionsLues();
+
+    // --------------------------------------
+    // Contrôleur
+    // --------------------------------------
+    public RentalIndexService(RentalRepository rentalRepository, MeterRegistry meterRegistry) {
+        this.rentalRepository = rentalRepository;
+
+        Gauge.builder("rentals.search.index.heap", index, InvertedIndex::estimateHeapBytes)
+                .description("Mémoire estimée de l'index de recherche des biens")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("rentals.search.index.documents", index, InvertedIndex::documentCount)
+                .description("Nombre de biens indexés")
+                .register(meterRegistry);
+        Gauge.builder("rentals.search.index.terms", index, InvertedIndex::termCount)
+                .description("Nombre de termes distincts indexés")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Construit l'index à partir de tous les biens, lus en flux (id, nom, description et version uniquement). <br>
+     * Appelé une fois l'application démarrée : les recherches reçues pendant la construction portent sur les biens déjà indexés.
+     * Les événements publiés pendant la lecture sont mis en attente, puis rejoués.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildIndex() {
+        long debut = System.currentTimeMillis();
+        VersionsLues versions = new VersionsLues();
+        try (Stream<Object[]> lignes = rentalRepository.streamIndexableText()) {
+            lignes.forEach(ligne -> {
+                versions.ajouter((Integer) ligne[0], (Timestamp) ligne[3]);
+                index.index((Integer) ligne[0], (String) ligne[1], (String) ligne[2]);
+            });
+        }
+        synchronized (this) {
+            versionsLues = versions;
+            for (RentalSavedEvent event : enAttente) {
+                appliquer(event);
+            }
+            enAttente = null;
+        }
+        index.compact();
+
+        logger.info("Index de recherche construit : " + index.documentCount() + " biens, " + index.termCount() + " termes, "
+                + index.estimateHeapBytes() / 1024 + " Ko estimés, en " + (System.currentTimeMillis() - debut) + " ms");
+    }
+
+    /**
+     * Indexe un bien qui vient d'être créé, modifié ou importé (remplace son entrée précédente).
+     *
+     * @param event L'événement publié après l'enregistrement du bien.
+     */
+    @EventListener
+    public synchronized void onRentalSaved(RentalSavedEvent event) {
+        if (enAttente != null) {
+            enAttente.add(event);
+            return;
+        }
+        appliquer(event);
+    }
+
+    /**
+     * Recherche les premiers biens dont le nom ou la description contient au moins un des termes demandés.
+     *
+     * @param q      Le texte recherché.
+     * @param limite Le nombre maximum de biens renvoyés.
+     * @return List<InvertedIndex.Hit> - Les biens trouvés, du plus pertinent au moins pertinent (BM25).
+     */
+    public List<InvertedIndex.Hit> search(String q, int limite) {
+        return index.search(q, limite);
+    }
+
+    /**
+     * Recherche les premiers biens classés après la position (score, id) du dernier résultat déjà lu.
+     *
+     * @param q        Le texte recherché.
+     * @param score    Le score du dernier résultat déjà lu.
+     * @param rentalId L'identifiant du dernier résultat déjà lu.
+     * @param limite   Le nombre maximum de biens renvoyés.
+     * @return List<InvertedIndex.Hit> - Les biens suivants, du plus pertinent au moins pertinent (BM25).
+     */
+    public List<InvertedIndex.Hit> searchAfter(String q, double score, int rentalId, int limite) {
+        return index.searchAfter(q, score, rentalId, limite);
+    }
+
+    // Remplace l'entrée du bien, sauf si la construction a déjà lu cette version ou une plus récente
+    private void appliquer(RentalSavedEvent event) {
+        RentalDto rental = event.getCurrent();
+        if (versionsLues.dejaLue(rental.getId(), rental.getUpdatedAt())) {
+            return;
+        }
+        index.index(rental.getId(), rental.getName(), rental.getDescription());
+    }
+}
@@ -1,64 +1,325 @@
 package com.openclassrooms.projet3.services;
 
+import com.openclassrooms.projet3.config.CacheConfig;
+import com.openclassrooms.projet3.dto.OwnerRentalDto;
 import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.dto.RentalSummaryDto;
 import com.openclassrooms.projet3.dto.UserDto;
+import com.openclassrooms.projet3.dto.VersionDto;
 import com.openclassrooms.projet3.entites.RentalEntity;
 import com.openclassrooms.projet3.entites.UserEntity;
+import com.openclassrooms.projet3.events.RentalSavedEvent;
 import com.openclassrooms.projet3.exception.ImageNotFoundException;
+import com.openclassrooms.projet3.exception.ImageTooLargeException;
+import com.openclassrooms.projet3.exception.UnsupportedImageTypeException;
 import com.openclassrooms.projet3.exception.RentalDoesNotExistException;
 import com.openclassrooms.projet3.exception.UserDoesNotExistException;
 import com.openclassrooms.projet3.mappers.RentalMapper;
 import com.openclassrooms.projet3.mappers.UserMapper;
+import com.openclassrooms.projet3.pagination.KeysetCursor;
+import com.openclassrooms.projet3.pagination.PageSize;
+import com.openclassrooms.projet3.pagination.RentalSort;
+import com.openclassrooms.projet3.projection.FieldSet;
 import com.openclassrooms.projet3.repositories.RentalRepository;
 import com.openclassrooms.projet3.repositories.UserRepository;
+import com.openclassrooms.projet3.search.InvertedIndex;
 import com.openclassrooms.projet3.request.RentalCreationRequest;
+import com.openclassrooms.projet3.request.RentalSearchRequest;
 import com.openclassrooms.projet3.request.RentalUpdateRequest;
+import com.openclassrooms.projet3.response.OwnerRentalsResponse;
 import com.openclassrooms.projet3.response.RentalResponse;
+import com.openclassrooms.projet3.response.RentalSearchResponse;
 import org.apache.log4j.Logger;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class RentalService {
     private static final Logger logger = Logger.getLogger(RentalService.class);
 
+    // Image associée aux biens créés (formulaire ou import)
+    static final String IMAGE_PAR_DEFAUT = "https://blog.technavio.org/wp-content/uploads/2018/12/Online-House-Rental-Sites.jpg";
+
+    // Recherche plein texte : nombre maximum de lots de candidats (2 x la taille de page) vérifiés en base par page
+    private static final int LOTS_PAR_PAGE = 4;
+
     // --------------------------------------
     // Injection de dépendances dans le service
     // --------------------------------------
     private final RentalRepository rentalRepository;
     private final UserRepository userRepository;
     private final ImageService imageService;
+    private final ImageVariantService imageVariantService;
+    private final RentalIndexService rentalIndexService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
     // --------------------------------------
     // Contrôleur
     // --------------------------------------
-    public RentalService(RentalRepository rentalRepository, UserRepository userRepository, ImageService imageService) {
+    public RentalService(RentalRepository rentalRepository, UserRepository userRepository, ImageService imageService,
+                         ImageVariantService imageVariantService, RentalIndexService rentalIndexService,
+                         ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
         this.rentalRepository = rentalRepository;
         this.userRepository = userRepository;
         this.imageService = imageService;
+        this.imageVariantService = imageVariantService;
+        this.rentalIndexService = rentalIndexService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    // --------------------------------------
-    // Méthode pour récupérer tous les biens en location
-    // --------------------------------------
-    public List<RentalDto> getAllRentals() {
-        return rentalRepository.findAll()
-                .stream()
-                .map(RentalMapper::mapToDto)
-                .collect(Collectors.toList());
+    /**
+     * Lit une page de biens en location, triée et paginée par clé (keyset), et la transmet ligne par ligne. <br>
+     * Les lignes sont lues en flux et projetées directement en RentalDto : aucune entité n'entre dans le contexte de persistance,
+     * la mémoire utilisée ne dépend pas du nombre de biens. <br>
+     * Seules les colonnes demandées sont lues, plus l'id et la colonne de tri qui servent au curseur. <br>
+     * Une ligne de plus que la taille demandée est lue pour savoir s'il existe une page suivante.
+     *
+     * @param sort     L'ordre de tri.
+     * @param apres    Le curseur renvoyé par la page précédente (null pour la première page).
+     * @param size     La taille de page demandée (bornée par {@link PageSize}).
+     * @param champs   Les champs demandés (paramètre "fields").
+     * @param consumer Le consommateur qui reçoit chaque bien de la page, dans l'ordre.
+     * @return String - Le curseur opaque de la page suivante, ou null s'il n'y en a pas.
+     * @throws IllegalArgumentException Si le curseur ne correspond pas à l'ordre de tri.
+     */
+    @Transactional(readOnly = true)
+    public String streamRentals(RentalSort sort, KeysetCursor apres, Integer size, FieldSet champs, Consumer<RentalDto> consumer) throws IllegalArgumentException {
+        int taille = PageSize.borner(size);
+        List<String> colonnes = champs.colonnes(RentalDto.CHAMPS, "id", sort.getParametre());
+
+        try (Stream<RentalDto> lignes = rentalRepository.streamPage(sort, apres, taille + 1, colonnes)) {
+            Iterator<RentalDto> iterator = lignes.iterator();
+            RentalDto derniere = null;
+            int transmis = 0;
+
+            while (iterator.hasNext()) {
+                RentalDto rentalDto = iterator.next();
+
+                // S'il reste une ligne au-delà de la page, on construit le curseur à partir de la dernière ligne transmise
+                if (transmis == taille) {
+                    return KeysetCursor.of(valeurDeTri(derniere, sort), derniere.getId()).encode();
+                }
+
+                consumer.accept(rentalDto);
+                derniere = rentalDto;
+                transmis++;
+            }
+            return null;
+        }
+    }
+
+    // Valeur de la colonne de tri d'un bien, utilisée pour construire le curseur
+    private Object valeurDeTri(RentalDto rentalDto, RentalSort sort) {
+        return switch (sort) {
+            case PRICE -> rentalDto.getPrice();
+            case SURFACE -> rentalDto.getSurface();
+            default -> rentalDto.getCreatedAt();
+        };
+    }
+
+    /**
+     * Lit une page des biens du propriétaire, avec pour chacun le nombre de messages reçus et la date du dernier message. <br>
+     * Les biens et leurs compteurs sont lus en une seule requête groupée, quel que soit le nombre de biens de la page. <br>
+     * Les biens les plus récents viennent en premier.
+     *
+     * @param currentUserId L'identifiant de l'utilisateur actuel.
+     * @param apres         Le curseur renvoyé par la page précédente (null pour la première page).
+     * @param size          La taille de page demandée (bornée par {@link PageSize}).
+     * @return OwnerRentalsResponse - Les biens de la page et le curseur de la page suivante.
+     * @throws IllegalArgumentException Si le curseur est invalide.
+     */
+    @Transactional(readOnly = true)
+    public OwnerRentalsResponse getOwnerRentals(String currentUserId, KeysetCursor apres, Integer size) throws IllegalArgumentException {
+        Integer ownerId = Integer.valueOf(currentUserId);
+        int taille = PageSize.borner(size);
+
+        // Une ligne de plus que la taille demandée est lue pour savoir s'il existe une page suivante
+        Pageable limite = PageRequest.ofSize(taille + 1);
+        List<OwnerRentalDto> resultats = apres == null
+                ? rentalRepository.findFirstPageByOwner(ownerId, limite)
+                : rentalRepository.findPageByOwnerAfter(ownerId, apres.getValeurAsTimestamp(), apres.getId(), limite);
+        if (resultats.size() <= taille) {
+            return new OwnerRentalsResponse(resultats, null);
+        }
+
+        List<OwnerRentalDto> page = new ArrayList<>(resultats.subList(0, taille));
+        OwnerRentalDto derniere = page.get(taille - 1);
+        return new OwnerRentalsResponse(page, KeysetCursor.of(derniere.getCreatedAt(), derniere.getId()).encode());
+    }
+
+    /**
+     * Recherche les biens en location par fourchette de prix et de surface, et éventuellement par propriétaire. <br>
+     * Sans texte recherché, les résultats sont paginés par clé sur (prix, surface, id) et lus par projection, sans la description. <br>
+     * Avec un texte recherché (q), les résultats sont classés par pertinence (index plein texte) et paginés par clé sur (score, id) ;
+     * une page peut alors contenir moins de résultats que demandé sans être la dernière (curseur renseigné).
+     *
+     * @param criteres Les critères de recherche (tous optionnels).
+     * @param apres    Le curseur renvoyé par la page précédente (null pour la première page).
+     * @param size     La taille de page demandée (bornée par {@link PageSize}).
+     * @return RentalSearchResponse - Les résultats de la page et le curseur de la page suivante.
+     * @throws IllegalArgumentException Si une fourchette est inversée ou si le curseur est invalide.
+     */
+    @Transactional(readOnly = true)
+    public RentalSearchResponse searchRentals(RentalSearchRequest criteres, KeysetCursor apres, Integer size) throws IllegalArgumentException {
+        if (isInvertedRange(criteres.getMinPrice(), criteres.getMaxPrice())) {
+            throw new IllegalArgumentException("Le prix minimum doit être inférieur ou égal au prix maximum.");
+        }
+        if (isInvertedRange(criteres.getMinSurface(), criteres.getMaxSurface())) {
+            throw new IllegalArgumentException("La surface minimum doit être inférieure ou égale à la surface maximum.");
+        }
+
+        int taille = PageSize.borner(size);
+        if (criteres.getQ() != null && !criteres.getQ().isBlank()) {
+            return searchRentalsByText(criteres, apres, taille);
+        }
+
+        // Une ligne de plus que la taille demandée est lue pour savoir s'il existe une page suivante
+        List<RentalSummaryDto> resultats = rentalRepository.searchByRange(criteres, apres, taille + 1);
+        if (resultats.size() <= taille) {
+            return new RentalSearchResponse(resultats, null);
+        }
+
+        List<RentalSummaryDto> page = new ArrayList<>(resultats.subList(0, taille));
+        RentalSummaryDto derniere = page.get(taille - 1);
+        String nextCursor = KeysetCursor.ofValeurs(derniere.getId(), derniere.getPrice(), derniere.getSurface()).encode();
+        return new RentalSearchResponse(page, nextCursor);
+    }
+
+    // Recherche plein texte : l'index classe les biens, la base applique les autres critères par lots de candidats.
+    // Au plus LOTS_PAR_PAGE lots sont lus : si les critères écartent presque tous les candidats, la page est renvoyée
+    // incomplète, avec le curseur du dernier candidat lu, et la suite est lue par la page suivante.
+    private RentalSearchResponse searchRentalsByText(RentalSearchRequest criteres, KeysetCursor apres, int taille) {
+        int tailleLot = 2 * taille;
+        int candidats = tailleLot * LOTS_PAR_PAGE;
+        // Reprise après le dernier résultat (ou candidat) de la page précédente, (score, id) du curseur ;
+        // un candidat de plus que ceux qui peuvent être lus, pour savoir s'il en reste après eux
+        List<InvertedIndex.Hit> hits = apres == null
+                ? rentalIndexService.search(criteres.getQ(), candidats + 1)
+                : rentalIndexService.searchAfter(criteres.getQ(), apres.getValeurAsDouble(0), apres.getId(), candidats + 1);
+
+        // Candidats lus par lots (dans l'ordre du classement) jusqu'à remplir la page et savoir s'il en existe une suivante
+        List<RentalSummaryDto> page = new ArrayList<>();
+        List<InvertedIndex.Hit> retenus = new ArrayList<>();
+        boolean pageSuivante = false;
+        int position = 0;
+        int lus = Math.min(hits.size(), candidats);
+        while (position < lus && !pageSuivante) {
+            List<InvertedIndex.Hit> lot = hits.subList(position, Math.min(lus, position + tailleLot));
+            position += lot.size();
+
+            Map<Integer, RentalSummaryDto> resumes = rentalRepository.findSummariesByIds(criteres,
+                            lot.stream().map(InvertedIndex.Hit::getRentalId).collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(RentalSummaryDto::getId, Function.identity()));
+
+            for (InvertedIndex.Hit hit : lot) {
+                RentalSummaryDto resume = resumes.get(hit.getRentalId());
+                if (resume == null) {
+                    continue;
+                }
+                if (page.size() == taille) {
+                    pageSuivante = true;
+                    break;
+                }
+                page.add(resume);
+                retenus.add(hit);
+            }
+        }
+
+        String nextCursor = null;
+        if (pageSuivante) {
+            InvertedIndex.Hit dernier = retenus.get(retenus.size() - 1);
+            nextCursor = KeysetCursor.ofValeurs(dernier.getRentalId(), dernier.getScore()).encode();
+        } else if (lus < hits.size()) {
+            // Page incomplète : la recherche reprendra après le dernier candidat lu
+            InvertedIndex.Hit dernier = hits.get(lus - 1);
+            nextCursor = KeysetCursor.ofValeurs(dernier.getRentalId(), dernier.getScore()).encode();
+        }
+        return new RentalSearchResponse(page, nextCursor);
+    }
+
+    // Enregistre le bien et, dans la même transaction, les contenus d'image qu'il utilise (RENTAL_IMAGES),
+    // pour que le nettoyage des images ne supprime jamais l'image d'un bien enregistré,
+    // et la nouvelle révision de la liste des biens (ETag de GET /api/rentals)
+    private RentalEntity enregistrer(RentalEntity rental) {
+        return transactionTemplate.execute(statut -> {
+            RentalEntity enregistre = rentalRepository.save(rental);
+            rentalRepository.incrementCollectionRevision();
+            rentalRepository.deleteImageHashes(enregistre.getId());
+            Stream.of(enregistre.getPicture(), enregistre.getPictureThumbnail(), enregistre.getPictureMedium(), enregistre.getPictureFull())
+                    .map(ImageService::empreinte)
+                    .flatMap(Optional::stream)
+                    .distinct()
+                    .forEach(hash -> rentalRepository.addImageHash(enregistre.getId(), hash));
+            return enregistre;
+        });
+    }
+
+    // Vrai si les deux bornes sont renseignées et que le minimum dépasse le maximum
+    private boolean isInvertedRange(Double min, Double max) {
+        return min != null && max != null && min > max;
     }
 
     // --------------------------------------
     // Méthode pour récupérer un bien en location par son ID
+    // Le résultat est mis en cache (borné en taille et en durée), invalidé par createRental et updateRental
+    // En cas d'absence du cache, lecture seule projetée en RentalDto
     // --------------------------------------
+    @Cacheable(cacheNames = CacheConfig.RENTALS_CACHE, key = "#id")
+    @Transactional(readOnly = true)
     public RentalDto getRentalById(Integer id) {
-        RentalEntity rentalEntity = rentalRepository.findById(id).orElseThrow(()-> new IllegalArgumentException("Rental not found"));
-        return RentalMapper.mapToDto(rentalEntity);
+        return rentalRepository.findDtoById(id).orElseThrow(()-> new IllegalArgumentException("Rental not found"));
+    }
+
+    // Relit le bien et remplace l'entrée du cache : utilisée quand le bien en cache est plus ancien que la version lue
+    // en base (lecture mise en cache juste après une modification, ou invalidation pas encore faite)
+    @CachePut(cacheNames = CacheConfig.RENTALS_CACHE, key = "#id")
+    @Transactional(readOnly = true)
+    public RentalDto refreshRentalById(Integer id) {
+        return rentalRepository.findDtoById(id).orElseThrow(()-> new IllegalArgumentException("Rental not found"));
+    }
+
+    /**
+     * Renvoie la version d'un bien en location (identifiant et date de mise à jour) sans le charger.
+     *
+     * @param id L'identifiant du bien.
+     * @return Optional<VersionDto> - La version du bien, vide si le bien n'existe pas.
+     */
+    public Optional<VersionDto> getRentalVersion(Integer id) {
+        return rentalRepository.findVersionById(id);
+    }
+
+    /**
+     * Renvoie la version de la liste des biens en location (plus grand identifiant, dernière mise à jour et révision de la liste).
+     *
+     * @return VersionDto - La version de la liste.
+     */
+    public VersionDto getRentalsVersion() {
+        return rentalRepository.findCollectionVersion();
     }
 
     /**
@@ -69,8 +330,8 @@ public class RentalService {
      * @param price   Le prix du bien en location.
      * @return true si tous les champs requis sont valides, sinon false.
      */
-    private boolean areValidRequestRentalFields(String name, Double surface, Double price){
-        return surface != null && price != null && !name.equals("") && surface > 0 && price > 0;
+    static boolean areValidRequestRentalFields(String name, Double surface, Double price){
+        return name != null && surface != null && price != null && !name.equals("") && surface > 0 && price > 0;
     }
 
     /**
@@ -81,9 +342,12 @@ public class RentalService {
      * @return L'entité du bien en location créé et enregistré dans la base de données.
      * @throws IllegalArgumentException Si toutes les informations requises ne sont pas fournies.
      * @throws IOException En cas d'erreur lors de l'accès ou de la manipulation d'un fichier.
+     * @throws ImageTooLargeException Si l'image envoyée dépasse la taille maximale.
+     * @throws UnsupportedImageTypeException Si l'image envoyée n'est pas une image JPEG, PNG, GIF ou WebP.
      * @throws UserDoesNotExistException Si l'utilisateur actuel n'existe pas dans la base de données.
      */
-    public RentalEntity createRental(RentalCreationRequest rentalRequest, String currentUserId) throws IllegalArgumentException {
+    @CacheEvict(cacheNames = CacheConfig.RENTALS_CACHE, key = "#result.id")
+    public RentalEntity createRental(RentalCreationRequest rentalRequest, String currentUserId) throws IllegalArgumentException, IOException {
         // Assure que les données requises sont fournies
         if (!areValidRequestRentalFields(rentalRequest.getName(), rentalRequest.getSurface(), rentalRequest.getPrice())) {
             throw new IllegalArgumentException("Toutes les informations requises ne sont pas renseignées. Merci de tout renseigner.");
@@ -92,22 +356,46 @@ public class RentalService {
         UserEntity currentUser = userRepository.findById(Integer.valueOf(currentUserId))
                 .orElseThrow(()->new UserDoesNotExistException("User does not exist."));
 
-        final String image = "https://blog.technavio.org/wp-content/uploads/2018/12/Online-House-Rental-Sites.jpg";
+        // Les dates sont renseignées ici : la pagination par date de création ne voit pas les lignes à NULL
+        Timestamp temps = Timestamp.valueOf(LocalDateTime.now());
+
+        // L'image envoyée est enregistrée et servie par GET /api/images/{name}, sinon l'image par défaut est utilisée
+        // Une image déjà envoyée par /api/uploads peut être désignée par son nom (pictureName)
+        String picture = IMAGE_PAR_DEFAUT;
+        String nomImage = null;
+        if (rentalRequest.getPicture() != null && !rentalRequest.getPicture().isEmpty()) {
+            nomImage = imageService.sauvegardeImageDansDossier(rentalRequest.getPicture());
+            picture = imageService.getUrl(nomImage);
+        } else if (rentalRequest.getPictureName() != null) {
+            nomImage = verifierImage(rentalRequest.getPictureName());
+            picture = imageService.getUrl(nomImage);
+        }
 
         // Création de l'objet RentalDto
         RentalDto rentalDto = RentalDto.builder()
                 .name(rentalRequest.getName())
                 .price(rentalRequest.getPrice())
-                .picture(image)
+                .picture(picture)
                 .surface(rentalRequest.getSurface())
                 .description(rentalRequest.getDescription())
                 .ownerId(currentUser.getId())
+                .createdAt(temps)
+                .updatedAt(temps)
                 .build();
 
         RentalEntity rentalEntity = RentalMapper.mapToEntity(rentalDto);
 
         // Enregistre le nouvel objet dans la base de données en utilisant la méthode du repository
-        return rentalRepository.save(rentalEntity);
+        RentalEntity savedRental = enregistrer(rentalEntity);
+
+        // Met à jour les vues en mémoire des biens (index de recherche, statistiques)
+        eventPublisher.publishEvent(new RentalSavedEvent(null, RentalMapper.mapToDto(savedRental)));
+
+        // Les variantes redimensionnées de l'image sont générées en arrière-plan, la création n'attend pas
+        if (nomImage != null) {
+            imageVariantService.planifier(savedRental.getId(), nomImage);
+        }
+        return savedRental;
     }
 
     /**
@@ -118,8 +406,10 @@ public class RentalService {
      * @return L'entité du bien en location mise à jour et enregistrée dans la base de données.
      * @throws IllegalArgumentException Si toutes les informations requises ne sont pas fournies.
      * @throws RentalDoesNotExistException Si le bien en location avec l'identifiant spécifié n'existe pas dans la base de données.
+     * @throws IOException En cas d'erreur de lecture de l'image désignée par pictureName.
      */
-    public RentalEntity updateRental(RentalUpdateRequest rentalUpdateRequest, Integer id) throws IllegalArgumentException, RentalDoesNotExistException {
+    @CacheEvict(cacheNames = CacheConfig.RENTALS_CACHE, key = "#id")
+    public RentalEntity updateRental(RentalUpdateRequest rentalUpdateRequest, Integer id) throws IllegalArgumentException, RentalDoesNotExistException, IOException {
         // Assure que les données requises sont fournies
         if (!areValidRequestRentalFields(rentalUpdateRequest.getName(), rentalUpdateRequest.getSurface(), rentalUpdateRequest.getPrice())) {
             throw new IllegalArgumentException("Toutes les informations requises ne sont pas renseignées. Merci de tout renseigner.");
@@ -135,6 +425,7 @@ public class RentalService {
 
         // Extraction de RentalEntity de l'intérieur de l'Optional
         RentalEntity bddRental = rentalEntityUpdate.get();
+        RentalDto avant = RentalMapper.mapToDto(bddRental);
 
         // Mise à jour du bien avec les nouvelles entrées
         bddRental.setName(rentalUpdateRequest.getName());
@@ -142,7 +433,46 @@ public class RentalService {
         bddRental.setSurface(rentalUpdateRequest.getSurface());
         bddRental.setDescription(rentalUpdateRequest.getDescription());
 
+        // Nouvelle image envoyée par /api/uploads : les anciennes variantes sont retirées et régénérées en arrière-plan
+        String nomImage = null;
+        List<String> remplacees = List.of();
+        if (rentalUpdateRequest.getPictureName() != null) {
+            remplacees = Stream.of(bddRental.getPicture(), bddRental.getPictureThumbnail(), bddRental.getPictureMedium(),
+                    bddRental.getPictureFull()).filter(Objects::nonNull).toList();
+            nomImage = verifierImage(rentalUpdateRequest.getPictureName());
+            bddRental.setPicture(imageService.getUrl(nomImage));
+            bddRental.setPictureThumbnail(null);
+            bddRental.setPictureMedium(null);
+            bddRental.setPictureFull(null);
+        }
+
+        // La date de mise à jour est renseignée ici : Hibernate réécrit la colonne, MySQL ne la met donc pas à jour
+        bddRental.setUpdatedAt(Timestamp.valueOf(LocalDateTime.now()));
+
         // Enregistre le nouvel objet dans la base de données en utilisant la méthode du repository
-        return rentalRepository.save(bddRental);
+        RentalEntity savedRental = enregistrer(bddRental);
+
+        // Met à jour les vues en mémoire des biens (index de recherche, statistiques)
+        eventPublisher.publishEvent(new RentalSavedEvent(avant, RentalMapper.mapToDto(savedRental)));
+
+        // L'ancienne image et ses variantes ne sont plus utilisées par ce bien : leurs références sont rendues
+        for (String url : remplacees) {
+            imageService.libererReference(url);
+        }
+
+        if (nomImage != null) {
+            imageVariantService.planifier(savedRental.getId(), nomImage);
+        }
+        return savedRental;
+    }
+
+    // Vérifie qu'une image désignée par son nom (pictureName) a bien été enregistrée
+    private String verifierImage(String nomImage) throws IOException {
+        try {
+            imageService.getImage(nomImage);
+            return nomImage;
+        } catch (ImageNotFoundException e) {
+            throw new IllegalArgumentException("Image inconnue : " + nomImage);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.dto.RentalDto;
+import com.openclassrooms.projet3.dto.RentalStatisticsDto;
+import com.openclassrooms.projet3.events.RentalSavedEvent;
+import com.openclassrooms.projet3.repositories.RentalRepository;
+import com.openclassrooms.projet3.statistics.FixedHistogram;
+import com.openclassrooms.projet3.statistics.QuantileSketch;
+import org.apache.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Statistiques de marché des biens en location, tenues à jour en mémoire. <br>
+ * Les esquisses sont alimentées au démarrage depuis la table RENTALS puis à chaque enregistrement d'un bien
+ * ({@link RentalSavedEvent}) : l'ancienne valeur d'un bien modifié est retirée avant d'ajouter la nouvelle. <br>
+ * Après chaque mise à jour, un instantané est recalculé (coût borné par le nombre de seaux, pas par le nombre de biens) :
+ * la lecture des statistiques ne fait que renvoyer cet instantané. <br>
+ * Les événements reçus avant la fin de l'alimentation sont mis en attente puis rejoués. Un événement n'est appliqué que
+ * si l'alimentation a lu une version (updated_at) du bien antérieure à la sienne : une modification enregistrée avant la
+ * lecture du bien mais publiée après n'est pas comptée deux fois. Les versions lues sont conservées (12 octets par bien).
+ */
+@Service
+public class RentalStatisticsService {
+    private static final Logger logger = Logger.getLogger(RentalStatisticsService.class);
+
+    private static final double PRECISION = 0.01;
+
+    // Bornes de l'histogramme des surfaces, en m²
+    private static final double[] BORNES_SURFACE = { 20, 40, 60, 80, 100, 150, 200, 300 };
+
+    // --------------------------------------
+    // Injection de dépendances dans le service
+    // --------------------------------------
+    private final RentalRepository rentalRepository;
+
+    // Esquisses protégées par le verrou de l'instance
+    private final QuantileSketch prix = new QuantileSketch(PRECISION);
+    private final QuantileSketch prixAuMetreCarre = new QuantileSketch(PRECISION);
+    private final FixedHistogram surfaces = new FixedHistogram(BORNES_SURFACE);
+    private double sommePrix;
+
+    // Événements reçus pendant l'alimentation, rejoués à la fin ; null une fois l'alimentation terminée
+    private List<RentalSavedEvent> enAttente = new ArrayList<>();
+    private VersionsLues versionsLues = new VersionsLues();
+
+    private volatile RentalStatisticsDto instantane;
+
+    // --------------------------------------
+    // Contrôleur
+    // --------------------------------------
+    public RentalStatisticsService(RentalRepository rentalRepository) {
+        this.rentalRepository = rentalRepository;
+        this.instantane = calculerInstantane();
+    }
+
+    /**
+     * Alimente les statistiques avec tous les biens, lus en flux (id, prix, surface et version uniquement). <br>
+     * La lecture se fait sans le verrou : les événements publiés pendant ce temps sont mis en attente, puis rejoués.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void seed() {
+        long debut = System.currentTimeMillis();
+        VersionsLues versions = new VersionsLues();
+        // Les esquisses ne sont pas modifiées par les événements tant que l'alimentation n'est pas terminée
+        try (Stream<Object[]> lignes = rentalRepository.streamPriceAndSurface()) {
+            lignes.forEach(ligne -> {
+                versions.ajouter((Integer) ligne[0], (Timestamp) ligne[3]);
+                ajouter((Double) ligne[1], (Double) ligne[2]);
+            });
+        }
+        synchronized (this) {
+            versionsLues = versions;
+            for (RentalSavedEvent event : enAttente) {
+                appliquer(event);
+            }
+            enAttente = null;
+            instantane = calculerInstantane();
+        }
+        logger.info("Statistiques des biens calculées : " + instantane.getCount() + " biens en "
+                + (System.currentTimeMillis() - debut) + " ms");
+    }
+
+    /**
+     * Met à jour les statistiques après l'enregistrement d'un bien.
+     *
+     * @param event L'événement publié après l'enregistrement du bien.
+     */
+    @EventListener
+    public synchronized void onRentalSaved(RentalSavedEvent event) {
+        if (enAttente != null) {
+            enAttente.add(event);
+            return;
+        }
+        appliquer(event);
+        instantane = calculerInstantane();
+    }
+
+    /**
+     * Renvoie les dernières statistiques calculées (sans calcul ni accès à la base).
+     *
+     * @return RentalStatisticsDto - Les statistiques de marché.
+     */
+    public RentalStatisticsDto getStatistics() {
+        return instantane;
+    }
+
+    // Retire l'ancienne valeur du bien et ajoute la nouvelle, sauf si l'alimentation a déjà lu cette version ou une plus récente
+    private void appliquer(RentalSavedEvent event) {
+        RentalDto apres = event.getCurrent();
+        if (versionsLues.dejaLue(apres.getId(), apres.getUpdatedAt())) {
+            return;
+        }
+        RentalDto avant = event.getPrevious();
+        if (avant != null) {
+            retirer(avant.getPrice(), avant.getSurface());
+        }
+        ajouter(apres.getPrice(), apres.getSurface());
+    }
+
+    // Un bien sans prix est ignoré ; sans surface, il ne compte que dans les prix
+    private void ajouter(Double price, Double surface) {
+        if (price == null || price <= 0) {
+            return;
+        }
+        prix.add(price);
+        sommePrix += price;
+        if (surface != null && surface > 0) {
+            prixAuMetreCarre.add(price / surface);
+            surfaces.add(surface);
+        }
+    }
+
+    private void retirer(Double price, Double surface) {
+        if (price == null || price <= 0) {
+            return;
+        }
+        prix.remove(price);
+        sommePrix -= price;
+        if (surface != null && surface > 0) {
+            prixAuMetreCarre.remove(price / surface);
+            surfaces.remove(surface);
+        }
+    }
+
+    private RentalStatisticsDto calculerInstantane() {
+        List<RentalStatisticsDto.Bucket> histogramme = new ArrayList<>();
+        for (int seau = 0; seau < surfaces.bucketCount(); seau++) {
+            histogramme.add(new RentalStatisticsDto.Bucket(surfaces.lowerBound(seau), surfaces.upperBound(seau), surfaces.count(seau)));
+        }
+        long nombre = prix.count();
+        return new RentalStatisticsDto(nombre,
+                nombre == 0 ? null : sommePrix / nombre,
+                percentiles(prix),
+                percentiles(prixAuMetreCarre),
+                histogramme);
+    }
+
+    private static RentalStatisticsDto.Percentiles percentiles(QuantileSketch esquisse) {
+        return new RentalStatisticsDto.Percentiles(esquisse.quantile(0.10), esquisse.quantile(0.25), esquisse.quantile(0.50),
+                esquisse.quantile(0.75), esquisse.quantile(0.90));
+    }
+}
@@ -0,0 +1,355 @@
+package com.openclassrooms.projet3.services;
+
+import com.openclassrooms.projet3.dto.UploadSessionDto;
+import com.openclassrooms.projet3.exception.ImageTooLargeException;
+import com.openclassrooms.projet3.exception.UploadSessionNotFoundException;
+import com.openclassrooms.projet3.request.UploadCreationRequest;
+import jakarta.annotation.PreDestroy;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Envois d'image en plusieurs morceaux, qui peuvent être repris après une coupure. <br>
+ * Un envoi réserve un fichier temporaire de la taille annoncée ; chaque morceau y est écrit à sa position
+ * (FileChannel.transferFrom), si bien que les morceaux peuvent arriver dans n'importe quel ordre, en parallèle,
+ * et être renvoyés. Une fois tous les morceaux reçus, le fichier est confié à ImageService. <br>
+ * Les envois sont gardés en mémoire ; un envoi inactif depuis uploads.expiry est abandonné et son fichier supprimé. <br>
+ * Le nombre d'envois ouverts est limité au total (uploads.max-sessions) et par utilisateur
+ * (uploads.max-sessions-per-user) ; la place est réservée par des compteurs atomiques avant la création du fichier,
+ * si bien que des ouvertures simultanées ne peuvent pas dépasser ces limites.
+ */
+@Service
+public class UploadService {
+    private static final Logger LOGGER = Logger.getLogger(UploadService.class);
+
+    private final ImageService imageService;
+    private final long tailleMaximum;
+    private final int tailleMorceau;
+    private final int envoisMaximum;
+    private final int envoisParUtilisateurMaximum;
+    private final Duration expiration;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Places réservées, au total et par utilisateur ; une place est rendue quand son envoi quitte sessions
+    private final AtomicInteger envoisEnCours = new AtomicInteger();
+    private final Map<String, Integer> envoisParUtilisateur = new ConcurrentHashMap<>();
+
+    // Taille maximale d'une image, taille d'un morceau, nombres d'envois simultanés et délai d'abandon lus dans application.properties
+    public UploadService(ImageService imageService,
+                         @Value("${images.max-size}") DataSize tailleMaximum,
+                         @Value("${uploads.chunk-size}") DataSize tailleMorceau,
+                         @Value("${uploads.max-sessions}") int envoisMaximum,
+                         @Value("${uploads.max-sessions-per-user}") int envoisParUtilisateurMaximum,
+                         @Value("${uploads.expiry}") Duration expiration) {
+        this.imageService = imageService;
+        this.tailleMaximum = tailleMaximum.toBytes();
+        this.tailleMorceau = (int) tailleMorceau.toBytes();
+        this.envoisMaximum = envoisMaximum;
+        this.envoisParUtilisateurMaximum = envoisParUtilisateurMaximum;
+        this.expiration = expiration;
+    }
+
+    /**
+     * Ouvre un envoi et réserve son fichier.
+     *
+     * @param proprietaire L'identifiant de l'utilisateur connecté.
+     * @param demande      Le nom et la taille du fichier.
+     * @return UploadSessionDto - L'envoi, avec la taille et le nombre de morceaux attendus.
+     * @throws IllegalArgumentException Si le nom ou la taille manquent.
+     * @throws ImageTooLargeException   Si l'image dépasse la taille maximale.
+     * @throws IllegalStateException    Si trop d'envois sont en cours, au total ou pour cet utilisateur.
+     * @throws IOException              En cas d'erreur de création du fichier.
+     */
+    public UploadSessionDto creer(String proprietaire, UploadCreationRequest demande) throws IOException {
+        if (demande.getFileName() == null || demande.getSize() == null || demande.getSize() <= 0) {
+            throw new IllegalArgumentException("Le nom et la taille du fichier sont requis.");
+        }
+        if (demande.getSize() > tailleMaximum) {
+            throw new ImageTooLargeException("L'image dépasse la taille maximale autorisée.");
+        }
+        reserver(proprietaire);
+
+        Path fichier = null;
+        try {
+            // La place est réservée dès l'ouverture : chaque morceau est ensuite écrit à sa position
+            fichier = imageService.fichierTemporaire("envoi-");
+            try (RandomAccessFile reservation = new RandomAccessFile(fichier.toFile(), "rw")) {
+                reservation.setLength(demande.getSize());
+            }
+            FileChannel canal = FileChannel.open(fichier, StandardOpenOption.WRITE);
+
+            int nombreMorceaux = (int) ((demande.getSize() + tailleMorceau - 1) / tailleMorceau);
+            Session session = new Session(UUID.randomUUID().toString(), proprietaire, demande.getFileName(), demande.getSize(),
+                    nombreMorceaux, fichier, canal);
+            sessions.put(session.id, session);
+            return session.versDto(tailleMorceau);
+        } catch (IOException | RuntimeException e) {
+            liberer(proprietaire);
+            if (fichier != null) {
+                Files.deleteIfExists(fichier);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Renvoie l'état d'un envoi, pour reprendre un envoi interrompu.
+     *
+     * @param id           L'identifiant de l'envoi.
+     * @param proprietaire L'identifiant de l'utilisateur connecté.
+     * @return UploadSessionDto - L'envoi et ses morceaux manquants.
+     * @throws UploadSessionNotFoundException Si l'envoi n'existe pas, est terminé ou appartient à un autre utilisateur.
+     */
+    public UploadSessionDto getSession(String id, String proprietaire) throws UploadSessionNotFoundException {
+        return session(id, proprietaire).versDto(tailleMorceau);
+    }
+
+    /**
+     * Écrit un morceau à sa position dans le fichier. Un morceau peut être renvoyé : il remplace le précédent.
+     *
+     * @param id           L'identifiant de l'envoi.
+     * @param proprietaire L'identifiant de l'utilisateur connecté.
+     * @param index        Le numéro du morceau, à partir de 0.
+     * @param contenu      Les octets du morceau.
+     * @return UploadSessionDto - L'envoi et ses morceaux manquants.
+     * @throws IllegalArgumentException       Si le numéro est invalide ou si le morceau n'a pas la taille attendue.
+     * @throws UploadSessionNotFoundException Si l'envoi n'existe pas, est terminé ou appartient à un autre utilisateur.
+     * @throws IOException                    En cas d'erreur de lecture ou d'écriture.
+     */
+    public UploadSessionDto ecrireMorceau(String id, String proprietaire, int index, InputStream contenu)
+            throws IOException, UploadSessionNotFoundException {
+        Session session = session(id, proprietaire);
+        if (index < 0 || index >= session.nombreMorceaux) {
+            throw new IllegalArgumentException("Numéro de morceau invalide : " + index);
+        }
+        long debut = (long) index * tailleMorceau;
+        long longueur = Math.min(tailleMorceau, session.taille - debut);
+
+        // Plusieurs morceaux peuvent être écrits en même temps ; la validation et l'abandon attendent qu'ils soient finis
+        session.verrou.readLock().lock();
+        try {
+            if (session.terminee) {
+                throw new UploadSessionNotFoundException("Envoi non trouvé.");
+            }
+            ReadableByteChannel source = Channels.newChannel(contenu);
+            long ecrits = 0;
+            while (ecrits < longueur) {
+                long transferes = session.canal.transferFrom(source, debut + ecrits, longueur - ecrits);
+                if (transferes == 0) {
+                    break;
+                }
+                ecrits += transferes;
+            }
+            if (ecrits < longueur || contenu.read() != -1) {
+                throw new IllegalArgumentException("Le morceau " + index + " doit faire " + longueur + " octets.");
+            }
+            session.recu(index);
+        } finally {
+            session.verrou.readLock().unlock();
+        }
+        return session.versDto(tailleMorceau);
+    }
+
+    /**
+     * Termine un envoi complet : le fichier est enregistré comme image.
+     *
+     * @param id           L'identifiant de l'envoi.
+     * @param proprietaire L'identifiant de l'utilisateur connecté.
+     * @return String - Le nom de l'image enregistrée.
+     * @throws IllegalStateException          S'il manque des morceaux.
+     * @throws UploadSessionNotFoundException Si l'envoi n'existe pas, est terminé ou appartient à un autre utilisateur.
+     * @throws IOException                    En cas d'erreur d'enregistrement.
+     */
+    public String valider(String id, String proprietaire) throws IOException, UploadSessionNotFoundException {
+        Session session = session(id, proprietaire);
+        session.verrou.writeLock().lock();
+        try {
+            if (session.terminee) {
+                throw new UploadSessionNotFoundException("Envoi non trouvé.");
+            }
+            List<Integer> manquants = session.manquants();
+            if (!manquants.isEmpty()) {
+                throw new IllegalStateException("Morceaux manquants : " + manquants);
+            }
+            session.terminee = true;
+            retirer(session);
+            session.canal.close();
+            return imageService.sauvegardeFichier(session.fichier);
+        } finally {
+            session.verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Abandonne un envoi et supprime son fichier.
+     *
+     * @param id           L'identifiant de l'envoi.
+     * @param proprietaire L'identifiant de l'utilisateur connecté.
+     * @throws UploadSessionNotFoundException Si l'envoi n'existe pas, est terminé ou appartient à un autre utilisateur.
+     */
+    public void annuler(String id, String proprietaire) throws UploadSessionNotFoundException {
+        Session session = session(id, proprietaire);
+        session.verrou.writeLock().lock();
+        try {
+            if (session.terminee) {
+                throw new UploadSessionNotFoundException("Envoi non trouvé.");
+            }
+            fermer(session);
+        } finally {
+            session.verrou.writeLock().unlock();
+        }
+    }
+
+    // Abandonne les envois inactifs ; un envoi en cours d'écriture est laissé pour le passage suivant
+    @Scheduled(fixedDelayString = "${uploads.cleanup-interval}")
+    public void nettoyer() {
+        Instant limite = Instant.now().minus(expiration);
+        int abandonnes = 0;
+        for (Session session : sessions.values()) {
+            if (session.derniereActivite.isBefore(limite) && session.verrou.writeLock().tryLock()) {
+                try {
+                    if (!session.terminee) {
+                        fermer(session);
+                        abandonnes++;
+                    }
+                } finally {
+                    session.verrou.writeLock().unlock();
+                }
+            }
+        }
+        if (abandonnes > 0) {
+            LOGGER.info(abandonnes + " envois abandonnés supprimés");
+        }
+    }
+
+    // Les envois ne survivent pas à un redémarrage : leurs fichiers sont supprimés à l'arrêt
+    @PreDestroy
+    public void arreter() {
+        for (Session session : sessions.values()) {
+            fermer(session);
+        }
+    }
+
+    private Session session(String id, String proprietaire) throws UploadSessionNotFoundException {
+        Session session = sessions.get(id);
+        // L'envoi d'un autre utilisateur est traité comme inexistant
+        if (session == null || !session.proprietaire.equals(proprietaire)) {
+            throw new UploadSessionNotFoundException("Envoi non trouvé.");
+        }
+        session.derniereActivite = Instant.now();
+        return session;
+    }
+
+    // Réserve une place au total puis pour l'utilisateur, sans dépasser les limites même en cas d'ouvertures simultanées
+    private void reserver(String proprietaire) {
+        if (envoisEnCours.incrementAndGet() > envoisMaximum) {
+            envoisEnCours.decrementAndGet();
+            throw new IllegalStateException("Trop d'envois en cours, merci de réessayer plus tard.");
+        }
+        try {
+            // Une exception levée dans compute laisse le compteur de l'utilisateur inchangé
+            envoisParUtilisateur.compute(proprietaire, (cle, nombre) -> {
+                if (nombre != null && nombre >= envoisParUtilisateurMaximum) {
+                    throw new IllegalStateException("Trop d'envois en cours pour cet utilisateur, merci d'en terminer un avant d'en commencer un autre.");
+                }
+                return nombre == null ? 1 : nombre + 1;
+            });
+        } catch (IllegalStateException e) {
+            envoisEnCours.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void liberer(String proprietaire) {
+        envoisParUtilisateur.computeIfPresent(proprietaire, (cle, nombre) -> nombre > 1 ? nombre - 1 : null);
+        envoisEnCours.decrementAndGet();
+    }
+
+    // Retire un envoi de sessions et rend sa place, une seule fois même si la validation et l'abandon se croisent
+    private void retirer(Session session) {
+        if (sessions.remove(session.id, session)) {
+            liberer(session.proprietaire);
+        }
+    }
+
+    private void fermer(Session session) {
+        session.terminee = true;
+        retirer(session);
+        try {
+            session.canal.close();
+            Files.deleteIfExists(session.fichier);
+        } catch (IOException e) {
+            LOGGER.error("Exception : " + e);
+        }
+    }
+
+    private static final class Session {
+        private final String id;
+        private final String proprietaire;
+        private final String nomFichier;
+        private final long taille;
+        private final int nombreMorceaux;
+        private final Path fichier;
+        private final FileChannel canal;
+
+        // Écriture des morceaux en lecture partagée, validation et abandon en exclusif
+        private final ReadWriteLock verrou = new ReentrantReadWriteLock();
+        private final BitSet recus = new BitSet();
+        private volatile boolean terminee;
+        private volatile Instant derniereActivite = Instant.now();
+
+        private Session(String id, String proprietaire, String nomFichier, long taille, int nombreMorceaux, Path fichier, FileChannel canal) {
+            this.id = id;
+            this.proprietaire = proprietaire;
+            this.nomFichier = nomFichier;
+            this.taille = taille;
+            this.nombreMorceaux = nombreMorceaux;
+            this.fichier = fichier;
+            this.canal = canal;
+        }
+
+        private void recu(int index) {
+            synchronized (recus) {
+                recus.set(index);
+            }
+        }
+
+        private List<Integer> manquants() {
+            List<Integer> manquants = new ArrayList<>();
+            synchronized (recus) {
+                for (int index = recus.nextClearBit(0); index < nombreMorceaux; index = recus.nextClearBit(index + 1)) {
+                    manquants.add(index);
+                }
+            }
+            return manquants;
+        }
+
+        private UploadSessionDto versDto(int tailleMorceau) {
+            return new UploadSessionDto(id, nomFichier, taille, tailleMorceau, nombreMorceaux, manquants());
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package com.openclassrooms.projet3.services;
 
 import com.openclassrooms.projet3.dto.UserDto;
-import com.openclassrooms.projet3.entites.UserEntity;
-import com.openclassrooms.projet3.mappers.UserMapper;
+import com.openclassrooms.projet3.projection.FieldSet;
 import com.openclassrooms.projet3.repositories.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class UserService {
@@ -23,19 +22,19 @@ public class UserService {
 
     // --------------------------------------
     // Méthode pour récupérer tous les utilisateurs
+    // Lecture seule projetée en UserDto, sans charger d'entité
+    // Seules les colonnes demandées (paramètre "fields") sont lues
     // --------------------------------------
-    public List<UserDto> getAllUsers() {
-        return userRepository.findAll()
-                .stream()
-                .map(UserMapper::mapToDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public List<UserDto> getAllUsers(FieldSet champs) {
+        return userRepository.findAllDtos(champs.colonnes(UserDto.CHAMPS));
     }
 
     // --------------------------------------
     // Méthode pour récupérer un utilisateur par son ID
     // --------------------------------------
+    @Transactional(readOnly = true)
     public UserDto getUserById(Integer id) throws Exception{
-        UserEntity userEntity = userRepository.findById(id).orElseThrow(()->new IllegalArgumentException("User not found"));
-        return UserMapper.mapToDto(userEntity);
+        return userRepository.findDtoById(id).orElseThrow(()->new IllegalArgumentException("User not found"));
     }
 }
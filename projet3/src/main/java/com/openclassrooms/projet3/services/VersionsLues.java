@@ -0,0 +1,40 @@
+package com.openclassrooms.projet3.services;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * Version (updated_at, en microsecondes) de chaque bien lue lors d'une lecture complète de la table RENTALS au démarrage. <br>
+ * Sert à ne pas appliquer un {@link com.openclassrooms.projet3.events.RentalSavedEvent} antérieur à la version déjà lue.
+ * Les biens doivent être ajoutés par id croissant (12 octets par bien).
+ */
+final class VersionsLues {
+    private int[] ids = new int[1024];
+    private long[] versions = new long[1024];
+    private int taille;
+
+    void ajouter(int id, Timestamp version) {
+        if (taille == ids.length) {
+            ids = Arrays.copyOf(ids, taille * 2);
+            versions = Arrays.copyOf(versions, taille * 2);
+        }
+        ids[taille] = id;
+        versions[taille] = version == null ? Long.MIN_VALUE : microsecondes(version);
+        taille++;
+    }
+
+    // Long.MIN_VALUE si le bien n'a pas été lu
+    long version(Integer id) {
+        int position = id == null ? -1 : Arrays.binarySearch(ids, 0, taille, id);
+        return position < 0 ? Long.MIN_VALUE : versions[position];
+    }
+
+    // true si la version lue du bien est égale ou postérieure à celle-ci
+    boolean dejaLue(Integer id, Timestamp version) {
+        return version != null && version(id) >= microsecondes(version);
+    }
+
+    static long microsecondes(Timestamp temps) {
+        return Math.floorDiv(temps.getTime(), 1000) * 1_000_000 + temps.getNanos() / 1000;
+    }
+}
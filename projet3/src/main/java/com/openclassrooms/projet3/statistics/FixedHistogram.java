@@ -0,0 +1,54 @@
+package com.openclassrooms.projet3.statistics;
+
+/**
+ * Histogramme à seaux fixes. <br>
+ * Les bornes sont données dans l'ordre croissant : le seau i compte les valeurs de [bornes[i-1], bornes[i]),
+ * le premier seau les valeurs inférieures à bornes[0] et le dernier les valeurs supérieures ou égales à la dernière borne. Non thread-safe.
+ */
+public final class FixedHistogram {
+    private final double[] bornes;
+    private final long[] compteurs;
+
+    public FixedHistogram(double... bornes) {
+        this.bornes = bornes.clone();
+        this.compteurs = new long[bornes.length + 1];
+    }
+
+    public void add(double valeur) {
+        compteurs[seauDe(valeur)]++;
+    }
+
+    // Retire une valeur précédemment ajoutée (sans effet si le seau est vide)
+    public void remove(double valeur) {
+        int seau = seauDe(valeur);
+        if (compteurs[seau] > 0) {
+            compteurs[seau]--;
+        }
+    }
+
+    private int seauDe(double valeur) {
+        int seau = 0;
+        while (seau < bornes.length && valeur >= bornes[seau]) {
+            seau++;
+        }
+        return seau;
+    }
+
+    public int bucketCount() {
+        return compteurs.length;
+    }
+
+    // Borne inférieure du seau, null pour le premier
+    public Double lowerBound(int seau) {
+        return seau == 0 ? null : bornes[seau - 1];
+    }
+
+    // Borne supérieure (exclue) du seau, null pour le dernier
+    public Double upperBound(int seau) {
+        return seau == bornes.length ? null : bornes[seau];
+    }
+
+    public long count(int seau) {
+        return compteurs[seau];
+    }
+}
@@ -0,0 +1,95 @@
+package com.openclassrooms.projet3.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Esquisse de quantiles à erreur relative bornée (principe de DDSketch). <br>
+ * Chaque valeur strictement positive est comptée dans un seau logarithmique [γ^(k-1), γ^k] avec γ = (1 + α) / (1 - α) :
+ * un quantile est restitué à α près en valeur relative (1 % par défaut), quel que soit le nombre de valeurs. <br>
+ * Contrairement à un t-digest, une valeur peut être retirée exactement, ce qui permet de suivre les modifications. <br>
+ * La mémoire dépend de l'étendue des valeurs (environ 115 seaux par facteur 10 à 1 %) et non de leur nombre. Non thread-safe.
+ */
+public final class QuantileSketch {
+    private final double gamma;
+    private final double logGamma;
+
+    // Compteurs des seaux indexMin .. indexMin + compteurs.length - 1
+    private long[] compteurs = new long[0];
+    private int indexMin;
+    private long total;
+
+    /**
+     * @param precisionRelative L'erreur relative maximale α sur les quantiles (ex : 0.01 pour 1 %).
+     */
+    public QuantileSketch(double precisionRelative) {
+        this.gamma = (1 + precisionRelative) / (1 - precisionRelative);
+        this.logGamma = Math.log(gamma);
+    }
+
+    // Les valeurs nulles, négatives ou absentes sont ignorées
+    public void add(double valeur) {
+        if (valeur > 0) {
+            int index = indexDe(valeur);
+            agrandir(index);
+            compteurs[index - indexMin]++;
+            total++;
+        }
+    }
+
+    // Retire une valeur précédemment ajoutée (sans effet si elle n'a pas été comptée)
+    public void remove(double valeur) {
+        if (valeur > 0) {
+            int index = indexDe(valeur);
+            int position = index - indexMin;
+            if (position >= 0 && position < compteurs.length && compteurs[position] > 0) {
+                compteurs[position]--;
+                total--;
+            }
+        }
+    }
+
+    public long count() {
+        return total;
+    }
+
+    /**
+     * Renvoie une approximation du quantile demandé.
+     *
+     * @param q Le rang du quantile, entre 0 et 1 (0.5 pour la médiane).
+     * @return Double - La valeur approchée, ou null si l'esquisse est vide.
+     */
+    public Double quantile(double q) {
+        if (total == 0) {
+            return null;
+        }
+        long rang = (long) Math.floor(q * (total - 1));
+        long cumul = 0;
+        for (int position = 0; position < compteurs.length; position++) {
+            cumul += compteurs[position];
+            if (cumul > rang) {
+                // Valeur représentative du seau : erreur relative au plus α sur tout le seau
+                return 2 * Math.pow(gamma, indexMin + position) / (gamma + 1);
+            }
+        }
+        return null;
+    }
+
+    private int indexDe(double valeur) {
+        return (int) Math.ceil(Math.log(valeur) / logGamma);
+    }
+
+    // Étend le tableau des compteurs pour couvrir l'index donné
+    private void agrandir(int index) {
+        if (compteurs.length == 0) {
+            compteurs = new long[1];
+            indexMin = index;
+        } else if (index < indexMin) {
+            long[] nouveaux = new long[compteurs.length + (indexMin - index)];
+            System.arraycopy(compteurs, 0, nouveaux, indexMin - index, compteurs.length);
+            compteurs = nouveaux;
+            indexMin = index;
+        } else if (index >= indexMin + compteurs.length) {
+            compteurs = Arrays.copyOf(compteurs, index - indexMin + 1);
+        }
+    }
+}
@@ -13,10 +13,15 @@ CREATE TABLE `RENTALS` (
   `surface` numeric,
   `price` numeric,
   `picture` varchar(255),
+  `picture_thumbnail` varchar(255),
+  `picture_medium` varchar(255),
+  `picture_full` varchar(255),
   `description` varchar(2000),
   `owner_id` integer NOT NULL,
-  `created_at` timestamp DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` timestamp DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `messages_archived_at` timestamp NULL,
+  `messages_archived_count` integer NOT NULL DEFAULT 0,
+  `created_at` timestamp(6) DEFAULT CURRENT_TIMESTAMP(6),
+  `updated_at` timestamp(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6)
 );
 
 CREATE TABLE `MESSAGES` (
@@ -25,11 +30,80 @@ CREATE TABLE `MESSAGES` (
   `user_id` integer,
   `message` varchar(2000),
   `created_at` timestamp DEFAULT CURRENT_TIMESTAMP,
+  `updated_at` timestamp(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6)
+);
+
+-- Résumé des conversations de la boîte de réception (/api/inbox) : une ligne par bien et par interlocuteur,
+-- mise à jour dans la transaction de chaque message ; owner_id est recopié du bien
+CREATE TABLE `CONVERSATIONS` (
+  `id` integer PRIMARY KEY AUTO_INCREMENT,
+  `rental_id` integer NOT NULL,
+  `owner_id` integer NOT NULL,
+  `user_id` integer NOT NULL,
+  `last_message` varchar(255),
+  `last_at` timestamp NOT NULL,
+  `unread_count` integer NOT NULL DEFAULT 0,
+  `created_at` timestamp DEFAULT CURRENT_TIMESTAMP,
+  `updated_at` timestamp DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Révision de chaque liste servie avec un ETag (/api/rentals, /api/messages), lue par clé primaire :
+-- incrémentée dans la transaction qui modifie la liste, elle remplace un COUNT(*) de la table à chaque lecture
+CREATE TABLE `COLLECTION_VERSIONS` (
+  `name` varchar(32) PRIMARY KEY,
+  `revision` bigint NOT NULL DEFAULT 0
+);
+INSERT INTO `COLLECTION_VERSIONS` (`name`) VALUES ('rentals'), ('messages');
+
+-- Images stockées par contenu (SHA-256) : une image envoyée plusieurs fois n'est écrite qu'une fois,
+-- ref_count compte les envois qui l'utilisent encore
+CREATE TABLE `IMAGES` (
+  `hash` char(64) PRIMARY KEY,
+  `size` bigint NOT NULL,
+  `content_type` varchar(32),
+  `ref_count` integer NOT NULL,
+  `created_at` timestamp DEFAULT CURRENT_TIMESTAMP,
   `updated_at` timestamp DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+-- Contenus d'image utilisés par chaque bien (picture et variantes), tenus à jour avec les colonnes d'URL :
+-- le nettoyage des images orphelines y cherche un lot d'empreintes par la clé primaire
+CREATE TABLE `RENTAL_IMAGES` (
+  `hash` char(64) NOT NULL,
+  `rental_id` integer NOT NULL,
+  PRIMARY KEY (`hash`, `rental_id`)
+);
+
 CREATE UNIQUE INDEX `USERS_index` ON `USERS` (`email`);
 
+-- Index de pagination par clé (keyset) de la liste des locations : (colonne de tri, id)
+CREATE INDEX `RENTALS_created_at_index` ON `RENTALS` (`created_at`, `id`);
+CREATE INDEX `RENTALS_price_index` ON `RENTALS` (`price`, `id`);
+CREATE INDEX `RENTALS_surface_index` ON `RENTALS` (`surface`, `id`);
+
+-- Index des versions de liste (ETag / Last-Modified) : MAX(updated_at) lu directement sur l'index
+CREATE INDEX `RENTALS_updated_at_index` ON `RENTALS` (`updated_at`);
+CREATE INDEX `MESSAGES_updated_at_index` ON `MESSAGES` (`updated_at`);
+
+-- Index de la recherche par fourchette (/api/rentals/search), triée par (price, surface, id)
+-- InnoDB ajoute la clé primaire à chaque index secondaire : l'id complète l'ordre sans être déclaré
+CREATE INDEX `RENTALS_price_surface_index` ON `RENTALS` (`price`, `surface`);
+-- Sert aussi d'index à la clé étrangère owner_id
+CREATE INDEX `RENTALS_owner_id_index` ON `RENTALS` (`owner_id`, `price`, `surface`);
+
+-- Tableau de bord du propriétaire (/api/rentals/mine) : ses biens par date de création,
+-- puis nombre de messages et dernier message par bien lus sur l'index (sert aussi à la clé étrangère rental_id)
+CREATE INDEX `RENTALS_owner_id_created_at_index` ON `RENTALS` (`owner_id`, `created_at`);
+-- Sert aussi à la pagination par clé des messages d'un bien (/api/rentals/:id/messages) sur (created_at, id)
+CREATE INDEX `MESSAGES_rental_id_created_at_index` ON `MESSAGES` (`rental_id`, `created_at`, `id`);
+-- Même pagination réduite aux messages d'un interlocuteur, qui ne lit que les siens
+CREATE INDEX `MESSAGES_rental_id_user_id_created_at_index` ON `MESSAGES` (`rental_id`, `user_id`, `created_at`, `id`);
+
+-- Une conversation par bien et par interlocuteur, retrouvée à chaque message (sert aussi à la clé étrangère rental_id)
+CREATE UNIQUE INDEX `CONVERSATIONS_rental_id_user_id_index` ON `CONVERSATIONS` (`rental_id`, `user_id`);
+-- Boîte de réception paginée par clé sur (last_at, id) : une page est un seul parcours de l'index (sert aussi à la clé étrangère owner_id)
+CREATE INDEX `CONVERSATIONS_owner_id_last_at_index` ON `CONVERSATIONS` (`owner_id`, `last_at`, `id`);
+
 -- ALTER TABLE `USERS` ADD FOREIGN KEY (`id`) REFERENCES `RENTALS` (`owner_id`);
 ALTER TABLE `RENTALS` ADD FOREIGN KEY (`owner_id`) REFERENCES `USERS` (`id`);
 
@@ -37,4 +111,12 @@ ALTER TABLE `RENTALS` ADD FOREIGN KEY (`owner_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `MESSAGES` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 
 -- ALTER TABLE `RENTALS` ADD FOREIGN KEY (`id`) REFERENCES `MESSAGES` (`rental_id`);
-ALTER TABLE `MESSAGES` ADD FOREIGN KEY (`rental_id`) REFERENCES `RENTALS` (`id`);
\ No newline at end of file
+ALTER TABLE `MESSAGES` ADD FOREIGN KEY (`rental_id`) REFERENCES `RENTALS` (`id`);
+
+ALTER TABLE `CONVERSATIONS` ADD FOREIGN KEY (`rental_id`) REFERENCES `RENTALS` (`id`);
+ALTER TABLE `CONVERSATIONS` ADD FOREIGN KEY (`owner_id`) REFERENCES `USERS` (`id`);
+ALTER TABLE `CONVERSATIONS` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
+
+-- Index de la clé étrangère rental_id : la mise à jour des images d'un bien supprime ses lignes par bien
+CREATE INDEX `RENTAL_IMAGES_rental_id_index` ON `RENTAL_IMAGES` (`rental_id`);
+ALTER TABLE `RENTAL_IMAGES` ADD FOREIGN KEY (`rental_id`) REFERENCES `RENTALS` (`id`);
\ No newline at end of file
@@ -0,0 +1,184 @@
+package com.openclassrooms.projet3.archive;
+
+import com.openclassrooms.projet3.dto.MessageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageArchiveTest {
+    // Taille d'une entrée d'index (voir MessageArchive)
+    private static final int TAILLE_ENTREE = 44 + 2048 / 8 + 4;
+
+    private static final Timestamp PLUS_RECENT = Timestamp.valueOf("2030-01-01 00:00:00");
+
+    @TempDir
+    Path dossier;
+
+    private final List<MessageArchive> ouvertes = new ArrayList<>();
+
+    @AfterEach
+    void fermer() throws IOException {
+        for (MessageArchive archive : ouvertes) {
+            archive.fermer();
+        }
+    }
+
+    @Test
+    void messagesRelusApresReouverture() throws Exception {
+        MessageArchive archive = ouvrir();
+        // Deux mois, plusieurs blocs par mois, deux biens
+        archive.ajouter(messages(1, 25, "2024-01-10 08:00:00"));
+        archive.ajouter(messages(26, 10, "2024-02-03 12:00:00"));
+        archive.fermer();
+
+        MessageArchive relue = ouvrir();
+        assertThat(Files.exists(dossier.resolve("messages-2024-01.seg"))).isTrue();
+        assertThat(relue.getMessage(14)).get().satisfies(message -> {
+            assertThat(message.getRentalId()).isEqualTo(2);
+            assertThat(message.getMessage()).isEqualTo("message 14");
+            assertThat(message.getCreatedAt()).isEqualTo(date("2024-01-10 08:00:00", 14));
+        });
+        assertThat(relue.getMessage(99)).isEmpty();
+
+        // Fil du bien 1, du plus récent au plus ancien, page par page
+        List<Integer> fil = new ArrayList<>();
+        Timestamp avantDate = null;
+        Integer avantId = null;
+        List<MessageDto> page;
+        do {
+            page = relue.getRentalMessages(1, null, PLUS_RECENT, avantDate, avantId, 4);
+            page.forEach(message -> fil.add(message.getId()));
+            if (!page.isEmpty()) {
+                avantDate = page.get(page.size() - 1).getCreatedAt();
+                avantId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 4);
+        assertThat(fil).containsExactly(35, 33, 31, 29, 27, 25, 23, 21, 19, 17, 15, 13, 11, 9, 7, 5, 3, 1);
+
+        // Réduit à un auteur : les messages des autres utilisateurs ne sont pas renvoyés
+        assertThat(relue.getRentalMessages(1, 7, PLUS_RECENT, null, null, 4)).hasSize(4);
+        assertThat(relue.getRentalMessages(1, 8, PLUS_RECENT, null, null, 4)).isEmpty();
+    }
+
+    @Test
+    void blocSansEntreeRetire() throws Exception {
+        MessageArchive archive = ouvrir();
+        archive.ajouter(messages(1, 10, "2024-01-10 08:00:00"));
+        archive.fermer();
+        Path segment = dossier.resolve("messages-2024-01.seg");
+        long taille = Files.size(segment);
+
+        // Arrêt pendant un archivage : bloc écrit, entrée d'index jamais écrite
+        Files.write(segment, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, StandardOpenOption.APPEND);
+
+        MessageArchive relue = ouvrir();
+        assertThat(Files.size(segment)).isEqualTo(taille);
+        assertThat(relue.getMessage(10)).isPresent();
+        relue.ajouter(messages(11, 5, "2024-01-20 08:00:00"));
+        relue.fermer();
+
+        MessageArchive apres = ouvrir();
+        assertThat(apres.getMessage(1)).isPresent();
+        assertThat(apres.getMessage(15)).get().extracting(MessageDto::getMessage).isEqualTo("message 15");
+    }
+
+    @Test
+    void entreeTronqueeRetiree() throws Exception {
+        MessageArchive archive = ouvrir();
+        archive.ajouter(messages(1, 10, "2024-03-01 08:00:00"));
+        archive.fermer();
+        Path index = dossier.resolve("messages-2024-03.idx");
+
+        // Entrée d'index à moitié écrite
+        Files.write(index, new byte[TAILLE_ENTREE / 2], StandardOpenOption.APPEND);
+
+        MessageArchive relue = ouvrir();
+        assertThat(Files.size(index) % TAILLE_ENTREE).isZero();
+        relue.ajouter(messages(11, 3, "2024-03-02 08:00:00"));
+        relue.fermer();
+
+        MessageArchive apres = ouvrir();
+        assertThat(apres.getMessage(5)).isPresent();
+        assertThat(apres.getMessage(13)).isPresent();
+    }
+
+    @Test
+    void entreeCorrompueRetireSonBloc() throws Exception {
+        MessageArchive archive = ouvrir();
+        archive.ajouter(messages(1, 8, "2024-04-01 08:00:00"));
+        archive.ajouter(messages(9, 8, "2024-04-02 08:00:00"));
+        archive.fermer();
+        Path index = dossier.resolve("messages-2024-04.idx");
+        Path segment = dossier.resolve("messages-2024-04.seg");
+        long tailleIndex = Files.size(index);
+
+        // Un octet modifié dans la dernière entrée (bloc des messages 13 à 16) : son CRC ne correspond plus
+        inverserOctet(index, tailleIndex - TAILLE_ENTREE + 20);
+
+        MessageArchive relue = ouvrir();
+        assertThat(relue.getMessage(12)).isPresent();
+        assertThat(relue.getMessage(13)).isEmpty();
+        assertThat(Files.size(index)).isEqualTo(tailleIndex - TAILLE_ENTREE);
+        assertThat(Files.size(segment)).isEqualTo(relue.taille());
+    }
+
+    @Test
+    void blocCorrompuSignaleALaLecture() throws Exception {
+        MessageArchive archive = ouvrir();
+        archive.ajouter(messages(1, 8, "2024-05-01 08:00:00"));
+        archive.fermer();
+        inverserOctet(dossier.resolve("messages-2024-05.seg"), 10);
+
+        MessageArchive relue = ouvrir();
+        assertThatThrownBy(() -> relue.getMessage(3)).isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("Bloc corrompu");
+    }
+
+    private MessageArchive ouvrir() throws IOException {
+        MessageArchive archive = new MessageArchive(dossier.toString(), 4, 16, new SimpleMeterRegistry());
+        ouvertes.add(archive);
+        return archive;
+    }
+
+    // Messages d'identifiants consécutifs, une seconde d'écart, alternativement sur les biens 1 et 2
+    private static List<MessageDto> messages(int premier, int nombre, String debut) {
+        List<MessageDto> messages = new ArrayList<>();
+        for (int id = premier; id < premier + nombre; id++) {
+            Timestamp date = date(debut, id);
+            messages.add(MessageDto.builder().id(id).rentalId(id % 2 == 1 ? 1 : 2).userId(7)
+                    .message("message " + id).createdAt(date).updatedAt(date).build());
+        }
+        return messages;
+    }
+
+    private static Timestamp date(String debut, int id) {
+        Timestamp date = new Timestamp(Timestamp.valueOf(debut).getTime() + id * 1000L);
+        // Les nanosecondes sont relues exactement
+        date.setNanos(123_456_789);
+        return date;
+    }
+
+    private static void inverserOctet(Path fichier, long position) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer octet = ByteBuffer.allocate(1);
+            canal.read(octet, position);
+            octet.put(0, (byte) ~octet.get(0)).rewind();
+            canal.write(octet, position);
+        }
+    }
+}
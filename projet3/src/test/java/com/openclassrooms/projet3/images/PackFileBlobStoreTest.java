@@ -0,0 +1,166 @@
+package com.openclassrooms.projet3.images;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackFileBlobStoreTest {
+    // Taille de l'en-tête d'un enregistrement et valeur de sa marque (voir PackFileBlobStore)
+    private static final int TAILLE_EN_TETE = 49;
+    private static final int MARQUE = 0x424C4F42;
+
+    private static final long TAILLE_SEGMENT = 64 * 1024;
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void contenusRelusApresReouverture() throws Exception {
+        String a = ajouter("premier contenu");
+        String b = ajouter("second contenu");
+        String supprime = ajouter("contenu supprimé");
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(store.put(a, fichier("premier contenu"))).isTrue();
+            assertThat(store.put(a, fichier("premier contenu"))).isFalse();
+            store.put(b, fichier("second contenu"));
+            store.put(supprime, fichier("contenu supprimé"));
+            store.delete(supprime);
+        }
+
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(lire(store, a)).isEqualTo("premier contenu");
+            assertThat(lire(store, b)).isEqualTo("second contenu");
+            assertThat(store.stat(supprime)).isEmpty();
+            assertThat(store.list()).containsExactlyInAnyOrder(a, b);
+        }
+    }
+
+    @Test
+    void enregistrementInterrompuIgnoreEtPlaceReutilisee() throws Exception {
+        String a = ajouter("avant la coupure");
+        try (PackFileBlobStore store = ouvrir()) {
+            store.put(a, fichier("avant la coupure"));
+        }
+        int fin = TAILLE_EN_TETE + "avant la coupure".length();
+
+        // Coupure pendant un ajout : en-tête et contenu écrits, mais pas la marque
+        String interrompu = empreinte("jamais confirmé");
+        ecrireEnregistrement(fin, interrompu, "jamais confirmé", false);
+
+        String c = ajouter("après la coupure");
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(store.stat(interrompu)).isEmpty();
+            assertThat(store.list()).containsExactly(a);
+            store.put(c, fichier("après la coupure"));
+            assertThat(store.stat(c)).get().extracting(Blob::getPosition).isEqualTo((long) fin + TAILLE_EN_TETE);
+        }
+
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(lire(store, a)).isEqualTo("avant la coupure");
+            assertThat(lire(store, c)).isEqualTo("après la coupure");
+            assertThat(store.list()).containsExactlyInAnyOrder(a, c);
+        }
+    }
+
+    @Test
+    void ancienneMarqueEffaceeParUnAjoutPlusCourt() throws Exception {
+        String a = ajouter("début");
+        try (PackFileBlobStore store = ouvrir()) {
+            store.put(a, fichier("début"));
+        }
+        int fin = TAILLE_EN_TETE + "début".getBytes(StandardCharsets.UTF_8).length;
+
+        // Restes d'un segment réutilisé : un enregistrement marqué juste après la place du prochain ajout
+        String court = ajouter("court");
+        int apresCourt = fin + TAILLE_EN_TETE + "court".length();
+        String fantome = empreinte("fantôme");
+        ecrireEnregistrement(apresCourt, fantome, "fantôme", true);
+
+        try (PackFileBlobStore store = ouvrir()) {
+            // Sans marque à la position fin, le reste du segment n'est pas relu
+            assertThat(store.stat(fantome)).isEmpty();
+            store.put(court, fichier("court"));
+        }
+
+        // L'ajout a effacé la marque qui le suivait : l'enregistrement fantôme ne réapparaît pas
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(store.list()).containsExactlyInAnyOrder(a, court);
+            assertThat(store.stat(fantome)).isEmpty();
+        }
+    }
+
+    @Test
+    void tailleInvalideArreteLaRelecture() throws Exception {
+        String a = ajouter("valide");
+        try (PackFileBlobStore store = ouvrir()) {
+            store.put(a, fichier("valide"));
+        }
+        int fin = TAILLE_EN_TETE + "valide".length();
+        try (FileChannel canal = FileChannel.open(segment(), StandardOpenOption.WRITE)) {
+            ByteBuffer enTete = ByteBuffer.allocate(TAILLE_EN_TETE);
+            enTete.putInt(0, MARQUE).put(4, (byte) 1).putInt(45, Integer.MAX_VALUE);
+            canal.write(enTete, fin);
+        }
+
+        String b = ajouter("suivant");
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(store.list()).containsExactly(a);
+            store.put(b, fichier("suivant"));
+        }
+        try (PackFileBlobStore store = ouvrir()) {
+            assertThat(store.list()).containsExactlyInAnyOrder(a, b);
+        }
+    }
+
+    private PackFileBlobStore ouvrir() throws IOException {
+        return new PackFileBlobStore(dossier.resolve("pack"), TAILLE_SEGMENT, 4096, new FileSystemBlobStore(dossier.resolve("gros")));
+    }
+
+    private Path segment() {
+        return dossier.resolve("pack").resolve("segment-000001.pack");
+    }
+
+    // Empreinte d'un contenu, dont le fichier est préparé pour put
+    private String ajouter(String contenu) throws Exception {
+        fichier(contenu);
+        return empreinte(contenu);
+    }
+
+    private Path fichier(String contenu) throws IOException {
+        Path fichier = dossier.resolve("source-" + Integer.toHexString(contenu.hashCode()));
+        return Files.write(fichier, contenu.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String empreinte(String contenu) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenu.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Écrit un enregistrement directement dans le segment, avec ou sans sa marque
+    private void ecrireEnregistrement(int position, String hash, String contenu, boolean marque) throws IOException {
+        byte[] octets = contenu.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer enregistrement = ByteBuffer.allocate(TAILLE_EN_TETE + octets.length);
+        enregistrement.putInt(marque ? MARQUE : 0).put((byte) 1).put(HexFormat.of().parseHex(hash))
+                .putLong(System.currentTimeMillis()).putInt(octets.length).put(octets).flip();
+        try (FileChannel canal = FileChannel.open(segment(), StandardOpenOption.WRITE)) {
+            canal.write(enregistrement, position);
+        }
+    }
+
+    private static String lire(PackFileBlobStore store, String hash) throws IOException {
+        try (InputStream contenu = store.get(hash)) {
+            return new String(contenu.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.openclassrooms.projet3.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void allerRetourDate() {
+        Timestamp date = Timestamp.valueOf("2026-03-14 15:09:26.535");
+
+        KeysetCursor curseur = KeysetCursor.decode(KeysetCursor.of(date, 42).encode());
+
+        assertThat(curseur.getId()).isEqualTo(42);
+        assertThat(curseur.getValeurAsTimestamp()).isEqualTo(date);
+        assertThat(curseur.isValeurNulle()).isFalse();
+    }
+
+    @Test
+    void allerRetourPlusieursColonnes() {
+        KeysetCursor curseur = KeysetCursor.decode(KeysetCursor.ofValeurs(7, 1250.5, 48.0).encode());
+
+        assertThat(curseur.getId()).isEqualTo(7);
+        assertThat(curseur.getValeurAsDouble(0)).isEqualTo(1250.5);
+        assertThat(curseur.getValeurAsDouble(1)).isEqualTo(48.0);
+    }
+
+    @Test
+    void allerRetourValeurNulle() {
+        KeysetCursor curseur = KeysetCursor.decode(KeysetCursor.ofValeurs(9, null, 30.0).encode());
+
+        assertThat(curseur.getId()).isEqualTo(9);
+        assertThat(curseur.isValeurNulle(0)).isTrue();
+        assertThat(curseur.isValeurNulle(1)).isFalse();
+        assertThat(curseur.getValeurAsDouble(1)).isEqualTo(30.0);
+        // Les lectures typées refusent la valeur NULL : seuls les tris qui l'acceptent la testent avant
+        assertThatThrownBy(() -> curseur.getValeurAsDouble(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(KeysetCursor.of(null, 9).encode()).getValeurAsTimestamp())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void curseurAbsent() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode(" ")).isNull();
+    }
+
+    @Test
+    void curseurMalForme() {
+        assertThatThrownBy(() -> KeysetCursor.decode("pas du base64 !")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Curseur de pagination invalide.");
+        assertThatThrownBy(() -> KeysetCursor.decode(encoder("12345"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encoder("12345|abc"))).isInstanceOf(IllegalArgumentException.class);
+
+        // Un curseur décodable mais dont la valeur n'est pas lisible est refusé à la lecture
+        KeysetCursor modifie = KeysetCursor.decode(encoder("douze|3"));
+        assertThatThrownBy(modifie::getValeurAsTimestamp).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(modifie::getValeurAsDouble).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> modifie.getValeurAsDouble(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> modifie.isValeurNulle(1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void verificationParOrdreDeTri() {
+        KeysetCursor date = KeysetCursor.of(Timestamp.valueOf("2026-01-01 00:00:00"), 1);
+        KeysetCursor nulle = KeysetCursor.decode(KeysetCursor.of(null, 1).encode());
+        KeysetCursor texte = KeysetCursor.decode(encoder("abc|1"));
+
+        RentalSort.CREATED_AT.verifier(date);
+        RentalSort.PRICE.verifier(KeysetCursor.decode(KeysetCursor.of(99.0, 1).encode()));
+        RentalSort.SURFACE.verifier(nulle);
+        RentalSort.CREATED_AT.verifier(nulle);
+        assertThatThrownBy(() -> RentalSort.PRICE.verifier(texte)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String encoder(String brut) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+}
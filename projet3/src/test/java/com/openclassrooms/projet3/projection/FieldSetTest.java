@@ -0,0 +1,58 @@
+package com.openclassrooms.projet3.projection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.projet3.dto.RentalDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FieldSetTest {
+
+    @Test
+    void sansParametreTousLesChamps() {
+        assertThat(FieldSet.parse(null, RentalDto.CHAMPS)).isSameAs(FieldSet.TOUS);
+        assertThat(FieldSet.parse("  ", RentalDto.CHAMPS)).isSameAs(FieldSet.TOUS);
+        // Une liste sans aucun nom revient à ne rien demander
+        assertThat(FieldSet.parse(" , ,", RentalDto.CHAMPS)).isSameAs(FieldSet.TOUS);
+        assertThat(FieldSet.TOUS.colonnes(RentalDto.CHAMPS, "id")).isEqualTo(RentalDto.CHAMPS);
+    }
+
+    @Test
+    void champsDemandes() {
+        FieldSet champs = FieldSet.parse("price, name ,,id,name", RentalDto.CHAMPS);
+
+        assertThat(champs.isComplet()).isFalse();
+        // Les colonnes suivent l'ordre de la ressource, sans doublon, quel que soit l'ordre demandé
+        assertThat(champs.colonnes(RentalDto.CHAMPS)).containsExactly("id", "name", "price");
+        // Les colonnes nécessaires au serveur (curseur) sont ajoutées
+        assertThat(champs.colonnes(RentalDto.CHAMPS, "id", "createdAt")).containsExactly("id", "name", "price", "createdAt");
+    }
+
+    @Test
+    void champInconnu() {
+        assertThatThrownBy(() -> FieldSet.parse("id,password", RentalDto.CHAMPS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Champ inconnu : password");
+        // La casse compte : les noms sont ceux des propriétés JSON
+        assertThatThrownBy(() -> FieldSet.parse("Name", RentalDto.CHAMPS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void filtreDeSerialisation() throws Exception {
+        RentalDto rental = new RentalDto();
+        rental.setId(3);
+        rental.setName("Studio");
+        rental.setPrice(450.0);
+        ObjectMapper mapper = new ObjectMapper();
+
+        String partiel = mapper.writer(FieldSet.parse("name", RentalDto.CHAMPS).getFilterProvider())
+                .writeValueAsString(List.of(rental));
+        String complet = mapper.writer(FieldSet.TOUS.getFilterProvider()).writeValueAsString(rental);
+
+        assertThat(partiel).isEqualTo("[{\"name\":\"Studio\"}]");
+        assertThat(complet).contains("\"id\":3", "\"name\":\"Studio\"", "\"price\":450.0");
+    }
+}
@@ -0,0 +1,132 @@
+package com.openclassrooms.projet3.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class InvertedIndexTest {
+
+    @Test
+    void scoreBm25() {
+        InvertedIndex index = new InvertedIndex();
+        index.index(1, "piscine jardin");
+        index.index(2, "jardin");
+
+        // N = 2, df = 1 : idf = ln(1 + 1.5 / 1.5) ; longueur 2 pour une moyenne de 1.5
+        double idf = Math.log(2);
+        double normalisation = 1.2 * (1 - 0.75 + 0.75 * 2 / 1.5);
+        List<InvertedIndex.Hit> hits = index.search("piscine");
+
+        assertThat(hits).extracting(InvertedIndex.Hit::getRentalId).containsExactly(1);
+        assertThat(hits.get(0).getScore()).isCloseTo(idf * 2.2 / (1 + normalisation), within(1e-9));
+    }
+
+    @Test
+    void classementParPertinence() {
+        InvertedIndex index = new InvertedIndex();
+        index.index(1, "appartement lumineux");
+        index.index(2, "appartement lumineux lumineux");
+        index.index(3, "maison calme");
+        index.index(4, "appartement", "vue sur mer");
+
+        // Les biens qui contiennent les deux termes d'abord ; à fréquence égale, le texte le plus court
+        assertThat(index.search("appartement mer")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(4, 1, 2);
+        // Le terme rare "calme" pèse plus que le terme fréquent "appartement"
+        assertThat(index.search("appartement calme")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(3, 1, 2, 4);
+        // La fréquence du terme l'emporte ici sur la longueur du texte
+        assertThat(index.search("lumineux")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(2, 1);
+        assertThat(index.search("chateau")).isEmpty();
+    }
+
+    @Test
+    void egaliteDepartageeParIdentifiant() {
+        InvertedIndex index = new InvertedIndex();
+        index.index(7, "studio");
+        index.index(3, "studio");
+        index.index(5, "studio");
+
+        assertThat(index.search("studio")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(3, 5, 7);
+    }
+
+    @Test
+    void accentsEtMajusculesIgnores() {
+        InvertedIndex index = new InvertedIndex();
+        index.index(1, "Dernier ÉTAGE avec terrasse");
+
+        assertThat(index.search("etage")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(1);
+        assertThat(index.search("Étage")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(1);
+        // Les mots vides ne sont pas indexés
+        assertThat(index.search("avec")).isEmpty();
+    }
+
+    @Test
+    void suppressionEtRemplacement() {
+        InvertedIndex index = new InvertedIndex();
+        index.index(1, "loft industriel");
+        index.index(2, "loft moderne");
+
+        index.remove(1);
+        assertThat(index.search("loft")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(2);
+        assertThat(index.search("industriel")).isEmpty();
+        assertThat(index.documentCount()).isEqualTo(1);
+
+        // Réindexer un bien remplace son ancien texte
+        index.index(2, "duplex");
+        assertThat(index.search("loft")).isEmpty();
+        assertThat(index.search("duplex")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(2);
+        assertThat(index.documentCount()).isEqualTo(1);
+
+        // Supprimer un bien absent est sans effet
+        index.remove(42);
+        assertThat(index.documentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void compactageConserveLesResultats() {
+        InvertedIndex index = new InvertedIndex();
+        for (int id = 0; id < 3000; id++) {
+            index.index(id, "bien" + id, id % 2 == 0 ? "pair" : "impair");
+        }
+        List<InvertedIndex.Hit> avant = index.search("impair", 10);
+
+        // Plus de 1000 suppressions et plus du quart des documents : le compactage est déclenché à l'indexation suivante
+        for (int id = 0; id < 3000; id += 2) {
+            index.remove(id);
+        }
+        index.index(5000, "bien5000 impair");
+
+        assertThat(index.documentCount()).isEqualTo(1501);
+        assertThat(index.search("pair")).isEmpty();
+        assertThat(index.search("bien2")).isEmpty();
+        assertThat(index.search("bien3")).extracting(InvertedIndex.Hit::getRentalId).containsExactly(3);
+        assertThat(index.search("impair")).hasSize(1501);
+        assertThat(index.search("impair", 10)).extracting(InvertedIndex.Hit::getRentalId)
+                .containsExactlyElementsOf(avant.stream().map(InvertedIndex.Hit::getRentalId).toList());
+
+        // Les termes des seuls biens supprimés disparaissent au compactage : restent "bien" + id impair, "bien5000" et "impair"
+        index.compact();
+        assertThat(index.termCount()).isEqualTo(1500 + 2);
+    }
+
+    @Test
+    void pageSuivanteApresUnResultat() {
+        InvertedIndex index = new InvertedIndex();
+        for (int id = 1; id <= 50; id++) {
+            index.index(id, "jardin " + "fleuri ".repeat(id % 5), "terrain" + (id % 3));
+        }
+        List<InvertedIndex.Hit> tout = index.search("jardin fleuri");
+
+        List<InvertedIndex.Hit> lus = new ArrayList<>(index.search("jardin fleuri", 7));
+        while (lus.size() < tout.size()) {
+            InvertedIndex.Hit dernier = lus.get(lus.size() - 1);
+            lus.addAll(index.searchAfter("jardin fleuri", dernier.getScore(), dernier.getRentalId(), 7));
+        }
+
+        assertThat(lus).extracting(InvertedIndex.Hit::getRentalId)
+                .containsExactlyElementsOf(tout.stream().map(InvertedIndex.Hit::getRentalId).toList());
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.projet3.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantileSketchTest {
+
+    private static final double[] RANGS = { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1 };
+
+    @Test
+    void erreurRelativeBornee() {
+        Random aleatoire = new Random(20261018);
+        double[] valeurs = new double[100_000];
+        for (int i = 0; i < valeurs.length; i++) {
+            // Loi log-normale : des prix de quelques euros à plusieurs dizaines de milliers
+            valeurs[i] = Math.exp(7 + 1.5 * aleatoire.nextGaussian());
+        }
+        for (double precision : new double[] { 0.01, 0.05 }) {
+            QuantileSketch esquisse = new QuantileSketch(precision);
+            Arrays.stream(valeurs).forEach(esquisse::add);
+            verifierBornes(esquisse, valeurs, precision);
+        }
+    }
+
+    @Test
+    void erreurBorneeSurUneLargeEtendue() {
+        double[] valeurs = new double[10_000];
+        for (int i = 0; i < valeurs.length; i++) {
+            valeurs[i] = Math.pow(10, -3 + 9.0 * i / valeurs.length);
+        }
+        QuantileSketch esquisse = new QuantileSketch(0.01);
+        Arrays.stream(valeurs).forEach(esquisse::add);
+
+        verifierBornes(esquisse, valeurs, 0.01);
+    }
+
+    @Test
+    void retraitExact() {
+        Random aleatoire = new Random(7);
+        double[] valeurs = aleatoire.doubles(20_000, 1, 5_000).toArray();
+        QuantileSketch esquisse = new QuantileSketch(0.01);
+        QuantileSketch restantes = new QuantileSketch(0.01);
+        for (int i = 0; i < valeurs.length; i++) {
+            esquisse.add(valeurs[i]);
+            if (i % 3 != 0) {
+                restantes.add(valeurs[i]);
+            }
+        }
+        for (int i = 0; i < valeurs.length; i += 3) {
+            esquisse.remove(valeurs[i]);
+        }
+
+        // Retirer une valeur donne exactement l'esquisse des valeurs restantes
+        assertThat(esquisse.count()).isEqualTo(restantes.count());
+        for (double rang : RANGS) {
+            assertThat(esquisse.quantile(rang)).isEqualTo(restantes.quantile(rang));
+        }
+    }
+
+    @Test
+    void valeursIgnorees() {
+        QuantileSketch esquisse = new QuantileSketch(0.01);
+        assertThat(esquisse.quantile(0.5)).isNull();
+
+        esquisse.add(0);
+        esquisse.add(-12);
+        esquisse.add(Double.NaN);
+        assertThat(esquisse.count()).isZero();
+        assertThat(esquisse.quantile(0.5)).isNull();
+
+        esquisse.add(100);
+        // Une valeur jamais ajoutée, hors des seaux ou dans un seau vide, n'est pas retirée
+        esquisse.remove(1_000_000);
+        esquisse.remove(0.001);
+        esquisse.remove(-5);
+        assertThat(esquisse.count()).isEqualTo(1);
+        assertThat(esquisse.quantile(0.5)).isCloseTo(100, within(1.0));
+
+        esquisse.remove(100);
+        assertThat(esquisse.count()).isZero();
+        assertThat(esquisse.quantile(0.5)).isNull();
+    }
+
+    // Chaque quantile est à la précision relative près de la valeur exacte de même rang
+    private static void verifierBornes(QuantileSketch esquisse, double[] valeurs, double precision) {
+        double[] triees = valeurs.clone();
+        Arrays.sort(triees);
+        assertThat(esquisse.count()).isEqualTo(triees.length);
+        for (double rang : RANGS) {
+            double exacte = triees[(int) Math.floor(rang * (triees.length - 1))];
+            assertThat(esquisse.quantile(rang)).as("quantile %s à %s", rang, precision)
+                    .isCloseTo(exacte, within(exacte * precision * (1 + 1e-9)));
+        }
+    }
+}